@@ -0,0 +1,108 @@
+package fr.orion.core.command.commands;
+
+import fr.orion.api.module.Module;
+import fr.orion.api.module.ModuleDescriptor;
+import fr.orion.api.module.ModuleManager;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares serving the {@code /modules list} and {@code /modules status} embeds from {@link ModuleEmbedCache}
+ * with rendering them on every call, as the commands did before. Run with
+ * {@code ./gradlew jmh -Pjmh.includes=ModuleEmbedCacheBenchmark -Pjmh.args="-prof gc"} to see the bytes
+ * allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModuleEmbedCacheBenchmark {
+    /**
+     * Up to 30: the list view puts every module in one embed field, which Discord caps at 1024 characters.
+     */
+    @Param({"5", "30"})
+    private int modules;
+
+    private ModuleManager moduleManager;
+    private ModuleEmbedCache embedCache;
+    private ListModulesCommand listCommand;
+
+    @Setup
+    public void setUp() {
+        List<Module> loaded = new ArrayList<>();
+        for (int i = 0; i < this.modules; i++) {
+            loaded.add(new FixedModule(new ModuleDescriptor("module-" + i, "Module " + i, "1.0." + i,
+                    "Benchmark module", "orion", "Main", null, null, List.of(), List.of()), i % 3 != 0));
+        }
+        List<Module> enabled = loaded.stream().filter(Module::isEnabled).toList();
+
+        this.moduleManager = (ModuleManager) Proxy.newProxyInstance(ModuleManager.class.getClassLoader(),
+                new Class<?>[]{ModuleManager.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getModules" -> loaded;
+                    case "getEnabledModules" -> enabled;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        this.embedCache = new ModuleEmbedCache();
+        this.listCommand = new ListModulesCommand(this.moduleManager, this.embedCache);
+    }
+
+    @Benchmark
+    public MessageEmbed renderList() {
+        return this.listCommand.render();
+    }
+
+    @Benchmark
+    public MessageEmbed cachedList() {
+        return this.embedCache.get("list", this.listCommand::render);
+    }
+
+    @Benchmark
+    public MessageEmbed renderStatus() {
+        return ModulesCommand.renderStatus(this.moduleManager);
+    }
+
+    @Benchmark
+    public MessageEmbed cachedStatus() {
+        return this.embedCache.get("status", () -> ModulesCommand.renderStatus(this.moduleManager));
+    }
+
+    /**
+     * A loaded module as the commands see it: a descriptor and an enabled flag.
+     */
+    private static final class FixedModule extends Module {
+        private final ModuleDescriptor descriptor;
+        private final boolean enabled;
+
+        private FixedModule(ModuleDescriptor descriptor, boolean enabled) {
+            this.descriptor = descriptor;
+            this.enabled = enabled;
+        }
+
+        @Override
+        public ModuleDescriptor getModuleDescriptor() {
+            return this.descriptor;
+        }
+
+        @Override
+        public boolean isEnabled() {
+            return this.enabled;
+        }
+    }
+}
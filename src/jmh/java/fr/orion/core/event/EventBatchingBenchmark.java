@@ -0,0 +1,155 @@
+package fr.orion.core.event;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares per-event delivery with {@link SimpleEventRegistry#subscribeBatched} for a handler that counts
+ * reactions per message and then does one write, simulated by burning {@code writeCost} JMH CPU tokens. Scores
+ * are events per second. Run with {@code ./gradlew jmh -Pjmh.includes=EventBatchingBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBatchingBenchmark {
+    private static final int MESSAGES = 50;
+
+    @Param({"0", "100", "1000"})
+    private long writeCost;
+
+    private Reaction[] events;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        JDA jda = jda();
+        this.events = new Reaction[1024];
+        for (int i = 0; i < this.events.length; i++) {
+            this.events[i] = new Reaction(jda, i % MESSAGES);
+        }
+    }
+
+    @Benchmark
+    public void perEvent(PerEvent subscription) {
+        subscription.registry.getEventBus().onEvent(nextEvent());
+    }
+
+    @Benchmark
+    public void batched(Batched subscription) {
+        subscription.registry.getEventBus().onEvent(nextEvent());
+    }
+
+    private Reaction nextEvent() {
+        return this.events[this.next++ & 1023];
+    }
+
+    @State(Scope.Thread)
+    public static class PerEvent {
+        private SimpleEventRegistry registry;
+
+        @Setup(Level.Trial)
+        public void setUp(EventBatchingBenchmark benchmark) {
+            this.registry = registry();
+            long writeCost = benchmark.writeCost;
+            Map<Long, Integer> counts = new HashMap<>();
+            this.registry.subscribe(Reaction.class, event -> {
+                counts.merge(event.messageId, 1, Integer::sum);
+                Blackhole.consumeCPU(writeCost);
+                counts.clear();
+            });
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.registry.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batched {
+        @Param({"16", "128"})
+        private int batchSize;
+
+        private SimpleEventRegistry registry;
+
+        @Setup(Level.Trial)
+        public void setUp(EventBatchingBenchmark benchmark) {
+            this.registry = registry();
+            long writeCost = benchmark.writeCost;
+            Map<Long, Integer> counts = new HashMap<>();
+            this.registry.subscribeBatched(Reaction.class, (List<Reaction> batch) -> {
+                for (Reaction event : batch) {
+                    counts.merge(event.messageId, 1, Integer::sum);
+                }
+                Blackhole.consumeCPU(writeCost);
+                counts.clear();
+            }, this.batchSize, Duration.ofMillis(50));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            this.registry.shutdown();
+        }
+    }
+
+    /**
+     * A registry without module isolation, so handlers run on the benchmark thread.
+     */
+    private static SimpleEventRegistry registry() {
+        return new SimpleEventRegistry(jda(), false, false, ModuleEventExecutor.DEFAULT_QUEUE_CAPACITY,
+                ModuleEventExecutor.OverflowPolicy.DROP_OLDEST, Duration.ZERO);
+    }
+
+    /**
+     * A JDA whose methods return defaults; events only read their response number from it.
+     */
+    private static JDA jda() {
+        return (JDA) Proxy.newProxyInstance(JDA.class.getClassLoader(), new Class<?>[]{JDA.class},
+                (proxy, method, args) -> {
+                    Class<?> type = method.getReturnType();
+                    if (type == long.class) {
+                        return 0L;
+                    }
+                    if (type == int.class) {
+                        return 0;
+                    }
+                    return type == boolean.class ? false : null;
+                });
+    }
+
+    /**
+     * Stands in for a reaction event: all the handler reads is the message it belongs to.
+     */
+    public static class Reaction extends Event {
+        private final long messageId;
+
+        public Reaction(JDA api, long messageId) {
+            super(api);
+            this.messageId = messageId;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package fr.orion.core.event;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GatewayPingEvent;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.StatusChangeEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.hooks.InterfacedEventManager;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares dispatching an event through the {@link EventBus} with JDA's {@link InterfacedEventManager} calling
+ * every {@link ListenerAdapter}, as module listeners were registered before. Each listener overrides one of five
+ * {@code on...} methods, and the events alternate between two types. Run with
+ * {@code ./gradlew jmh -Pjmh.includes=EventBusBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmark {
+    private static final Supplier<?>[] LISTENERS = {
+            MessageListener::new, SlashCommandListener::new, ButtonListener::new, MemberJoinListener::new,
+            GatewayPingListener::new
+    };
+
+    @Param({"5", "50", "200"})
+    private int listeners;
+
+    private InterfacedEventManager jdaListeners;
+    private InterfacedEventManager eventBus;
+    private GenericEvent[] events;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        this.jdaListeners = new InterfacedEventManager();
+        EventBus bus = new EventBus();
+        for (int i = 0; i < this.listeners; i++) {
+            ListenerAdapter listener = (ListenerAdapter) LISTENERS[i % LISTENERS.length].get();
+            this.jdaListeners.register(listener);
+            bus.register(listener);
+        }
+        this.eventBus = new InterfacedEventManager();
+        this.eventBus.register(bus);
+
+        JDA jda = jda();
+        this.events = new GenericEvent[]{
+                new GatewayPingEvent(jda, 42),
+                new StatusChangeEvent(jda, JDA.Status.CONNECTED, JDA.Status.LOADING_SUBSYSTEMS)
+        };
+    }
+
+    @Benchmark
+    public void jdaListeners() {
+        this.jdaListeners.handle(nextEvent());
+    }
+
+    @Benchmark
+    public void eventBus() {
+        this.eventBus.handle(nextEvent());
+    }
+
+    private GenericEvent nextEvent() {
+        return this.events[this.next++ & 1];
+    }
+
+    /**
+     * A JDA whose methods return defaults; events only read their response number from it.
+     */
+    private static JDA jda() {
+        return (JDA) Proxy.newProxyInstance(JDA.class.getClassLoader(), new Class<?>[]{JDA.class},
+                (proxy, method, args) -> {
+                    Class<?> type = method.getReturnType();
+                    if (type == long.class) {
+                        return 0L;
+                    }
+                    if (type == int.class) {
+                        return 0;
+                    }
+                    return type == boolean.class ? false : null;
+                });
+    }
+
+    public static class MessageListener extends ListenerAdapter {
+        private long received;
+
+        @Override
+        public void onMessageReceived(MessageReceivedEvent event) {
+            this.received++;
+        }
+    }
+
+    public static class SlashCommandListener extends ListenerAdapter {
+        private long received;
+
+        @Override
+        public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
+            this.received++;
+        }
+    }
+
+    public static class ButtonListener extends ListenerAdapter {
+        private long received;
+
+        @Override
+        public void onButtonInteraction(ButtonInteractionEvent event) {
+            this.received++;
+        }
+    }
+
+    public static class MemberJoinListener extends ListenerAdapter {
+        private long received;
+
+        @Override
+        public void onGuildMemberJoin(GuildMemberJoinEvent event) {
+            this.received++;
+        }
+    }
+
+    public static class GatewayPingListener extends ListenerAdapter {
+        private long received;
+
+        @Override
+        public void onGatewayPing(GatewayPingEvent event) {
+            this.received++;
+        }
+    }
+}
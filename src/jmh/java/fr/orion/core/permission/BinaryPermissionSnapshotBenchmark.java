@@ -0,0 +1,118 @@
+package fr.orion.core.permission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares starting a {@link YamlPermissionManager} from {@code permissions.yml} with starting it from the
+ * {@link BinaryPermissionSnapshot} mirror of the same file. Each load reads the files into a fresh manager,
+ * compiles its snapshot and stops it again. Run with
+ * {@code ./gradlew jmh -Pjmh.includes=BinaryPermissionSnapshotBenchmark -Pjmh.args="-prof gc"} to see the
+ * bytes allocated per load.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class BinaryPermissionSnapshotBenchmark {
+    private static final int GRANTS_PER_PRINCIPAL = 5;
+    private static final int DISTINCT_PERMISSIONS = 500;
+
+    @Param({"10000", "100000"})
+    private int grants;
+
+    private Path yamlDirectory;
+    private Path binaryDirectory;
+
+    @Setup
+    public void setUp() throws IOException {
+        String content = permissionsYaml(this.grants / GRANTS_PER_PRINCIPAL);
+        this.yamlDirectory = Files.createTempDirectory("orion-yaml-load");
+        this.binaryDirectory = Files.createTempDirectory("orion-binary-load");
+        for (Path directory : new Path[]{this.yamlDirectory, this.binaryDirectory}) {
+            Path file = directory.resolve("permissions.yml");
+            Files.writeString(file, content);
+            // An old modification time lets the snapshot skip hashing, as it would for a file edited long ago
+            Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(Duration.ofHours(1))));
+        }
+
+        load(this.binaryDirectory, true);
+        if (!Files.exists(this.binaryDirectory.resolve("permissions.bin"))) {
+            throw new IllegalStateException("Binary snapshot was not written");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        delete(this.yamlDirectory);
+        delete(this.binaryDirectory);
+    }
+
+    @Benchmark
+    public PermissionSnapshot loadFromYaml() {
+        return load(this.yamlDirectory, false);
+    }
+
+    @Benchmark
+    public PermissionSnapshot loadFromBinary() {
+        return load(this.binaryDirectory, true);
+    }
+
+    private static PermissionSnapshot load(Path directory, boolean binarySnapshot) {
+        YamlPermissionManager manager = new YamlPermissionManager(directory, PermissionDecisionCache.DEFAULT_MAXIMUM_SIZE,
+                Duration.ofHours(1), 0, binarySnapshot);
+        try {
+            return manager.getSnapshot();
+        } finally {
+            manager.shutdown();
+        }
+    }
+
+    /**
+     * Builds a permissions file where nine principals in ten are users, each with a few of a shared pool of
+     * permission nodes.
+     */
+    private static String permissionsYaml(int principals) {
+        StringBuilder users = new StringBuilder("users:\n");
+        StringBuilder roles = new StringBuilder("roles:\n");
+        for (int i = 0; i < principals; i++) {
+            StringBuilder section = i % 10 == 0 ? roles : users;
+            section.append("  '").append(100000000000000000L + i).append("':\n");
+            for (int j = 0; j < GRANTS_PER_PRINCIPAL; j++) {
+                int node = (i * 7 + j * 31) % DISTINCT_PERMISSIONS;
+                section.append("  - module").append(node % 50).append(".command").append(node).append(".use\n");
+            }
+        }
+        return users.append(roles).toString();
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package fr.orion.core.permission;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a {@link PermissionTrie} lookup with the linear scan it replaced, which parsed every stored grant
+ * on every check. Run with {@code ./gradlew jmh -Pjmh.includes=PermissionTrieBenchmark -Pjmh.args="-prof gc"}
+ * to see allocations as well.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PermissionTrieBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    private int grants;
+
+    private Set<String> grantSet;
+    private PermissionTrie trie;
+    private String granted;
+    private String denied;
+
+    @Setup
+    public void setUp() {
+        this.grantSet = new HashSet<>();
+        for (int i = 0; i < this.grants; i++) {
+            this.grantSet.add(i % 10 == 9 ? "module" + i + ".*" : "module" + i + ".command.use");
+        }
+        this.trie = PermissionTrie.compile(this.grantSet);
+        this.granted = "module0.command.use";
+        this.denied = "unknown.command.use";
+    }
+
+    @Benchmark
+    public boolean trieGranted() {
+        return this.trie.matches(this.granted);
+    }
+
+    @Benchmark
+    public boolean trieDenied() {
+        return this.trie.matches(this.denied);
+    }
+
+    @Benchmark
+    public boolean linearScanGranted() {
+        return linearScan(this.grantSet, this.granted);
+    }
+
+    @Benchmark
+    public boolean linearScanDenied() {
+        return linearScan(this.grantSet, this.denied);
+    }
+
+    /**
+     * The check {@link PermissionTrie} replaced: every grant is split into nodes again for each lookup.
+     */
+    private static boolean linearScan(Set<String> grants, String permission) {
+        String[] requested = permission.toLowerCase().split("\\.");
+        for (String grant : grants) {
+            String[] nodes = grant.toLowerCase().split("\\.");
+            if (matches(nodes, requested)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String[] nodes, String[] requested) {
+        for (int i = 0; i < nodes.length; i++) {
+            if (nodes[i].equals("*")) {
+                return true;
+            }
+            if (i >= requested.length || !nodes[i].equals(requested[i])) {
+                return false;
+            }
+        }
+        return nodes.length == requested.length;
+    }
+}
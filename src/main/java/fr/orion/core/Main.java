@@ -3,6 +3,7 @@ package fr.orion.core;
 public class Main {
     public static void main(String[] args) {
         OrionBot orionBot = new OrionBot();
+        Runtime.getRuntime().addShutdownHook(new Thread(orionBot::shutdown, "orion-shutdown"));
         orionBot.start();
     }
 }
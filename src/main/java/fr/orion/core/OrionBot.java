@@ -8,20 +8,39 @@ import fr.orion.api.module.Module;
 import fr.orion.api.module.ModuleManager;
 import fr.orion.api.module.loader.DefaultModuleLoader;
 import fr.orion.api.permission.PermissionManager;
+import fr.orion.core.command.CommandExecutor;
+import fr.orion.core.command.CommandRateLimiter;
 import fr.orion.core.command.SimpleCommandRegistry;
+import fr.orion.core.command.commands.ModuleEmbedCache;
 import fr.orion.core.command.commands.ModulesCommand;
+import fr.orion.core.command.commands.OrionCommand;
 import fr.orion.core.command.commands.PermissionCommand;
 import fr.orion.core.config.BotConfig;
+import fr.orion.core.database.ConnectionPool;
 import fr.orion.core.event.SimpleEventRegistry;
+import fr.orion.core.interaction.ComponentRouter;
+import fr.orion.core.metrics.CommandMetrics;
+import fr.orion.core.permission.JdbcPermissionManager;
+import fr.orion.core.permission.PermissionCacheListener;
+import fr.orion.core.permission.PermissionCatalog;
+import fr.orion.core.permission.PermissionDecisionCache;
+import fr.orion.core.permission.PermissionFileWatcher;
+import fr.orion.core.permission.PermissionJournal;
+import fr.orion.core.permission.ShardedPermissionManager;
+import fr.orion.core.permission.WriteBehindPersister;
 import fr.orion.core.permission.YamlPermissionManager;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.hooks.EventListener;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.sql.SQLException;
 import java.util.EnumSet;
 
 public class OrionBot implements Bot {
@@ -31,9 +50,15 @@ public class OrionBot implements Bot {
 
     private JDA jda;
     private ModuleManager moduleManager;
+    private ModuleEmbedCache moduleEmbedCache;
+    private ComponentRouter componentRouter;
     private CommandRegistry commandRegistry;
     private EventRegistry eventRegistry;
     private PermissionManager permissionManager;
+    private PermissionFileWatcher permissionWatcher;
+    private ConnectionPool connectionPool;
+    private final PermissionCatalog permissionCatalog = new PermissionCatalog();
+    private final CommandMetrics commandMetrics = new CommandMetrics();
 
     public OrionBot() {
         log.info("Initializing OrionBot... v0.0.1");
@@ -75,16 +100,102 @@ public class OrionBot implements Bot {
     private void initializeRegistries() {
         log.info("Initializing registries...");
 
-        this.eventRegistry = new SimpleEventRegistry(this.jda);
-        this.commandRegistry = new SimpleCommandRegistry(this.jda, this.config.getGuildId());
+        this.eventRegistry = new SimpleEventRegistry(this.jda,
+                this.config.isEventModuleIsolationEnabled(),
+                this.config.isEventVirtualThreadsEnabled(),
+                this.config.getEventQueueCapacity(),
+                this.config.getEventOverflowPolicy(),
+                Duration.ofMillis(this.config.getEventSlowListenerMillis()));
+        this.commandRegistry = new SimpleCommandRegistry(this.jda, this.config.getGuildId(), this.permissionCatalog,
+                new CommandExecutor(this.config.isCommandVirtualThreadsEnabled(),
+                        this.config.getCommandPoolSize(),
+                        this.config.getCommandMaxConcurrentPerCommand(),
+                        Duration.ofMillis(this.config.getCommandAutoDeferMillis()),
+                        this.commandMetrics),
+                new CommandRateLimiter(this.config.getCommandDefaultRateLimit(), this.config.getCommandRateLimits()),
+                this.commandMetrics);
 
         this.eventRegistry.registerListener((EventListener) this.commandRegistry);
         this.eventRegistry.registerListener(new ConfirmationSystem());
+        this.componentRouter = new ComponentRouter(Duration.ofSeconds(this.config.getConfirmationTimeoutSeconds()));
+        this.eventRegistry.registerListener(this.componentRouter);
+
+        initializePermissions();
+        if (this.commandRegistry instanceof SimpleCommandRegistry simpleCommandRegistry) {
+            simpleCommandRegistry.usePermissionManager(this.permissionManager);
+        }
 
-        this.permissionManager = new YamlPermissionManager(Path.of("permissions"));
         Path modulePath = Path.of("modules");
         this.moduleManager = new DefaultModuleLoader(modulePath, this);
+        if (this.eventRegistry instanceof SimpleEventRegistry simpleEventRegistry) {
+            simpleEventRegistry.useModuleManager(this.moduleManager);
+        }
+        this.moduleEmbedCache = new ModuleEmbedCache();
+
+    }
 
+    private void initializePermissions() {
+        if (this.config.isDatabaseEnabled()) {
+            initializeDatabasePermissions();
+            return;
+        }
+
+        if (this.config.isPermissionWatchEnabled()) {
+            try {
+                this.permissionWatcher = new PermissionFileWatcher(PermissionFileWatcher.DEFAULT_DEBOUNCE);
+            } catch (IOException e) {
+                log.warn("Permission files will not be reloaded on change", e);
+            }
+        }
+
+        long journalCompactionThreshold = this.config.isPermissionJournalEnabled() ? PermissionJournal.DEFAULT_COMPACTION_THRESHOLD : 0;
+        if (this.config.isPermissionShardingEnabled()) {
+            ShardedPermissionManager shardedPermissionManager = new ShardedPermissionManager(Path.of("permissions"),
+                    PermissionDecisionCache.DEFAULT_MAXIMUM_SIZE,
+                    WriteBehindPersister.DEFAULT_WRITE_DELAY,
+                    journalCompactionThreshold,
+                    this.config.isPermissionBinarySnapshotEnabled(),
+                    this.config.getPermissionMaxResidentGuilds(),
+                    this.config.getPermissionMaxResidentEntries(),
+                    roleId -> {
+                        Role role = this.jda.getRoleById(roleId);
+                        return role != null ? role.getGuild().getId() : null;
+                    });
+            this.eventRegistry.registerListener(new PermissionCacheListener(shardedPermissionManager.getDecisionCache()));
+            if (this.permissionWatcher != null) {
+                shardedPermissionManager.watch(this.permissionWatcher);
+            }
+            shardedPermissionManager.useCatalog(this.permissionCatalog);
+            this.permissionManager = shardedPermissionManager;
+        } else {
+            YamlPermissionManager yamlPermissionManager = new YamlPermissionManager(Path.of("permissions"),
+                    PermissionDecisionCache.DEFAULT_MAXIMUM_SIZE,
+                    WriteBehindPersister.DEFAULT_WRITE_DELAY,
+                    journalCompactionThreshold,
+                    this.config.isPermissionBinarySnapshotEnabled());
+            this.eventRegistry.registerListener(new PermissionCacheListener(yamlPermissionManager.getDecisionCache()));
+            if (this.permissionWatcher != null) {
+                yamlPermissionManager.watch(this.permissionWatcher);
+            }
+            yamlPermissionManager.useCatalog(this.permissionCatalog);
+            this.permissionManager = yamlPermissionManager;
+        }
+    }
+
+    private void initializeDatabasePermissions() {
+        this.connectionPool = new ConnectionPool(this.config.getDatabaseUrl(), this.config.getDatabaseUsername(),
+                this.config.getDatabasePassword(), this.config.getDatabasePoolSize());
+        try {
+            JdbcPermissionManager jdbcPermissionManager = new JdbcPermissionManager(this.connectionPool,
+                    PermissionDecisionCache.DEFAULT_MAXIMUM_SIZE, JdbcPermissionManager.DEFAULT_GRANT_CACHE_SIZE);
+            jdbcPermissionManager.migrateFromYaml(Path.of("permissions", "permissions.yml"));
+            this.eventRegistry.registerListener(new PermissionCacheListener(jdbcPermissionManager.getDecisionCache()));
+            jdbcPermissionManager.useCatalog(this.permissionCatalog);
+            this.permissionManager = jdbcPermissionManager;
+        } catch (SQLException e) {
+            log.error("Failed to initialize database permissions", e);
+            throw new RuntimeException("Failed to initialize database permissions", e);
+        }
     }
 
     private void loadModules() {
@@ -92,13 +203,17 @@ public class OrionBot implements Bot {
 
         int loadedModules = this.moduleManager.loadModules();
         int enabledModules = this.moduleManager.enableModules();
+        this.moduleEmbedCache.invalidate();
         log.info("Loaded {} modules, enabled {} modules", loadedModules, enabledModules);
     }
 
     private void registerCommands() {
         log.info("Registering commands...");
-        this.commandRegistry.registerCommand(new PermissionCommand(this.permissionManager));
-        this.commandRegistry.registerCommand(new ModulesCommand(this.moduleManager, this.permissionManager));
+        this.commandRegistry.registerCommand(new PermissionCommand(this.permissionManager, this.permissionCatalog, this.componentRouter));
+        this.commandRegistry.registerCommand(new ModulesCommand(this.moduleManager, this.permissionManager, this.moduleEmbedCache,
+                this.componentRouter,
+                this.eventRegistry instanceof SimpleEventRegistry simpleEventRegistry ? simpleEventRegistry : null));
+        this.commandRegistry.registerCommand(new OrionCommand(this.commandMetrics));
         this.commandRegistry.synchronizeCommands();
         log.info("Commands registered successfully");
     }
@@ -130,13 +245,41 @@ public class OrionBot implements Bot {
         }
     }
 
-    private void shutdown() {
+    public void shutdown() {
         log.info("Shutting down OrionBot...");
 
         if (this.moduleManager != null) {
             this.moduleManager.disableModules();
         }
 
+        if (this.commandRegistry instanceof SimpleCommandRegistry simpleCommandRegistry) {
+            simpleCommandRegistry.shutdown();
+        }
+
+        if (this.eventRegistry instanceof SimpleEventRegistry simpleEventRegistry) {
+            simpleEventRegistry.shutdown();
+        }
+
+        if (this.componentRouter != null) {
+            this.componentRouter.close();
+        }
+
+        if (this.permissionWatcher != null) {
+            this.permissionWatcher.close();
+        }
+
+        if (this.permissionManager instanceof YamlPermissionManager yamlPermissionManager) {
+            yamlPermissionManager.shutdown();
+            log.info("Permissions flushed to disk");
+        } else if (this.permissionManager instanceof ShardedPermissionManager shardedPermissionManager) {
+            shardedPermissionManager.shutdown();
+            log.info("Permissions flushed to disk");
+        }
+
+        if (this.connectionPool != null) {
+            this.connectionPool.close();
+        }
+
         if (this.jda != null) {
             this.jda.shutdown();
             log.info("JDA shutdown complete");
@@ -168,4 +311,18 @@ public class OrionBot implements Bot {
     public PermissionManager getPermissionManager() {
         return this.permissionManager;
     }
+
+    /**
+     * Catalog of declared permissions; modules may declare theirs here so checks for them resolve by bit test.
+     */
+    public PermissionCatalog getPermissionCatalog() {
+        return this.permissionCatalog;
+    }
+
+    /**
+     * Latency histograms and error counts of every command dispatched since startup.
+     */
+    public CommandMetrics getCommandMetrics() {
+        return this.commandMetrics;
+    }
 }
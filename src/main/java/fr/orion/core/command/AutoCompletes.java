@@ -0,0 +1,12 @@
+package fr.orion.core.command;
+
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
+
+/**
+ * Implemented by commands with autocompleted options. The command registry routes autocomplete
+ * interactions to them on the JDA event thread, so suggestions must come from memory.
+ */
+public interface AutoCompletes {
+
+    void onAutoComplete(CommandAutoCompleteInteractionEvent event);
+}
@@ -0,0 +1,11 @@
+package fr.orion.core.command;
+
+import fr.orion.core.interaction.InteractionReplies;
+
+/**
+ * Implemented by commands that send every reply through {@link InteractionReplies}, so that the command executor
+ * may defer their interactions once they run past the auto-defer delay. Other commands are never auto-deferred,
+ * as a plain {@code event.reply(...)} fails once the interaction has been acknowledged.
+ */
+public interface AutoDefers {
+}
@@ -0,0 +1,202 @@
+package fr.orion.core.command;
+
+import fr.orion.api.command.Command;
+import fr.orion.core.interaction.InteractionReplies;
+import fr.orion.core.metrics.CommandMetrics;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs slash commands off the JDA event thread, so a command blocking on I/O does not hold up other
+ * interactions and gateway events.
+ * <p>
+ * The middleware stages of the command's {@link CommandRoute} run first on the same thread; the executor wraps
+ * them and the command with metrics and maps exceptions to an ephemeral error reply. Interactions stopped by a
+ * stage are not recorded as executions.
+ * <p>
+ * Commands run on virtual threads when the runtime has them (Java 21+), or on a bounded pool otherwise.
+ * Each command may run at most a fixed number of times concurrently; interactions over the limit are
+ * answered with an ephemeral busy message. An interaction of an {@link AutoDefers} command that is still
+ * unacknowledged after the auto-defer delay is deferred, keeping it alive past Discord's 3 second deadline. The
+ * deferral runs on a scheduler thread, so those commands reply through {@link InteractionReplies}, which sends
+ * through the hook once the interaction is deferred. Other commands, module commands included, are left to
+ * acknowledge their interactions themselves. Interactions of {@link RepliesEphemerally} commands are deferred
+ * as ephemeral.
+ */
+public class CommandExecutor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(CommandExecutor.class);
+
+    public static final int DEFAULT_POOL_SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    public static final int DEFAULT_MAX_CONCURRENT_PER_COMMAND = 8;
+    public static final Duration DEFAULT_AUTO_DEFER = Duration.ofMillis(2000);
+    private static final int QUEUE_CAPACITY = 256;
+    /**
+     * How long a deferred interaction can still be answered, after which its reply tracking is dropped.
+     */
+    private static final Duration INTERACTION_LIFETIME = Duration.ofMinutes(15);
+
+    private static final String ERROR_MESSAGE = "An error occurred while executing this command";
+    private static final String BUSY_MESSAGE = "This command is busy, please try again in a moment";
+
+    private final ExecutorService executor;
+    private final ScheduledThreadPoolExecutor deferScheduler;
+    private final int maxConcurrentPerCommand;
+    private final long autoDeferNanos;
+    private final CommandMetrics metrics;
+    private final Map<String, Semaphore> limits = new ConcurrentHashMap<>();
+
+    /**
+     * @param maxConcurrentPerCommand concurrent executions allowed per command, {@code 0} for no limit
+     * @param autoDefer               delay after which an unacknowledged interaction is deferred, zero to disable
+     */
+    public CommandExecutor(boolean virtualThreads, int poolSize, int maxConcurrentPerCommand, Duration autoDefer,
+                           CommandMetrics metrics) {
+        ExecutorService virtual = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.executor = virtual != null ? virtual : newBoundedExecutor(poolSize);
+        this.maxConcurrentPerCommand = maxConcurrentPerCommand;
+        this.autoDeferNanos = autoDefer.toNanos();
+        this.metrics = metrics;
+
+        this.deferScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "orion-command-defer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.deferScheduler.setRemoveOnCancelPolicy(true);
+
+        log.info("Commands run on {}", virtual != null ? "virtual threads" : "a pool of " + poolSize + " threads");
+    }
+
+    /**
+     * Runs the stages of {@code route} and then its command.
+     *
+     * @param receivedNanos {@link System#nanoTime()} when the interaction was received, for queue time metrics
+     */
+    public void execute(SlashCommandInteractionEvent event, CommandRoute route, long receivedNanos) {
+        Command command = route.command();
+        String commandName = command.getName();
+        Semaphore limit = this.maxConcurrentPerCommand > 0
+                ? this.limits.computeIfAbsent(commandName, name -> new Semaphore(this.maxConcurrentPerCommand))
+                : null;
+        if (limit != null && !limit.tryAcquire()) {
+            log.debug("Command {} is at its concurrency limit", commandName);
+            event.reply(BUSY_MESSAGE).setEphemeral(true).queue();
+            return;
+        }
+
+        boolean defers = this.autoDeferNanos > 0 && command instanceof AutoDefers;
+        if (defers) {
+            InteractionReplies.track(event);
+        }
+        boolean ephemeral = command instanceof RepliesEphemerally;
+        ScheduledFuture<?> autoDefer = defers
+                ? this.deferScheduler.schedule(() -> autoDefer(event, ephemeral), this.autoDeferNanos, TimeUnit.NANOSECONDS)
+                : null;
+        this.metrics.interactionReceived(event.getIdLong(), route.metricsPath(), receivedNanos);
+        try {
+            this.executor.execute(() -> {
+                long start = System.nanoTime();
+                boolean admitted = false;
+                boolean failed = false;
+                try {
+                    if (!route.admit(event)) {
+                        return;
+                    }
+                    admitted = true;
+                    start = System.nanoTime();
+                    log.debug("Executing command: {}", route.path());
+                    command.execute(event);
+                } catch (Exception e) {
+                    failed = true;
+                    log.error("Error executing command {}: {}", route.path(), e.getMessage(), e);
+                    replyError(event);
+                } finally {
+                    if (admitted || failed) {
+                        this.metrics.recordExecution(route.metricsPath(), start - receivedNanos, System.nanoTime() - start, failed);
+                    }
+                    if (autoDefer != null && event.isAcknowledged()) {
+                        boolean cancelled = autoDefer.cancel(false);
+                        // The command deferred itself and answers later, so bound the tracking here
+                        if (InteractionReplies.release(event) && cancelled) {
+                            this.deferScheduler.schedule(() -> InteractionReplies.untrack(event),
+                                    INTERACTION_LIFETIME.toNanos(), TimeUnit.NANOSECONDS);
+                        }
+                    }
+                    if (limit != null) {
+                        limit.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("Command executor is saturated, rejected command {}", commandName);
+            if (autoDefer != null) {
+                autoDefer.cancel(false);
+                InteractionReplies.untrack(event);
+            }
+            if (limit != null) {
+                limit.release();
+            }
+            event.reply(BUSY_MESSAGE).setEphemeral(true).queue();
+        }
+    }
+
+    private void autoDefer(SlashCommandInteractionEvent event, boolean ephemeral) {
+        if (InteractionReplies.deferIfUnanswered(event, ephemeral)) {
+            log.debug("Deferred slow command {}", event.getName());
+            this.deferScheduler.schedule(() -> InteractionReplies.untrack(event),
+                    INTERACTION_LIFETIME.toNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void replyError(SlashCommandInteractionEvent event) {
+        InteractionReplies.reply(event, ERROR_MESSAGE, true);
+    }
+
+    @Override
+    public void close() {
+        this.deferScheduler.shutdownNow();
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("Commands still running after shutdown timeout");
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.executor.shutdownNow();
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newBoundedExecutor(int poolSize) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "orion-command-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,178 @@
+package fr.orion.core.command;
+
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.utils.data.DataArray;
+import net.dv8tion.jda.api.utils.data.DataObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Record of the commands last synchronized with Discord, used to skip synchronization when nothing changed.
+ * <p>
+ * Each command is stored with two hashes of its canonical form: the one built locally, and the one of the
+ * command as Discord returned it. Discord fills in defaults, so the two rarely agree; keeping both lets a
+ * later start detect local changes as well as edits made to the remote commands by something else.
+ */
+public final class CommandManifest {
+    private static final Logger log = LoggerFactory.getLogger(CommandManifest.class);
+
+    public record Entry(String local, String remote) {
+    }
+
+    private final String scope;
+    private final Map<String, Entry> entries;
+
+    public CommandManifest(String scope, Map<String, Entry> entries) {
+        this.scope = scope;
+        this.entries = Map.copyOf(entries);
+    }
+
+    public String getScope() {
+        return this.scope;
+    }
+
+    public Map<String, Entry> getEntries() {
+        return this.entries;
+    }
+
+    /**
+     * @return whether the manifest describes exactly these local and remote commands, keyed by name
+     */
+    public boolean matches(String scope, Map<String, String> localHashes, Map<String, String> remoteHashes) {
+        if (!this.scope.equals(scope) || !this.entries.keySet().equals(localHashes.keySet())
+                || !this.entries.keySet().equals(remoteHashes.keySet())) {
+            return false;
+        }
+
+        for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+            if (!entry.getValue().local().equals(localHashes.get(entry.getKey()))
+                    || !entry.getValue().remote().equals(remoteHashes.get(entry.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the manifest, or {@code null} if the file is missing or unreadable
+     */
+    @SuppressWarnings("unchecked")
+    public static CommandManifest load(Path file) {
+        if (!Files.exists(file)) {
+            return null;
+        }
+
+        try (InputStream input = Files.newInputStream(file)) {
+            Object root = new Yaml().load(input);
+            if (!(root instanceof Map<?, ?> map) || !(map.get("commands") instanceof Map<?, ?> commands)) {
+                return null;
+            }
+
+            Map<String, Entry> entries = new LinkedHashMap<>();
+            for (Map.Entry<?, ?> command : commands.entrySet()) {
+                if (command.getValue() instanceof Map<?, ?> hashes) {
+                    entries.put(command.getKey().toString(),
+                            new Entry(String.valueOf(hashes.get("local")), String.valueOf(hashes.get("remote"))));
+                }
+            }
+            return new CommandManifest(String.valueOf(map.get("scope")), entries);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable command manifest {}", file, e);
+            return null;
+        }
+    }
+
+    public void save(Path file) throws IOException {
+        Map<String, Object> commands = new TreeMap<>();
+        this.entries.forEach((name, entry) -> {
+            Map<String, Object> hashes = new LinkedHashMap<>();
+            hashes.put("local", entry.local());
+            hashes.put("remote", entry.remote());
+            commands.put(name, hashes);
+        });
+
+        Map<String, Object> root = new LinkedHashMap<>();
+        root.put("scope", this.scope);
+        root.put("commands", commands);
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            new Yaml().dump(root, writer);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Hashes every command by name.
+     */
+    public static Map<String, String> hashAll(Collection<? extends CommandData> commands) {
+        Map<String, String> hashes = new TreeMap<>();
+        for (CommandData command : commands) {
+            hashes.put(command.getName(), hash(command));
+        }
+        return hashes;
+    }
+
+    /**
+     * SHA-256 of the command's JSON with object keys sorted, so equal commands hash the same regardless of
+     * the order their fields were set in.
+     */
+    public static String hash(CommandData command) {
+        StringBuilder canonical = new StringBuilder();
+        appendCanonical(canonical, command.toData());
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.toString().getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static void appendCanonical(StringBuilder out, Object value) {
+        if (value instanceof DataObject object) {
+            value = object.toMap();
+        } else if (value instanceof DataArray array) {
+            value = array.toList();
+        }
+
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sorted = new TreeMap<>();
+            map.forEach((key, child) -> sorted.put(key.toString(), child));
+            out.append('{');
+            sorted.forEach((key, child) -> {
+                out.append('"').append(key).append("\":");
+                appendCanonical(out, child);
+                out.append(',');
+            });
+            out.append('}');
+        } else if (value instanceof List<?> list) {
+            out.append('[');
+            for (Object child : list) {
+                appendCanonical(out, child);
+                out.append(',');
+            }
+            out.append(']');
+        } else if (value instanceof String string) {
+            out.append('"').append(string.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        } else {
+            out.append(value);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package fr.orion.core.command;
+
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+
+/**
+ * A stage run before every command of a {@link CommandRoute}. Stages run in order on the command executor; the
+ * first one returning {@code false} stops the interaction, and must have answered it.
+ */
+@FunctionalInterface
+public interface CommandMiddleware {
+
+    /**
+     * @return whether the interaction continues to the next stage and then the command
+     */
+    boolean handle(SlashCommandInteractionEvent event, CommandRoute route);
+}
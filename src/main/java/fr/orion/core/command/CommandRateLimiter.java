@@ -0,0 +1,112 @@
+package fr.orion.core.command;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token-bucket rate limits for commands, keyed by user, guild and full command path.
+ * <p>
+ * Each bucket is a single timestamp updated by compare-and-set (the generic cell rate algorithm, which
+ * behaves like a token bucket refilling one token every {@code period / capacity}). Buckets that have
+ * refilled completely hold no state worth keeping, and are swept from the map at most once per
+ * {@link #SWEEP_INTERVAL}.
+ */
+public class CommandRateLimiter {
+    public static final Limit DEFAULT_LIMIT = new Limit(5, Duration.ofSeconds(10));
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(60);
+
+    /**
+     * Allows bursts of {@code capacity} executions, refilled over {@code period}. A capacity of {@code 0}
+     * disables the limit.
+     */
+    public record Limit(int capacity, Duration period) {
+        public static final Limit UNLIMITED = new Limit(0, Duration.ZERO);
+
+        public boolean isUnlimited() {
+            return this.capacity <= 0 || this.period.isZero() || this.period.isNegative();
+        }
+    }
+
+    private record Key(long userId, long guildId, String commandPath) {
+    }
+
+    private final Limit defaultLimit;
+    private final Map<String, Limit> limits;
+    private final Map<Key, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    /**
+     * @param limits limits by full command path ({@code "modules reload"}) or command name ({@code "modules"});
+     *               the most specific one applies
+     */
+    public CommandRateLimiter(Limit defaultLimit, Map<String, Limit> limits) {
+        this.defaultLimit = defaultLimit;
+        this.limits = Map.copyOf(limits);
+    }
+
+    /**
+     * Takes a token from the caller's bucket.
+     *
+     * @return {@code 0} if the command may run, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(long userId, long guildId, String commandPath) {
+        return tryAcquire(userId, guildId, commandPath, limitFor(commandPath));
+    }
+
+    /**
+     * Takes a token from the caller's bucket, with a limit already resolved by {@link #limitFor(String)}.
+     *
+     * @return {@code 0} if the command may run, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(long userId, long guildId, String commandPath, Limit limit) {
+        if (limit.isUnlimited()) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        sweepIfDue(now);
+
+        long interval = limit.period().toNanos() / limit.capacity();
+        long tolerance = limit.period().toNanos() - interval;
+        AtomicLong bucket = this.buckets.computeIfAbsent(new Key(userId, guildId, commandPath), key -> new AtomicLong(now));
+        while (true) {
+            long theoreticalArrival = bucket.get();
+            long start = theoreticalArrival - now > 0 ? theoreticalArrival : now;
+            if (start - now > tolerance) {
+                return start - now - tolerance;
+            }
+            if (bucket.compareAndSet(theoreticalArrival, start + interval)) {
+                return 0;
+            }
+        }
+    }
+
+    public int getBucketCount() {
+        return this.buckets.size();
+    }
+
+    /**
+     * @return the most specific limit configured for {@code commandPath}
+     */
+    public Limit limitFor(String commandPath) {
+        Limit limit = this.limits.get(commandPath);
+        if (limit == null) {
+            int space = commandPath.indexOf(' ');
+            limit = space > 0 ? this.limits.get(commandPath.substring(0, space)) : null;
+        }
+        return limit != null ? limit : this.defaultLimit;
+    }
+
+    private void sweepIfDue(long now) {
+        long last = this.lastSweep.get();
+        if (now - last < SWEEP_INTERVAL || !this.lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        // A bucket whose theoretical arrival time has passed is full again, so dropping it loses nothing
+        // but a token taken concurrently with the sweep
+        this.buckets.entrySet().removeIf(entry -> entry.getValue().get() - now <= 0);
+    }
+}
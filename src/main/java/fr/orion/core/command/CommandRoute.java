@@ -0,0 +1,30 @@
+package fr.orion.core.command;
+
+import fr.orion.api.command.Command;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+
+/**
+ * Everything dispatching one full command path needs, resolved once when the command is registered: the
+ * required permission, the rate limit and the middleware stages as a flat array.
+ *
+ * @param path        full command path, such as {@code "modules reload"}
+ * @param metricsPath path under which {@link fr.orion.core.metrics.CommandMetrics} records the command
+ * @param permission  permission needed to run the command, or {@code null}
+ */
+public record CommandRoute(Command command, String path, String metricsPath, String permission,
+                           CommandRateLimiter.Limit rateLimit, CommandMiddleware[] stages) {
+
+    /**
+     * Runs every stage in order.
+     *
+     * @return whether the command may run
+     */
+    public boolean admit(SlashCommandInteractionEvent event) {
+        for (CommandMiddleware stage : this.stages) {
+            if (!stage.handle(event, this)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,8 @@
+package fr.orion.core.command;
+
+/**
+ * Implemented by {@link AutoDefers} commands whose replies are all ephemeral, so that an interaction the command
+ * executor auto-defers is deferred as ephemeral too and the reply does not have to replace a public placeholder.
+ */
+public interface RepliesEphemerally {
+}
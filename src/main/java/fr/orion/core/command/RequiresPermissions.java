@@ -0,0 +1,25 @@
+package fr.orion.core.command;
+
+import fr.orion.core.permission.DeclaresPermissions;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Implemented by commands whose paths each need a permission. The command registry checks it before the
+ * handler runs, so handlers no longer check it themselves.
+ */
+public interface RequiresPermissions extends DeclaresPermissions {
+
+    /**
+     * @return the permission needed per full command path ({@code "modules reload"}) or command name
+     * ({@code "modules"}); the most specific one applies, and paths without one need no permission
+     */
+    Map<String, String> getRequiredPermissions();
+
+    @Override
+    default Collection<String> getDeclaredPermissions() {
+        return new LinkedHashSet<>(getRequiredPermissions().values());
+    }
+}
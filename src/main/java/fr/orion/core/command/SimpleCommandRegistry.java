@@ -2,48 +2,178 @@ package fr.orion.core.command;
 
 import fr.orion.api.command.Command;
 import fr.orion.api.command.CommandRegistry;
+import fr.orion.api.interfaction.EmbedTemplate;
+import fr.orion.api.permission.PermissionManager;
+import fr.orion.core.interaction.InteractionReplies;
+import fr.orion.core.metrics.CommandMetrics;
+import fr.orion.core.permission.DeclaresPermissions;
+import fr.orion.core.permission.PermissionCatalog;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.events.http.HttpRequestEvent;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.commands.build.CommandData;
+import net.dv8tion.jda.api.interactions.commands.build.SlashCommandData;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandGroupData;
+import net.dv8tion.jda.api.requests.RestAction;
+import net.dv8tion.jda.api.requests.Route;
+import net.dv8tion.jda.api.requests.restaction.CommandListUpdateAction;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 public class SimpleCommandRegistry extends ListenerAdapter implements CommandRegistry {
     private static final Logger log = LoggerFactory.getLogger(SimpleCommandRegistry.class);
+    private static final Path MANIFEST_FILE = Path.of("commands.manifest.yml");
     private final Map<String, Command> commands = new ConcurrentHashMap<>();
+    private final Map<String, CommandRoute> routes = new ConcurrentHashMap<>();
+    private final List<CommandMiddleware> middlewares = new CopyOnWriteArrayList<>();
+    private final CommandMiddleware rateLimitStage = this::checkRateLimit;
+    private final CommandMiddleware permissionStage = this::checkPermission;
     private final JDA jda;
     private final String guildId;
+    private final PermissionCatalog permissionCatalog;
+    private final CommandExecutor executor;
+    private final CommandRateLimiter rateLimiter;
+    private final CommandMetrics metrics;
+    private volatile PermissionManager permissionManager;
 
     public SimpleCommandRegistry(JDA jda, String guildId) {
+        this(jda, guildId, new PermissionCatalog(), new CommandMetrics());
+    }
+
+    private SimpleCommandRegistry(JDA jda, String guildId, PermissionCatalog permissionCatalog, CommandMetrics metrics) {
+        this(jda, guildId, permissionCatalog, new CommandExecutor(true, CommandExecutor.DEFAULT_POOL_SIZE,
+                        CommandExecutor.DEFAULT_MAX_CONCURRENT_PER_COMMAND, CommandExecutor.DEFAULT_AUTO_DEFER, metrics),
+                new CommandRateLimiter(CommandRateLimiter.DEFAULT_LIMIT, Map.of()), metrics);
+    }
+
+    public SimpleCommandRegistry(JDA jda, String guildId, PermissionCatalog permissionCatalog, CommandExecutor executor,
+                                 CommandRateLimiter rateLimiter, CommandMetrics metrics) {
         this.jda = jda;
         this.guildId = guildId;
+        this.permissionCatalog = permissionCatalog;
+        this.executor = executor;
+        this.rateLimiter = rateLimiter;
+        this.metrics = metrics;
     }
 
     @Override
     public void onSlashCommandInteraction(SlashCommandInteractionEvent event) {
-        String commandName = event.getName();
-        Command command = this.commands.get(commandName);
+        long receivedNanos = System.nanoTime();
+        CommandRoute route = this.routes.get(event.getFullCommandName());
+        if (route == null) {
+            route = this.routes.get(event.getName());
+        }
 
-        if (command == null) {
-            log.warn("Unknown command received: {}", commandName);
+        if (route == null) {
+            log.warn("Unknown command received: {}", event.getName());
+            return;
+        }
+
+        this.executor.execute(event, route, receivedNanos);
+    }
+
+    private boolean checkRateLimit(SlashCommandInteractionEvent event, CommandRoute route) {
+        long retryAfter = this.rateLimiter.tryAcquire(event.getUser().getIdLong(),
+                event.getGuild() != null ? event.getGuild().getIdLong() : 0, route.path(), route.rateLimit());
+        if (retryAfter <= 0) {
+            return true;
+        }
+
+        log.debug("Rate limited {} on command {}", event.getUser().getId(), route.path());
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(retryAfter + TimeUnit.SECONDS.toNanos(1) - 1));
+        InteractionReplies.reply(event, "You are using this command too quickly, try again in " + seconds + "s", true);
+        return false;
+    }
+
+    private boolean checkPermission(SlashCommandInteractionEvent event, CommandRoute route) {
+        PermissionManager permissionManager = this.permissionManager;
+        if (permissionManager != null && permissionManager.hasPermission(event.getMember(), route.permission())) {
+            return true;
+        }
+
+        InteractionReplies.reply(event, EmbedTemplate.error("Permission denied",
+                        "You don't have permission to use `/" + route.path() + "`.").build(), true);
+        return false;
+    }
+
+    @Override
+    public void onCommandAutoCompleteInteraction(CommandAutoCompleteInteractionEvent event) {
+        Command command = this.commands.get(event.getName());
+        if (!(command instanceof AutoCompletes autoCompletes)) {
+            event.replyChoices().queue();
             return;
         }
 
         try {
-            log.debug("Executing command: {}", commandName);
-            command.execute(event);
+            autoCompletes.onAutoComplete(event);
         } catch (Exception e) {
-            log.error("Error executing command {}: {}", commandName, e.getMessage(), e);
-            event.reply("An error occurred while executing this command").setEphemeral(true).queue();
+            log.error("Error completing command {}: {}", event.getName(), e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void onHttpRequest(HttpRequestEvent event) {
+        Route.CompiledRoute route = event.getRoute();
+        if (route.getBaseRoute() != Route.Interactions.CALLBACK || !event.getResponse().isOk()) {
+            return;
+        }
+
+        // interactions/{interaction_id}/{interaction_token}/callback
+        String[] segments = route.getCompiledRoute().split("/", 3);
+        try {
+            this.metrics.interactionAcknowledged(Long.parseLong(segments[1]));
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            log.debug("Unexpected interaction callback route {}", route.getCompiledRoute());
         }
     }
 
+    /**
+     * Sets the manager checking the permissions commands require through {@link RequiresPermissions}. Until
+     * one is set, commands requiring a permission are refused.
+     */
+    public void usePermissionManager(PermissionManager permissionManager) {
+        this.permissionManager = permissionManager;
+    }
+
+    /**
+     * Appends a stage run before every command, after the rate limit and permission checks. Routes are
+     * rebuilt, so this is meant for startup.
+     */
+    public void addMiddleware(CommandMiddleware middleware) {
+        this.middlewares.add(middleware);
+        this.commands.values().forEach(this::route);
+    }
+
+    public CommandMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Stops accepting commands and waits briefly for running ones to finish.
+     */
+    public void shutdown() {
+        this.executor.close();
+    }
+
     @Override
     public void registerCommand(Command command) {
         if (command == null) {
@@ -58,6 +188,10 @@ public class SimpleCommandRegistry extends ListenerAdapter implements CommandReg
         }
 
         this.commands.put(commandName, command);
+        if (command instanceof DeclaresPermissions declaring) {
+            this.permissionCatalog.declareAll(declaring.getDeclaredPermissions());
+        }
+        route(command);
         log.info("Command {} registered successfully", commandName);
     }
 
@@ -75,6 +209,7 @@ public class SimpleCommandRegistry extends ListenerAdapter implements CommandReg
         }
 
         this.commands.remove(commandName);
+        this.routes.values().removeIf(route -> route.command() == command);
         log.info("Command {} unregistered successfully", commandName);
     }
 
@@ -88,40 +223,134 @@ public class SimpleCommandRegistry extends ListenerAdapter implements CommandReg
         return Collections.unmodifiableCollection(commands.values());
     }
 
+    /**
+     * Resolves the route of every path of {@code command}: its own name and each of its subcommands.
+     */
+    private void route(Command command) {
+        String name = command.getName();
+        Map<String, String> requiredPermissions = command instanceof RequiresPermissions requiring
+                ? requiring.getRequiredPermissions() : Map.of();
+
+        List<String> paths = new ArrayList<>();
+        paths.add(name);
+        CommandData data = command.buildCommandData();
+        if (data instanceof SlashCommandData slash) {
+            for (SubcommandData subcommand : slash.getSubcommands()) {
+                paths.add(name + " " + subcommand.getName());
+            }
+            for (SubcommandGroupData group : slash.getSubcommandGroups()) {
+                for (SubcommandData subcommand : group.getSubcommands()) {
+                    paths.add(name + " " + group.getName() + " " + subcommand.getName());
+                }
+            }
+        }
+
+        for (String path : paths) {
+            String permission = requiredPermissions.getOrDefault(path, requiredPermissions.get(name));
+            CommandRateLimiter.Limit rateLimit = this.rateLimiter.limitFor(path);
+
+            List<CommandMiddleware> stages = new ArrayList<>();
+            if (!rateLimit.isUnlimited()) {
+                stages.add(this.rateLimitStage);
+            }
+            if (permission != null) {
+                stages.add(this.permissionStage);
+            }
+            stages.addAll(this.middlewares);
+
+            this.routes.put(path, new CommandRoute(command, path, CommandMetrics.commandPath(path), permission,
+                    rateLimit, stages.toArray(new CommandMiddleware[0])));
+        }
+    }
+
+    /**
+     * Brings Discord's commands in line with the registered ones. The remote commands are fetched and compared
+     * with the {@link CommandManifest} of the last synchronization; when neither side changed nothing else is
+     * sent, otherwise every command goes out in a single bulk overwrite, which leaves unchanged commands in
+     * place on Discord's side.
+     */
     @Override
     public void synchronizeCommands() {
         try {
+            Map<String, CommandData> local = new TreeMap<>();
+            this.commands.values().forEach(command -> {
+                CommandData data = command.buildCommandData();
+                local.put(data.getName(), data);
+            });
+            Map<String, String> localHashes = CommandManifest.hashAll(local.values());
+
             if (this.guildId != null && !this.guildId.isEmpty()) {
-                // Guild-specific commands
                 Guild guild = this.jda.getGuildById(guildId);
                 if (guild == null) {
                     log.error("Could not find guild with ID: {}", this.guildId);
                     return;
                 }
 
-                log.info("Synchronizing {} commands with guild: {}", this.commands.size(), guild.getName());
-                guild.updateCommands().queue(success -> {
-                    this.commands.values().forEach(command -> {
-                        guild.upsertCommand(command.buildCommandData()).queue(
-                                cmd -> log.debug("Registered command {} in guild {}", cmd.getName(), guild.getName()),
-                                error -> log.error("Failed to register command in guild: {}", error.getMessage())
-                        );
-                    });
-                });
+                log.info("Synchronizing {} commands with guild: {}", local.size(), guild.getName());
+                synchronize("guild:" + guild.getId(), local, localHashes, guild.retrieveCommands(), guild::updateCommands);
             } else {
-                // Global commands
-                log.info("Synchronizing {} commands globally", this.commands.size());
-                this.jda.updateCommands().queue(success -> {
-                    this.commands.values().forEach(command -> {
-                        this.jda.upsertCommand(command.buildCommandData()).queue(
-                                cmd -> log.debug("Registered global command {}", cmd.getName()),
-                                error -> log.error("Failed to register global command: {}", error.getMessage())
-                        );
-                    });
-                });
+                log.info("Synchronizing {} commands globally", local.size());
+                synchronize("global", local, localHashes, this.jda.retrieveCommands(), this.jda::updateCommands);
             }
         } catch (Exception e) {
             log.error("Failed to synchronize commands: {}", e.getMessage(), e);
         }
     }
+
+    private void synchronize(String scope, Map<String, CommandData> local, Map<String, String> localHashes,
+                             RestAction<List<net.dv8tion.jda.api.interactions.commands.Command>> retrieve,
+                             Supplier<CommandListUpdateAction> update) {
+        // Previously: one call to clear the commands, then one upsert per command
+        int naiveCalls = 1 + local.size();
+
+        retrieve.queue(remote -> {
+            CommandManifest manifest = CommandManifest.load(MANIFEST_FILE);
+            if (manifest != null && manifest.matches(scope, localHashes, remoteHashes(remote))) {
+                log.info("Commands are up to date, skipped synchronization ({} REST calls saved)", naiveCalls - 1);
+                return;
+            }
+
+            List<String> changed = new ArrayList<>();
+            Set<String> remoteNames = new HashSet<>();
+            remote.forEach(command -> remoteNames.add(command.getName()));
+            localHashes.forEach((name, hash) -> {
+                CommandManifest.Entry entry = manifest != null && manifest.getScope().equals(scope)
+                        ? manifest.getEntries().get(name) : null;
+                if (entry == null || !entry.local().equals(hash) || !remoteNames.contains(name)) {
+                    changed.add(name);
+                }
+            });
+            remoteNames.removeAll(localHashes.keySet());
+            log.info("Command changes: {} added or updated {}, {} removed {}", changed.size(), changed,
+                    remoteNames.size(), remoteNames);
+
+            update.get().addCommands(local.values()).queue(updated -> {
+                log.info("Synchronized {} commands ({} REST calls saved)", updated.size(), Math.max(0, naiveCalls - 2));
+                try {
+                    new CommandManifest(scope, manifestEntries(localHashes, updated)).save(MANIFEST_FILE);
+                } catch (IOException e) {
+                    log.warn("Failed to save command manifest", e);
+                }
+            }, error -> log.error("Failed to synchronize commands: {}", error.getMessage()));
+        }, error -> log.error("Failed to retrieve registered commands: {}", error.getMessage()));
+    }
+
+    private static Map<String, String> remoteHashes(List<net.dv8tion.jda.api.interactions.commands.Command> remote) {
+        List<CommandData> data = new ArrayList<>(remote.size());
+        remote.forEach(command -> data.add(CommandData.fromCommand(command)));
+        return CommandManifest.hashAll(data);
+    }
+
+    private static Map<String, CommandManifest.Entry> manifestEntries(Map<String, String> localHashes,
+                                                                      List<net.dv8tion.jda.api.interactions.commands.Command> updated) {
+        Map<String, String> remoteHashes = remoteHashes(updated);
+        Map<String, CommandManifest.Entry> entries = new TreeMap<>();
+        localHashes.forEach((name, hash) -> {
+            String remoteHash = remoteHashes.get(name);
+            if (remoteHash != null) {
+                entries.put(name, new CommandManifest.Entry(hash, remoteHash));
+            }
+        });
+        return entries;
+    }
 }
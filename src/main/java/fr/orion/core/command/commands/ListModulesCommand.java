@@ -4,8 +4,9 @@ import fr.orion.api.command.ParentCommand;
 import fr.orion.api.interfaction.EmbedTemplate;
 import fr.orion.api.module.ModuleDescriptor;
 import fr.orion.api.module.ModuleManager;
-import fr.orion.api.permission.PermissionManager;
+import fr.orion.core.interaction.InteractionReplies;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
 
@@ -14,28 +15,28 @@ import java.util.Collection;
 public class ListModulesCommand implements ParentCommand.SubcommandHandler {
 
     private final ModuleManager moduleManager;
-    private final PermissionManager permissionManager;
+    private final ModuleEmbedCache embedCache;
 
-    public ListModulesCommand(ModuleManager moduleManager, PermissionManager permissionManager) {
+    public ListModulesCommand(ModuleManager moduleManager) {
+        this(moduleManager, new ModuleEmbedCache());
+    }
+
+    public ListModulesCommand(ModuleManager moduleManager, ModuleEmbedCache embedCache) {
         this.moduleManager = moduleManager;
-        this.permissionManager = permissionManager;
+        this.embedCache = embedCache;
     }
 
     @Override
     public void execute(SlashCommandInteractionEvent event) {
-        if (!this.permissionManager.hasPermission(event.getMember(), "modules.view")) {
-            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                            "You don't have permission to view modules.").build())
-                    .setEphemeral(true).queue();
-            return;
-        }
+        InteractionReplies.reply(event, this.embedCache.get("list", this::render), false);
+    }
 
+    MessageEmbed render() {
         Collection<fr.orion.api.module.Module> modules = this.moduleManager.getModules();
 
         if (modules.isEmpty()) {
-            event.replyEmbeds(EmbedTemplate.info("No modules",
-                    "No modules are currently loaded.").build()).queue();
-            return;
+            return EmbedTemplate.info("No modules",
+                    "No modules are currently loaded.").build();
         }
 
         EmbedBuilder embed = EmbedTemplate.info("Loaded Modules",
@@ -65,7 +66,7 @@ public class ListModulesCommand implements ParentCommand.SubcommandHandler {
         }
 
         embed.setFooter("Use '/modules info <module>' for detailed information");
-        event.replyEmbeds(embed.build()).queue();
+        return embed.build();
     }
 
     @Override
@@ -0,0 +1,58 @@
+package fr.orion.core.command.commands;
+
+import fr.orion.api.module.ModuleManager;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Rendered module overview embeds, reused until the module set changes.
+ * <p>
+ * Core code that loads, enables, disables or reloads modules through the {@link ModuleManager} calls
+ * {@link #invalidate()}; nothing else rebuilds an embed, so a lookup is one map read. Every invalidation bumps
+ * a version, and an embed rendered against an older version is rendered again on its next lookup, so a render
+ * racing an invalidation is not kept. {@link MessageEmbed} is immutable, so one instance can be sent in any
+ * number of replies.
+ */
+public class ModuleEmbedCache {
+    private final Map<String, Rendered> embeds = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final List<Runnable> invalidationListeners = new CopyOnWriteArrayList<>();
+
+    private record Rendered(long version, MessageEmbed embed) {
+    }
+
+    /**
+     * @return the embed cached under {@code key}, rendering it first if the modules changed since
+     */
+    public MessageEmbed get(String key, Supplier<MessageEmbed> renderer) {
+        long version = this.version.get();
+        Rendered rendered = this.embeds.get(key);
+        if (rendered == null || rendered.version() != version) {
+            rendered = new Rendered(version, renderer.get());
+            this.embeds.put(key, rendered);
+        }
+        return rendered.embed();
+    }
+
+    /**
+     * Drops every embed and tells the {@link #onInvalidate listeners} that the modules changed.
+     */
+    public void invalidate() {
+        this.version.incrementAndGet();
+        this.embeds.clear();
+        this.invalidationListeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Runs {@code listener} on every {@link #invalidate()}, for other state derived from the module set.
+     */
+    public void onInvalidate(Runnable listener) {
+        this.invalidationListeners.add(listener);
+    }
+}
@@ -1,52 +1,71 @@
 package fr.orion.core.command.commands;
 
 import fr.orion.api.command.ParentCommand;
-import fr.orion.api.interfaction.ConfirmationSystem;
 import fr.orion.api.interfaction.EmbedTemplate;
 import fr.orion.api.module.ModuleDescriptor;
 import fr.orion.api.module.ModuleManager;
 import fr.orion.api.module.Module;
 import fr.orion.api.permission.PermissionManager;
+import fr.orion.core.command.AutoCompletes;
+import fr.orion.core.command.AutoDefers;
+import fr.orion.core.command.RequiresPermissions;
+import fr.orion.core.event.SimpleEventRegistry;
+import fr.orion.core.interaction.ComponentRouter;
+import fr.orion.core.interaction.InteractionReplies;
+import fr.orion.core.util.PrefixIndex;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
 
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-
-public class ModulesCommand extends ParentCommand {
-
-    public ModulesCommand(ModuleManager moduleManager, PermissionManager permissionManager) {
-
-        registerSubcommand("list", "List all modules with their status", new ListModulesCommand(moduleManager, permissionManager));
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+
+public class ModulesCommand extends ParentCommand implements RequiresPermissions, AutoCompletes, AutoDefers {
+    private static final int MAX_CHOICES = 25;
+
+    private final ModuleManager moduleManager;
+    private final PermissionManager permissionManager;
+    private final PrefixIndex moduleIds = new PrefixIndex();
+
+    /**
+     * @param eventRegistry registry to release the listeners of disabled and reloaded modules from, or
+     *                      {@code null} if listeners are not tracked per module
+     */
+    public ModulesCommand(ModuleManager moduleManager, PermissionManager permissionManager, ModuleEmbedCache embedCache,
+                          ComponentRouter componentRouter, SimpleEventRegistry eventRegistry) {
+        this.moduleManager = moduleManager;
+        this.permissionManager = permissionManager;
+        refreshModuleIds();
+        embedCache.onInvalidate(this::refreshModuleIds);
+
+        registerSubcommand("list", "List all modules with their status", new ListModulesCommand(moduleManager, embedCache));
         registerSubcommand("info", "Get detailed information about a specific module",
                 subcommand -> {
-                    subcommand.addOption(OptionType.STRING, "module", "The module ID to get info for", true);
+                    subcommand.addOption(OptionType.STRING, "module", "The module ID to get info for", true, true);
                 },
                 new SubcommandHandler() {
                     @Override
                     public SubcommandData getSubcommandData() {
                         return new SubcommandData("info", "Get detailed information about a specific module")
-                                .addOption(OptionType.STRING, "module", "The module ID to get info for", true);
+                                .addOption(OptionType.STRING, "module", "The module ID to get info for", true, true);
                     }
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "modules.view")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to view modules.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         String moduleId = event.getOption("module").getAsString();
                         Module module = moduleManager.getModule(moduleId);
 
                         if (module == null) {
-                            event.replyEmbeds(EmbedTemplate.error("Module not found",
-                                            "No module found with ID: `" + moduleId + "`").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.error("Module not found",
+                                            "No module found with ID: `" + moduleId + "`").build(), true);
                             return;
                         }
 
@@ -90,57 +109,48 @@ public class ModulesCommand extends ParentCommand {
                             embed.addField("Soft Dependencies", softDepList.toString(), false);
                         }
 
-                        event.replyEmbeds(embed.build()).queue();
+                        InteractionReplies.reply(event, embed.build(), false);
                     }
                 }
         );
 
         registerSubcommand("enable", "Enable a module",
                 subcommand -> {
-                    subcommand.addOption(OptionType.STRING, "module", "The module ID to enable", true);
+                    subcommand.addOption(OptionType.STRING, "module", "The module ID to enable", true, true);
                 },
                 new SubcommandHandler() {
                     @Override
                     public SubcommandData getSubcommandData() {
                         return new SubcommandData("enable", "Enable a module")
-                                .addOption(OptionType.STRING, "module", "The module ID to enable", true);
+                                .addOption(OptionType.STRING, "module", "The module ID to enable", true, true);
                     }
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "modules.manage")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to manage modules.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         String moduleId = event.getOption("module").getAsString();
                         Module module = moduleManager.getModule(moduleId);
 
                         if (module == null) {
-                            event.replyEmbeds(EmbedTemplate.error("Module not found",
-                                            "No module found with ID: `" + moduleId + "`").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.error("Module not found",
+                                            "No module found with ID: `" + moduleId + "`").build(), true);
                             return;
                         }
 
                         if (module.isEnabled()) {
-                            event.replyEmbeds(EmbedTemplate.warning("Module already enabled",
-                                            "Module `" + moduleId + "` is already enabled.").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.warning("Module already enabled",
+                                            "Module `" + moduleId + "` is already enabled.").build(), true);
                             return;
                         }
 
                         boolean success = moduleManager.enableModule(moduleId);
+                        embedCache.invalidate();
 
                         if (success) {
-                            event.replyEmbeds(EmbedTemplate.success("Module enabled",
-                                    "Module `" + moduleId + "` has been enabled successfully.").build()).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.success("Module enabled",
+                                    "Module `" + moduleId + "` has been enabled successfully.").build(), false);
                         } else {
-                            event.replyEmbeds(EmbedTemplate.error("Failed to enable module",
-                                            "Failed to enable module `" + moduleId + "`. Check console for details.").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.error("Failed to enable module",
+                                            "Failed to enable module `" + moduleId + "`. Check console for details.").build(), true);
                         }
                     }
                 }
@@ -148,47 +158,43 @@ public class ModulesCommand extends ParentCommand {
 
         registerSubcommand("disable", "Disable a module",
                 subcommand -> {
-                    subcommand.addOption(OptionType.STRING, "module", "The module ID to disable", true);
+                    subcommand.addOption(OptionType.STRING, "module", "The module ID to disable", true, true);
                 },
                 new SubcommandHandler() {
                     @Override
                     public SubcommandData getSubcommandData() {
                         return new SubcommandData("disable", "Disable a module")
-                                .addOption(OptionType.STRING, "module", "The module ID to disable", true);
+                                .addOption(OptionType.STRING, "module", "The module ID to disable", true, true);
                     }
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "modules.manage")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to manage modules.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         String moduleId = event.getOption("module").getAsString();
                         Module module = moduleManager.getModule(moduleId);
 
                         if (module == null) {
-                            event.replyEmbeds(EmbedTemplate.error("Module not found",
-                                            "No module found with ID: `" + moduleId + "`").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.error("Module not found",
+                                            "No module found with ID: `" + moduleId + "`").build(), true);
                             return;
                         }
 
                         if (!module.isEnabled()) {
-                            event.replyEmbeds(EmbedTemplate.warning("Module already disabled",
-                                            "Module `" + moduleId + "` is already disabled.").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.warning("Module already disabled",
+                                            "Module `" + moduleId + "` is already disabled.").build(), true);
                             return;
                         }
 
                         String moduleName = module.getModuleDescriptor().name();
+                        ClassLoader moduleLoader = module.getClass().getClassLoader();
 
-                        ConfirmationSystem.ConfirmationMessage confirmation = ConfirmationSystem.createConfirmation(
+                        componentRouter.confirm(event,
                                 "Are you sure you want to disable the module **" + moduleName + "** (`" + moduleId + "`)?",
                                 confirmEvent -> {
                                     boolean success = moduleManager.disableModule(moduleId);
+                                    embedCache.invalidate();
+                                    if (eventRegistry != null) {
+                                        eventRegistry.releaseModule(moduleId, moduleLoader);
+                                    }
 
                                     if (success) {
                                         confirmEvent.editMessageEmbeds(
@@ -209,10 +215,6 @@ public class ModulesCommand extends ParentCommand {
                                     ).setComponents().queue();
                                 }
                         );
-
-                        event.replyEmbeds(confirmation.embed())
-                                .addActionRow(confirmation.confirmButton(), confirmation.cancelButton())
-                                .queue();
                     }
                 }
         );
@@ -220,41 +222,38 @@ public class ModulesCommand extends ParentCommand {
         // Reload module
         registerSubcommand("reload", "Reload a module",
                 subcommand -> {
-                    subcommand.addOption(OptionType.STRING, "module", "The module ID to reload", true);
+                    subcommand.addOption(OptionType.STRING, "module", "The module ID to reload", true, true);
                 },
                 new SubcommandHandler() {
                     @Override
                     public SubcommandData getSubcommandData() {
                         return new SubcommandData("reload", "Reload a module")
-                                .addOption(OptionType.STRING, "module", "The module ID to reload", true);
+                                .addOption(OptionType.STRING, "module", "The module ID to reload", true, true);
                     }
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "modules.reload")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to reload modules.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         String moduleId = event.getOption("module").getAsString();
                         Module module = moduleManager.getModule(moduleId);
 
                         if (module == null) {
-                            event.replyEmbeds(EmbedTemplate.error("Module not found",
-                                            "No module found with ID: `" + moduleId + "`").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.error("Module not found",
+                                            "No module found with ID: `" + moduleId + "`").build(), true);
                             return;
                         }
 
                         String moduleName = module.getModuleDescriptor().name();
+                        ClassLoader moduleLoader = module.getClass().getClassLoader();
 
-                        ConfirmationSystem.ConfirmationMessage confirmation = ConfirmationSystem.createConfirmation(
+                        componentRouter.confirm(event,
                                 "Are you sure you want to reload the module **" + moduleName + "** (`" + moduleId + "`)?\n" +
                                         "This will disable the module, unload it, reload it from disk, and enable it again.",
                                 confirmEvent -> {
                                     boolean success = moduleManager.reloadModule(moduleId);
+                                    embedCache.invalidate();
+                                    if (eventRegistry != null) {
+                                        eventRegistry.releaseModule(moduleId, moduleLoader);
+                                    }
 
                                     if (success) {
                                         confirmEvent.editMessageEmbeds(
@@ -275,10 +274,6 @@ public class ModulesCommand extends ParentCommand {
                                     ).setComponents().queue();
                                 }
                         );
-
-                        event.replyEmbeds(confirmation.embed())
-                                .addActionRow(confirmation.confirmButton(), confirmation.cancelButton())
-                                .queue();
                     }
                 }
         );
@@ -294,47 +289,11 @@ public class ModulesCommand extends ParentCommand {
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "modules.view")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to view modules.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
-                        Collection<Module> allModules = moduleManager.getModules();
-                        Collection<Module> enabledModules = moduleManager.getEnabledModules();
-
-                        int totalModules = allModules.size();
-                        int enabled = enabledModules.size();
-                        int disabled = totalModules - enabled;
-
-                        EmbedBuilder embed = EmbedTemplate.info("Module System Status",
-                                        "Overview of the module system")
-                                .addField("Total Modules", String.valueOf(totalModules), true)
-                                .addField("Enabled", String.valueOf(enabled), true)
-                                .addField("Disabled", String.valueOf(disabled), true);
-
-                        if (totalModules > 0) {
-                            StringBuilder recentActivity = new StringBuilder();
-                            int count = 0;
-                            for (Module module : allModules) {
-                                if (count >= 5) break;
-                                ModuleDescriptor descriptor = module.getModuleDescriptor();
-                                String status = module.isEnabled() ? "✅" : "❌";
-                                recentActivity.append(status).append(" **").append(descriptor.name())
-                                        .append("** `v").append(descriptor.version()).append("`\n");
-                                count++;
-                            }
-
-                            if (totalModules > 5) {
-                                recentActivity.append("... and ").append(totalModules - 5).append(" more");
-                            }
-
-                            embed.addField("Modules", recentActivity.toString(), false);
+                        MessageEmbed status = embedCache.get("status", () -> renderStatus(moduleManager));
+                        if (eventRegistry != null) {
+                            status = withListenerCleanup(status, eventRegistry);
                         }
-
-                        embed.setFooter("Use '/modules list' to see all modules");
-                        event.replyEmbeds(embed.build()).queue();
+                        InteractionReplies.reply(event, status, false);
                     }
                 }
         );
@@ -345,6 +304,118 @@ public class ModulesCommand extends ParentCommand {
         return "modules";
     }
 
+    static MessageEmbed renderStatus(ModuleManager moduleManager) {
+        Collection<Module> allModules = moduleManager.getModules();
+        Collection<Module> enabledModules = moduleManager.getEnabledModules();
+
+        int totalModules = allModules.size();
+        int enabled = enabledModules.size();
+        int disabled = totalModules - enabled;
+
+        EmbedBuilder embed = EmbedTemplate.info("Module System Status",
+                        "Overview of the module system")
+                .addField("Total Modules", String.valueOf(totalModules), true)
+                .addField("Enabled", String.valueOf(enabled), true)
+                .addField("Disabled", String.valueOf(disabled), true);
+
+        if (totalModules > 0) {
+            StringBuilder recentActivity = new StringBuilder();
+            int count = 0;
+            for (Module module : allModules) {
+                if (count >= 5) break;
+                ModuleDescriptor descriptor = module.getModuleDescriptor();
+                String status = module.isEnabled() ? "✅" : "❌";
+                recentActivity.append(status).append(" **").append(descriptor.name())
+                        .append("** `v").append(descriptor.version()).append("`\n");
+                count++;
+            }
+
+            if (totalModules > 5) {
+                recentActivity.append("... and ").append(totalModules - 5).append(" more");
+            }
+
+            embed.addField("Modules", recentActivity.toString(), false);
+        }
+
+        embed.setFooter("Use '/modules list' to see all modules");
+        return embed.build();
+    }
+
+    /**
+     * Adds the listener cleanup counts to the cached status embed while old module class loaders are still
+     * alive. They change without the modules changing, so they are not part of the cached embed, and the
+     * cached embed is sent as is in the usual case where nothing leaked.
+     */
+    private static MessageEmbed withListenerCleanup(MessageEmbed status, SimpleEventRegistry eventRegistry) {
+        List<String> retained = eventRegistry.getRetainedModuleLoaders();
+        if (retained.isEmpty()) {
+            return status;
+        }
+
+        String cleanup = eventRegistry.getStaleListenerCount() + " stale listeners removed\n"
+                + retained.size() + " old module class loaders still alive: `"
+                + String.join("`, `", new TreeSet<>(retained)) + "`";
+        return new EmbedBuilder(status).addField("Listener Cleanup", cleanup, false).build();
+    }
+
+    /**
+     * Suggests module IDs; {@code enable} only offers disabled modules and {@code disable} enabled ones.
+     */
+    @Override
+    public void onAutoComplete(CommandAutoCompleteInteractionEvent event) {
+        if (!event.getFocusedOption().getName().equals("module")
+                || !this.permissionManager.hasPermission(event.getMember(), "modules.view")) {
+            event.replyChoices().queue();
+            return;
+        }
+
+        if (this.moduleManager.getModules().size() != this.moduleIds.size()) {
+            // Modules changed without going through an invalidation hook
+            refreshModuleIds();
+        }
+        String subcommand = event.getSubcommandName();
+        Predicate<String> filter = switch (subcommand != null ? subcommand : "") {
+            case "enable" -> id -> isEnabled(id) == Boolean.FALSE;
+            case "disable" -> id -> isEnabled(id) == Boolean.TRUE;
+            default -> id -> true;
+        };
+        event.replyChoiceStrings(this.moduleIds.complete(event.getFocusedOption().getValue(), MAX_CHOICES, filter)).queue();
+    }
+
+    private Boolean isEnabled(String moduleId) {
+        Module module = this.moduleManager.getModule(moduleId);
+        return module != null ? module.isEnabled() : null;
+    }
+
+    /**
+     * Brings the module ID index in line with the loaded modules, adding and removing only what changed. Runs
+     * whenever the module embed cache is invalidated, which core code does on every load, enable, disable and
+     * reload.
+     */
+    private void refreshModuleIds() {
+        synchronized (this.moduleIds) {
+            Set<String> loaded = new HashSet<>();
+            for (Module module : this.moduleManager.getModules()) {
+                loaded.add(module.getModuleDescriptor().id());
+            }
+            for (String indexed : this.moduleIds.complete("", Integer.MAX_VALUE)) {
+                if (!loaded.remove(indexed)) {
+                    this.moduleIds.remove(indexed);
+                }
+            }
+            this.moduleIds.addAll(loaded);
+        }
+    }
+
+    @Override
+    public Map<String, String> getRequiredPermissions() {
+        return Map.of(
+                "modules", "modules.view",
+                "modules enable", "modules.manage",
+                "modules disable", "modules.manage",
+                "modules reload", "modules.reload");
+    }
+
     @Override
     public String getDescription() {
         return "Manage bot modules (list enable disable reload)";
@@ -0,0 +1,95 @@
+package fr.orion.core.command.commands;
+
+import fr.orion.api.command.ParentCommand;
+import fr.orion.api.interfaction.EmbedTemplate;
+import fr.orion.core.command.AutoDefers;
+import fr.orion.core.command.RepliesEphemerally;
+import fr.orion.core.command.RequiresPermissions;
+import fr.orion.core.interaction.InteractionReplies;
+import fr.orion.core.metrics.CommandMetrics;
+import fr.orion.core.metrics.LatencyHistogram;
+import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class OrionCommand extends ParentCommand implements RequiresPermissions, AutoDefers, RepliesEphemerally {
+    private static final int MAX_COMMAND_FIELDS = 24;
+
+    public OrionCommand(CommandMetrics metrics) {
+
+        registerSubcommand("metrics", "Show command latency and error statistics",
+                null,
+                new SubcommandHandler() {
+                    @Override
+                    public SubcommandData getSubcommandData() {
+                        return new SubcommandData("metrics", "Show command latency and error statistics");
+                    }
+
+                    @Override
+                    public void execute(SlashCommandInteractionEvent event) {
+                        List<CommandMetrics.CommandStats> stats = new ArrayList<>(metrics.snapshot().values());
+                        if (stats.isEmpty()) {
+                            InteractionReplies.reply(event, EmbedTemplate.info("Command Metrics",
+                                    "No commands have run yet.").build(), true);
+                            return;
+                        }
+
+                        stats.sort(Comparator.comparingLong(CommandMetrics.CommandStats::invocations).reversed());
+                        EmbedBuilder embed = EmbedTemplate.info("Command Metrics",
+                                "Latencies since startup, as p50 / p99 / max");
+                        for (CommandMetrics.CommandStats command : stats.subList(0, Math.min(stats.size(), MAX_COMMAND_FIELDS))) {
+                            embed.addField("/" + command.commandPath().replace('/', ' '),
+                                    command.invocations() + " runs, " + command.errors() + " errors\n"
+                                            + "Handler: " + format(command.handler()) + "\n"
+                                            + "Queue: " + format(command.queue()) + "\n"
+                                            + "Ack: " + format(command.acknowledgement()),
+                                    true);
+                        }
+                        if (stats.size() > MAX_COMMAND_FIELDS) {
+                            embed.setFooter("... and " + (stats.size() - MAX_COMMAND_FIELDS) + " less used commands");
+                        }
+                        InteractionReplies.reply(event, embed.build(), true);
+                    }
+                }
+        );
+    }
+
+    private static String format(LatencyHistogram.Summary summary) {
+        if (summary.count() == 0) {
+            return "-";
+        }
+        return "`" + formatNanos(summary.p50Nanos()) + "` / `" + formatNanos(summary.p99Nanos())
+                + "` / `" + formatNanos(summary.maxNanos()) + "`";
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(1)) {
+            return String.format("%.2fms", nanos / 1_000_000.0);
+        }
+        if (nanos < TimeUnit.SECONDS.toNanos(1)) {
+            return TimeUnit.NANOSECONDS.toMillis(nanos) + "ms";
+        }
+        return String.format("%.2fs", nanos / 1_000_000_000.0);
+    }
+
+    @Override
+    public String getName() {
+        return "orion";
+    }
+
+    @Override
+    public String getDescription() {
+        return "Inspect the bot";
+    }
+
+    @Override
+    public Map<String, String> getRequiredPermissions() {
+        return Map.of("orion metrics", "orion.metrics");
+    }
+}
@@ -1,53 +1,74 @@
 package fr.orion.core.command.commands;
 
 import fr.orion.api.command.ParentCommand;
-import fr.orion.api.interfaction.ConfirmationSystem;
 import fr.orion.api.interfaction.EmbedTemplate;
 import fr.orion.api.permission.PermissionManager;
+import fr.orion.core.command.AutoCompletes;
+import fr.orion.core.command.AutoDefers;
+import fr.orion.core.command.RequiresPermissions;
+import fr.orion.core.interaction.ComponentRouter;
+import fr.orion.core.interaction.InteractionReplies;
+import fr.orion.core.permission.BatchPermissionManager;
+import fr.orion.core.permission.PermissionBatch;
+import fr.orion.core.permission.PermissionBatchReader;
+import fr.orion.core.permission.PermissionCatalog;
+import fr.orion.core.permission.PermissionJournal;
+import fr.orion.core.permission.SuggestsPermissions;
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.interaction.command.CommandAutoCompleteInteractionEvent;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
 import net.dv8tion.jda.api.interactions.commands.build.SubcommandData;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
-public class PermissionCommand extends ParentCommand {
+public class PermissionCommand extends ParentCommand implements RequiresPermissions, AutoCompletes, AutoDefers {
+    private static final int MAX_BULK_FILE_SIZE = 1024 * 1024;
+    private static final int MAX_LISTED_IDS = 10;
+    private static final int MAX_CHOICES = 25;
 
-    public PermissionCommand(PermissionManager permissionManager) {
+    private final PermissionManager permissionManager;
+    private final PermissionCatalog permissionCatalog;
+
+    public PermissionCommand(PermissionManager permissionManager, PermissionCatalog permissionCatalog,
+                             ComponentRouter componentRouter) {
+        this.permissionManager = permissionManager;
+        this.permissionCatalog = permissionCatalog;
 
         registerSubcommand("user-add", "Add a permission to a user",
                 subcommand -> {
                     subcommand.addOption(OptionType.USER, "user", "The user to add permission to", true);
-                    subcommand.addOption(OptionType.STRING, "permission", "The permission to add (e.g., moderation.kick)", true);
+                    subcommand.addOption(OptionType.STRING, "permission", "The permission to add (e.g., moderation.kick)", true, true);
                 },
                 new SubcommandHandler() {
                     @Override
                     public SubcommandData getSubcommandData() {
                         return new SubcommandData("user-add", "Add a permission to a user")
                                 .addOption(OptionType.USER, "user", "The user to add permission to", true)
-                                .addOption(OptionType.STRING, "permission", "The permission to add", true);
+                                .addOption(OptionType.STRING, "permission", "The permission to add", true, true);
                     }
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "permissions.manage")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to manage permissions.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         User user = event.getOption("user").getAsUser();
                         String permission = event.getOption("permission").getAsString().toLowerCase();
 
                         permissionManager.addUserPermission(user.getId(), permission);
 
-                        event.replyEmbeds(EmbedTemplate.success("Permission added",
-                                        "Permission `" + permission + "` has been added to " + user.getAsMention()).build())
-                                .queue();
+                        InteractionReplies.reply(event, EmbedTemplate.success("Permission added",
+                                        "Permission `" + permission + "` has been added to " + user.getAsMention()).build(), false);
                     }
                 }
         );
@@ -55,33 +76,25 @@ public class PermissionCommand extends ParentCommand {
         registerSubcommand("user-remove", "Remove a permission from a user",
                 subcommand -> {
                     subcommand.addOption(OptionType.USER, "user", "The user to remove permission from", true);
-                    subcommand.addOption(OptionType.STRING, "permission", "The permission to remove", true);
+                    subcommand.addOption(OptionType.STRING, "permission", "The permission to remove", true, true);
                 },
                 new SubcommandHandler() {
                     @Override
                     public SubcommandData getSubcommandData() {
                         return new SubcommandData("user-remove", "Remove a permission from a user")
                                 .addOption(OptionType.USER, "user", "The user to remove permission from", true)
-                                .addOption(OptionType.STRING, "permission", "The permission to remove", true);
+                                .addOption(OptionType.STRING, "permission", "The permission to remove", true, true);
                     }
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "permissions.manage")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to manage permissions.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         User user = event.getOption("user").getAsUser();
                         String permission = event.getOption("permission").getAsString().toLowerCase();
 
                         permissionManager.removeUserPermission(user.getId(), permission);
 
-                        event.replyEmbeds(EmbedTemplate.success("Permission removed",
-                                        "Permission `" + permission + "` has been removed from " + user.getAsMention()).build())
-                                .queue();
+                        InteractionReplies.reply(event, EmbedTemplate.success("Permission removed",
+                                        "Permission `" + permission + "` has been removed from " + user.getAsMention()).build(), false);
                     }
                 }
         );
@@ -89,33 +102,25 @@ public class PermissionCommand extends ParentCommand {
         registerSubcommand("role-add", "Add a permission to a role",
                 subcommand -> {
                     subcommand.addOption(OptionType.ROLE, "role", "The role to add permission to", true);
-                    subcommand.addOption(OptionType.STRING, "permission", "The permission to add", true);
+                    subcommand.addOption(OptionType.STRING, "permission", "The permission to add", true, true);
                 },
                 new SubcommandHandler() {
                     @Override
                     public SubcommandData getSubcommandData() {
                         return new SubcommandData("role-add", "Add a permission to a role")
                                 .addOption(OptionType.ROLE, "role", "The role to add permission to", true)
-                                .addOption(OptionType.STRING, "permission", "The permission to add", true);
+                                .addOption(OptionType.STRING, "permission", "The permission to add", true, true);
                     }
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "permissions.manage")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to manage permissions.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         Role role = event.getOption("role").getAsRole();
                         String permission = event.getOption("permission").getAsString().toLowerCase();
 
                         permissionManager.addRolePermission(role.getId(), permission);
 
-                        event.replyEmbeds(EmbedTemplate.success("Permission added",
-                                        "Permission `" + permission + "` has been added to " + role.getAsMention()).build())
-                                .queue();
+                        InteractionReplies.reply(event, EmbedTemplate.success("Permission added",
+                                        "Permission `" + permission + "` has been added to " + role.getAsMention()).build(), false);
                     }
                 }
         );
@@ -123,33 +128,25 @@ public class PermissionCommand extends ParentCommand {
         registerSubcommand("role-remove", "Remove a permission from a role",
                 subcommand -> {
                     subcommand.addOption(OptionType.ROLE, "role", "The role to remove permission from", true);
-                    subcommand.addOption(OptionType.STRING, "permission", "The permission to remove", true);
+                    subcommand.addOption(OptionType.STRING, "permission", "The permission to remove", true, true);
                 },
                 new SubcommandHandler() {
                     @Override
                     public SubcommandData getSubcommandData() {
                         return new SubcommandData("role-remove", "Remove a permission from a role")
                                 .addOption(OptionType.ROLE, "role", "The role to remove permission from", true)
-                                .addOption(OptionType.STRING, "permission", "The permission to remove", true);
+                                .addOption(OptionType.STRING, "permission", "The permission to remove", true, true);
                     }
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "permissions.manage")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to manage permissions.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         Role role = event.getOption("role").getAsRole();
                         String permission = event.getOption("permission").getAsString().toLowerCase();
 
                         permissionManager.removeRolePermission(role.getId(), permission);
 
-                        event.replyEmbeds(EmbedTemplate.success("Permission removed",
-                                        "Permission `" + permission + "` has been removed from " + role.getAsMention()).build())
-                                .queue();
+                        InteractionReplies.reply(event, EmbedTemplate.success("Permission removed",
+                                        "Permission `" + permission + "` has been removed from " + role.getAsMention()).build(), false);
                     }
                 }
         );
@@ -169,20 +166,12 @@ public class PermissionCommand extends ParentCommand {
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "permissions.view")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to view permissions.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         User user = event.getOption("user") != null ? event.getOption("user").getAsUser() : null;
                         Role role = event.getOption("role") != null ? event.getOption("role").getAsRole() : null;
 
                         if (user == null && role == null) {
-                            event.replyEmbeds(EmbedTemplate.error("Invalid arguments",
-                                            "You must specify either a user or a role.").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.error("Invalid arguments",
+                                            "You must specify either a user or a role.").build(), true);
                             return;
                         }
 
@@ -209,7 +198,7 @@ public class PermissionCommand extends ParentCommand {
                             embed.addField("Permissions (" + permissions.size() + ")", permList.toString(), false);
                         }
 
-                        event.replyEmbeds(embed.build()).queue();
+                        InteractionReplies.reply(event, embed.build(), false);
                     }
                 }
         );
@@ -217,33 +206,25 @@ public class PermissionCommand extends ParentCommand {
         registerSubcommand("check", "Check if a user has a specific permission",
                 subcommand -> {
                     subcommand.addOption(OptionType.USER, "user", "The user to check", true);
-                    subcommand.addOption(OptionType.STRING, "permission", "The permission to check", true);
+                    subcommand.addOption(OptionType.STRING, "permission", "The permission to check", true, true);
                 },
                 new SubcommandHandler() {
                     @Override
                     public SubcommandData getSubcommandData() {
                         return new SubcommandData("check", "Check if a user has a specific permission")
                                 .addOption(OptionType.USER, "user", "The user to check", true)
-                                .addOption(OptionType.STRING, "permission", "The permission to check", true);
+                                .addOption(OptionType.STRING, "permission", "The permission to check", true, true);
                     }
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "permissions.view")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to view permissions.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         User user = event.getOption("user").getAsUser();
                         String permission = event.getOption("permission").getAsString();
 
                         Member member = event.getGuild().getMember(user);
                         if (member == null) {
-                            event.replyEmbeds(EmbedTemplate.error("User not found",
-                                            "User is not a member of this server.").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.error("User not found",
+                                            "User is not a member of this server.").build(), true);
                             return;
                         }
 
@@ -255,7 +236,80 @@ public class PermissionCommand extends ParentCommand {
                                 EmbedTemplate.error("Permission Check",
                                         user.getAsMention() + " **does not have** permission `" + permission + "`");
 
-                        event.replyEmbeds(embed.build()).queue();
+                        InteractionReplies.reply(event, embed.build(), false);
+                    }
+                }
+        );
+
+        registerSubcommand("bulk", "Apply permission changes from a CSV or YAML file",
+                subcommand -> subcommand.addOption(OptionType.ATTACHMENT, "file", "CSV or YAML file of changes", true),
+                new SubcommandHandler() {
+                    @Override
+                    public SubcommandData getSubcommandData() {
+                        return new SubcommandData("bulk", "Apply permission changes from a CSV or YAML file")
+                                .addOption(OptionType.ATTACHMENT, "file", "CSV or YAML file of changes", true);
+                    }
+
+                    @Override
+                    public void execute(SlashCommandInteractionEvent event) {
+                        Message.Attachment attachment = event.getOption("file").getAsAttachment();
+                        if (attachment.getSize() > MAX_BULK_FILE_SIZE) {
+                            InteractionReplies.reply(event, EmbedTemplate.error("File too large",
+                                            "Bulk files are limited to " + (MAX_BULK_FILE_SIZE / 1024) + " KiB.").build(), true);
+                            return;
+                        }
+
+                        InteractionReplies.defer(event, false);
+                        attachment.getProxy().download().whenComplete((input, error) -> {
+                            if (error != null) {
+                                InteractionReplies.reply(event, EmbedTemplate.error("Download failed",
+                                        "Could not download `" + attachment.getFileName() + "`.").build(), false);
+                                return;
+                            }
+
+                            PermissionBatch batch;
+                            try (InputStream stream = input) {
+                                batch = PermissionBatchReader.read(attachment.getFileName(), stream);
+                            } catch (IOException | RuntimeException e) {
+                                InteractionReplies.reply(event, EmbedTemplate.error("Invalid file",
+                                        "No changes were applied.\n" + e.getMessage()).build(), false);
+                                return;
+                            }
+
+                            Set<String> unknownRoles = unknownRoles(event.getGuild(), batch);
+                            if (!unknownRoles.isEmpty()) {
+                                InteractionReplies.reply(event, EmbedTemplate.error("Unknown roles",
+                                        "No changes were applied. These role IDs are not roles of this server:\n"
+                                                + describeIds(unknownRoles)).build(), false);
+                                return;
+                            }
+
+                            long start = System.nanoTime();
+                            PermissionBatch.Result result;
+                            try {
+                                result = applyBatch(permissionManager, batch);
+                            } catch (PartialBatchException e) {
+                                InteractionReplies.reply(event, EmbedTemplate.error("Bulk changes partially applied",
+                                        "Change " + (e.failedIndex + 1) + " of " + batch.size() + " failed and the rest were not applied. "
+                                                + "The " + e.failedIndex + " changes before it were kept, " + e.applied
+                                                + " of which took effect.\n"
+                                                + e.getCause().getMessage()).build(), false);
+                                return;
+                            } catch (RuntimeException e) {
+                                InteractionReplies.reply(event, EmbedTemplate.error("Bulk changes failed",
+                                        "No changes were applied.\n" + e.getMessage()).build(), false);
+                                return;
+                            }
+                            long elapsed = (System.nanoTime() - start) / 1_000_000;
+
+                            InteractionReplies.reply(event, EmbedTemplate.success("Bulk changes applied",
+                                            "Applied " + result.applied() + " of " + batch.size() + " changes in " + elapsed + " ms.")
+                                    .addField("Grants", String.valueOf(result.grants()), true)
+                                    .addField("Revokes", String.valueOf(result.revokes()), true)
+                                    .addField("Clears", String.valueOf(result.clears()), true)
+                                    .addField("Unchanged", String.valueOf(result.unchanged()), true)
+                                    .build(), false);
+                        });
                     }
                 }
         );
@@ -275,26 +329,18 @@ public class PermissionCommand extends ParentCommand {
 
                     @Override
                     public void execute(SlashCommandInteractionEvent event) {
-                        if (!permissionManager.hasPermission(event.getMember(), "permissions.manage")) {
-                            event.replyEmbeds(EmbedTemplate.error("Permission denied",
-                                            "You don't have permission to manage permissions.").build())
-                                    .setEphemeral(true).queue();
-                            return;
-                        }
-
                         User user = event.getOption("user") != null ? event.getOption("user").getAsUser() : null;
                         Role role = event.getOption("role") != null ? event.getOption("role").getAsRole() : null;
 
                         if (user == null && role == null) {
-                            event.replyEmbeds(EmbedTemplate.error("Invalid arguments",
-                                            "You must specify either a user or a role.").build())
-                                    .setEphemeral(true).queue();
+                            InteractionReplies.reply(event, EmbedTemplate.error("Invalid arguments",
+                                            "You must specify either a user or a role.").build(), true);
                             return;
                         }
 
                         String target = user != null ? user.getAsMention() : role.getAsMention();
 
-                        ConfirmationSystem.ConfirmationMessage confirmation = ConfirmationSystem.createConfirmation(
+                        componentRouter.confirm(event,
                                 "Are you sure you want to clear all permissions for " + target + "?",
                                 confirmEvent -> {
                                     if (user != null) {
@@ -315,22 +361,176 @@ public class PermissionCommand extends ParentCommand {
                                     ).setComponents().queue();
                                 }
                         );
-
-                        event.replyEmbeds(confirmation.embed())
-                                .addActionRow(confirmation.confirmButton(), confirmation.cancelButton())
-                                .queue();
                     }
                 }
         );
     }
 
+    /**
+     * @return the role IDs of {@code batch} that are not roles of {@code guild}, in file order
+     */
+    private static Set<String> unknownRoles(Guild guild, PermissionBatch batch) {
+        Set<String> unknown = new LinkedHashSet<>();
+        for (PermissionBatch.Change change : batch.changes()) {
+            if (change.principal() == PermissionJournal.Principal.ROLE
+                    && (guild == null || guild.getRoleById(change.id()) == null)) {
+                unknown.add(change.id());
+            }
+        }
+        return unknown;
+    }
+
+    private static String describeIds(Set<String> ids) {
+        StringBuilder description = new StringBuilder();
+        int listed = 0;
+        for (String id : ids) {
+            if (listed++ == MAX_LISTED_IDS) {
+                return description.append("and ").append(ids.size() - MAX_LISTED_IDS).append(" more").toString();
+            }
+            description.append('`').append(id).append("`\n");
+        }
+        return description.toString();
+    }
+
+    /**
+     * Applies {@code batch} one change at a time when the manager cannot apply it as a transaction. A change
+     * counts as applied when the principal's grants differ before and after it.
+     *
+     * @throws PartialBatchException if a change failed after earlier ones were already applied, which only
+     *                               happens without a {@link BatchPermissionManager}
+     */
+    private static PermissionBatch.Result applyBatch(PermissionManager permissionManager, PermissionBatch batch) {
+        if (permissionManager instanceof BatchPermissionManager batchManager) {
+            return batchManager.applyBatch(batch);
+        }
+
+        int applied = 0;
+        int grants = 0;
+        int revokes = 0;
+        int clears = 0;
+        List<PermissionBatch.Change> changes = batch.changes();
+        for (int i = 0; i < changes.size(); i++) {
+            PermissionBatch.Change change = changes.get(i);
+            try {
+                if (!applyChange(permissionManager, change)) {
+                    continue;
+                }
+            } catch (RuntimeException e) {
+                throw new PartialBatchException(i, applied, e);
+            }
+
+            applied++;
+            switch (change.operation()) {
+                case ADD -> grants++;
+                case REMOVE -> revokes++;
+                case CLEAR -> clears++;
+            }
+        }
+        return new PermissionBatch.Result(applied, batch.size() - applied, grants, revokes, clears);
+    }
+
+    /**
+     * @return whether the principal's grants changed
+     */
+    private static boolean applyChange(PermissionManager permissionManager, PermissionBatch.Change change) {
+        boolean user = change.principal() == PermissionJournal.Principal.USER;
+        Set<String> before = Set.copyOf(permissions(permissionManager, user, change.id()));
+        switch (change.operation()) {
+            case ADD -> {
+                if (user) {
+                    permissionManager.addUserPermission(change.id(), change.permission());
+                } else {
+                    permissionManager.addRolePermission(change.id(), change.permission());
+                }
+            }
+            case REMOVE -> {
+                if (user) {
+                    permissionManager.removeUserPermission(change.id(), change.permission());
+                } else {
+                    permissionManager.removeRolePermission(change.id(), change.permission());
+                }
+            }
+            case CLEAR -> {
+                if (user) {
+                    permissionManager.clearUserPermissions(change.id());
+                } else {
+                    permissionManager.clearRolePermissions(change.id());
+                }
+            }
+        }
+        return !before.equals(permissions(permissionManager, user, change.id()));
+    }
+
+    private static Set<String> permissions(PermissionManager permissionManager, boolean user, String id) {
+        return user ? permissionManager.getUserPermissions(id) : permissionManager.getRolePermissions(id);
+    }
+
     @Override
     public String getName() {
         return "permission";
     }
 
+    /**
+     * Suggests permission nodes: the target's own grants when removing, otherwise declared permissions and
+     * nodes currently granted to anyone. Members who cannot view permissions get no suggestions.
+     */
+    @Override
+    public void onAutoComplete(CommandAutoCompleteInteractionEvent event) {
+        if (!event.getFocusedOption().getName().equals("permission")
+                || !this.permissionManager.hasPermission(event.getMember(), "permissions.view")) {
+            event.replyChoices().queue();
+            return;
+        }
+
+        String prefix = event.getFocusedOption().getValue().toLowerCase();
+        String subcommand = event.getSubcommandName();
+        Set<String> suggestions = new TreeSet<>();
+        if ("user-remove".equals(subcommand) || "role-remove".equals(subcommand)) {
+            OptionMapping target = event.getOption(subcommand.startsWith("user") ? "user" : "role");
+            if (target != null) {
+                Set<String> granted = subcommand.startsWith("user")
+                        ? this.permissionManager.getUserPermissions(target.getAsString())
+                        : this.permissionManager.getRolePermissions(target.getAsString());
+                for (String permission : granted) {
+                    if (permission.startsWith(prefix)) {
+                        suggestions.add(permission);
+                    }
+                }
+            }
+        } else {
+            suggestions.addAll(this.permissionCatalog.complete(prefix, MAX_CHOICES));
+            if (this.permissionManager instanceof SuggestsPermissions suggester && suggestions.size() < MAX_CHOICES) {
+                suggestions.addAll(suggester.suggestPermissions(prefix, MAX_CHOICES));
+            }
+        }
+
+        event.replyChoiceStrings(suggestions.stream().limit(MAX_CHOICES).toList()).queue();
+    }
+
+    @Override
+    public Map<String, String> getRequiredPermissions() {
+        return Map.of(
+                "permission", "permissions.manage",
+                "permission list", "permissions.view",
+                "permission check", "permissions.view");
+    }
+
     @Override
     public String getDescription() {
         return "Manage user and role permissions";
     }
-}
\ No newline at end of file
+
+    /**
+     * A change of a batch applied change by change failed, after the changes before it were applied.
+     */
+    private static final class PartialBatchException extends RuntimeException {
+        private final int failedIndex;
+        private final int applied;
+
+        private PartialBatchException(int failedIndex, int applied, RuntimeException cause) {
+            super("Change " + (failedIndex + 1) + " failed after " + applied + " changes took effect", cause);
+            this.failedIndex = failedIndex;
+            this.applied = applied;
+        }
+    }
+}
@@ -1,5 +1,12 @@
 package fr.orion.core.config;
 
+import fr.orion.core.command.CommandExecutor;
+import fr.orion.core.command.CommandRateLimiter;
+import fr.orion.core.database.ConnectionPool;
+import fr.orion.core.event.EventBus;
+import fr.orion.core.event.ModuleEventExecutor;
+import fr.orion.core.interaction.ComponentRouter;
+import fr.orion.core.permission.ShardedPermissionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yaml.snakeyaml.Yaml;
@@ -9,7 +16,10 @@ import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
 
 public class BotConfig {
@@ -20,6 +30,29 @@ public class BotConfig {
     private String guildId;
     private boolean devMode;
     private String logLevel;
+    private boolean commandVirtualThreads;
+    private int commandPoolSize;
+    private int commandMaxConcurrentPerCommand;
+    private int commandAutoDeferMillis;
+    private CommandRateLimiter.Limit commandDefaultRateLimit;
+    private Map<String, CommandRateLimiter.Limit> commandRateLimits;
+    private int confirmationTimeoutSeconds;
+    private boolean eventIsolateModules;
+    private boolean eventVirtualThreads;
+    private int eventQueueCapacity;
+    private ModuleEventExecutor.OverflowPolicy eventOverflowPolicy;
+    private int eventSlowListenerMillis;
+    private boolean databaseEnabled;
+    private String databaseUrl;
+    private String databaseUsername;
+    private String databasePassword;
+    private int databasePoolSize;
+    private boolean permissionJournal;
+    private boolean permissionBinarySnapshot;
+    private boolean permissionSharded;
+    private boolean permissionWatch;
+    private int permissionMaxResidentGuilds;
+    private int permissionMaxResidentEntries;
 
     public BotConfig() {
         loadConfig();
@@ -43,6 +76,30 @@ public class BotConfig {
             this.guildId = getString(config, "bot.guildId", "");
             this.devMode = getBoolean(config, "bot.devMode", false);
             this.logLevel = getString(config, "bot.logLevel", "INFO");
+            this.commandVirtualThreads = getBoolean(config, "commands.virtualThreads", true);
+            this.commandPoolSize = getInt(config, "commands.poolSize", CommandExecutor.DEFAULT_POOL_SIZE);
+            this.commandMaxConcurrentPerCommand = getInt(config, "commands.maxConcurrentPerCommand", CommandExecutor.DEFAULT_MAX_CONCURRENT_PER_COMMAND);
+            this.commandAutoDeferMillis = getInt(config, "commands.autoDeferMillis", (int) CommandExecutor.DEFAULT_AUTO_DEFER.toMillis());
+            this.commandRateLimits = getRateLimits(config, "commands.rateLimits");
+            this.commandDefaultRateLimit = this.commandRateLimits.getOrDefault("default", CommandRateLimiter.DEFAULT_LIMIT);
+            this.commandRateLimits.remove("default");
+            this.confirmationTimeoutSeconds = getInt(config, "commands.confirmationTimeoutSeconds", (int) ComponentRouter.DEFAULT_TTL.toSeconds());
+            this.eventIsolateModules = getBoolean(config, "events.isolateModules", true);
+            this.eventVirtualThreads = getBoolean(config, "events.virtualThreads", true);
+            this.eventQueueCapacity = getInt(config, "events.queueCapacity", ModuleEventExecutor.DEFAULT_QUEUE_CAPACITY);
+            this.eventOverflowPolicy = getOverflowPolicy(config, "events.overflowPolicy", ModuleEventExecutor.OverflowPolicy.DROP_OLDEST);
+            this.eventSlowListenerMillis = getInt(config, "events.slowListenerMillis", (int) EventBus.DEFAULT_SLOW_HANDLER_THRESHOLD.toMillis());
+            this.databaseEnabled = getBoolean(config, "database.enabled", false);
+            this.databaseUrl = getString(config, "database.url", "jdbc:sqlite:orion.db");
+            this.databaseUsername = getString(config, "database.username", "");
+            this.databasePassword = getString(config, "database.password", "");
+            this.databasePoolSize = getInt(config, "database.poolSize", ConnectionPool.DEFAULT_SIZE);
+            this.permissionJournal = getBoolean(config, "permissions.journal", false);
+            this.permissionBinarySnapshot = getBoolean(config, "permissions.binarySnapshot", false);
+            this.permissionSharded = getBoolean(config, "permissions.sharded", false);
+            this.permissionWatch = getBoolean(config, "permissions.watch", true);
+            this.permissionMaxResidentGuilds = getInt(config, "permissions.maxResidentGuilds", ShardedPermissionManager.DEFAULT_MAX_RESIDENT_GUILDS);
+            this.permissionMaxResidentEntries = getInt(config, "permissions.maxResidentEntries", ShardedPermissionManager.DEFAULT_MAX_RESIDENT_ENTRIES);
 
             validateConfig();
 
@@ -79,13 +136,45 @@ public class BotConfig {
             botConfig.put("logLevel", "INFO");
             config.put("bot", botConfig);
 
+            Map<String, Object> commandsConfig = new HashMap<>();
+            commandsConfig.put("virtualThreads", true);
+            commandsConfig.put("poolSize", CommandExecutor.DEFAULT_POOL_SIZE);
+            commandsConfig.put("maxConcurrentPerCommand", CommandExecutor.DEFAULT_MAX_CONCURRENT_PER_COMMAND);
+            commandsConfig.put("autoDeferMillis", (int) CommandExecutor.DEFAULT_AUTO_DEFER.toMillis());
+            Map<String, Object> rateLimits = new LinkedHashMap<>();
+            rateLimits.put("default", rateLimit(CommandRateLimiter.DEFAULT_LIMIT.capacity(), CommandRateLimiter.DEFAULT_LIMIT.period().toSeconds()));
+            rateLimits.put("modules reload", rateLimit(2, 60));
+            rateLimits.put("permission list", rateLimit(3, 30));
+            rateLimits.put("permission bulk", rateLimit(2, 60));
+            commandsConfig.put("rateLimits", rateLimits);
+            commandsConfig.put("confirmationTimeoutSeconds", (int) ComponentRouter.DEFAULT_TTL.toSeconds());
+            config.put("commands", commandsConfig);
+
+            Map<String, Object> eventsConfig = new HashMap<>();
+            eventsConfig.put("isolateModules", true);
+            eventsConfig.put("virtualThreads", true);
+            eventsConfig.put("queueCapacity", ModuleEventExecutor.DEFAULT_QUEUE_CAPACITY);
+            eventsConfig.put("overflowPolicy", ModuleEventExecutor.OverflowPolicy.DROP_OLDEST.name());
+            eventsConfig.put("slowListenerMillis", (int) EventBus.DEFAULT_SLOW_HANDLER_THRESHOLD.toMillis());
+            config.put("events", eventsConfig);
+
             Map<String, Object> dbConfig = new HashMap<>();
             dbConfig.put("enabled", false);
             dbConfig.put("url", "jdbc:sqlite:orion.db");
             dbConfig.put("username", "");
             dbConfig.put("password", "");
+            dbConfig.put("poolSize", ConnectionPool.DEFAULT_SIZE);
             config.put("database", dbConfig);
 
+            Map<String, Object> permissionsConfig = new HashMap<>();
+            permissionsConfig.put("journal", false);
+            permissionsConfig.put("binarySnapshot", false);
+            permissionsConfig.put("sharded", false);
+            permissionsConfig.put("watch", true);
+            permissionsConfig.put("maxResidentGuilds", ShardedPermissionManager.DEFAULT_MAX_RESIDENT_GUILDS);
+            permissionsConfig.put("maxResidentEntries", ShardedPermissionManager.DEFAULT_MAX_RESIDENT_ENTRIES);
+            config.put("permissions", permissionsConfig);
+
             Yaml yaml = new Yaml();
             try (Writer writer = Files.newBufferedWriter(Paths.get(configFile))) {
                 yaml.dump(config, writer);
@@ -135,6 +224,76 @@ public class BotConfig {
         return defaultValue;
     }
 
+    @SuppressWarnings("unchecked")
+    private int getInt(Map<String, Object> config, String path, int defaultValue) {
+        String[] parts = path.split("\\.");
+        Object current = config;
+
+        for (String part : parts) {
+            if (current instanceof Map) {
+                current = ((Map<String, Object>) current).get(part);
+            } else {
+                return defaultValue;
+            }
+        }
+
+        if (current instanceof Number) {
+            return ((Number) current).intValue();
+        }
+
+        return defaultValue;
+    }
+
+    private ModuleEventExecutor.OverflowPolicy getOverflowPolicy(Map<String, Object> config, String path,
+                                                                 ModuleEventExecutor.OverflowPolicy defaultValue) {
+        String value = getString(config, path, defaultValue.name());
+        try {
+            return ModuleEventExecutor.OverflowPolicy.valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown overflow policy '{}' for '{}', using {}", value, path, defaultValue);
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a map of command path to {@code {capacity, periodSeconds}}, skipping malformed entries.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, CommandRateLimiter.Limit> getRateLimits(Map<String, Object> config, String path) {
+        String[] parts = path.split("\\.");
+        Object current = config;
+
+        for (String part : parts) {
+            if (current instanceof Map) {
+                current = ((Map<String, Object>) current).get(part);
+            } else {
+                return new HashMap<>();
+            }
+        }
+
+        Map<String, CommandRateLimiter.Limit> limits = new HashMap<>();
+        if (current instanceof Map<?, ?> entries) {
+            for (Map.Entry<?, ?> entry : entries.entrySet()) {
+                if (entry.getValue() instanceof Map<?, ?> limit
+                        && limit.get("capacity") instanceof Number capacity
+                        && limit.get("periodSeconds") instanceof Number periodSeconds) {
+                    limits.put(entry.getKey().toString(),
+                            new CommandRateLimiter.Limit(capacity.intValue(), Duration.ofSeconds(periodSeconds.longValue())));
+                } else {
+                    logger.warn("Ignoring malformed rate limit for '{}'", entry.getKey());
+                }
+            }
+        }
+        return limits;
+    }
+
+    private static Map<String, Object> rateLimit(int capacity, long periodSeconds) {
+        Map<String, Object> limit = new LinkedHashMap<>();
+        limit.put("capacity", capacity);
+        limit.put("periodSeconds", periodSeconds);
+        return limit;
+    }
+
     public String getToken() {
         return this.token;
     }
@@ -150,4 +309,96 @@ public class BotConfig {
     public String getLogLevel() {
         return this.logLevel;
     }
+
+    public boolean isCommandVirtualThreadsEnabled() {
+        return this.commandVirtualThreads;
+    }
+
+    public int getCommandPoolSize() {
+        return this.commandPoolSize;
+    }
+
+    public int getCommandMaxConcurrentPerCommand() {
+        return this.commandMaxConcurrentPerCommand;
+    }
+
+    public int getCommandAutoDeferMillis() {
+        return this.commandAutoDeferMillis;
+    }
+
+    public CommandRateLimiter.Limit getCommandDefaultRateLimit() {
+        return this.commandDefaultRateLimit;
+    }
+
+    public Map<String, CommandRateLimiter.Limit> getCommandRateLimits() {
+        return this.commandRateLimits;
+    }
+
+    public int getConfirmationTimeoutSeconds() {
+        return this.confirmationTimeoutSeconds;
+    }
+
+    public boolean isEventModuleIsolationEnabled() {
+        return this.eventIsolateModules;
+    }
+
+    public boolean isEventVirtualThreadsEnabled() {
+        return this.eventVirtualThreads;
+    }
+
+    public int getEventQueueCapacity() {
+        return this.eventQueueCapacity;
+    }
+
+    public ModuleEventExecutor.OverflowPolicy getEventOverflowPolicy() {
+        return this.eventOverflowPolicy;
+    }
+
+    public int getEventSlowListenerMillis() {
+        return this.eventSlowListenerMillis;
+    }
+
+    public boolean isDatabaseEnabled() {
+        return this.databaseEnabled;
+    }
+
+    public String getDatabaseUrl() {
+        return this.databaseUrl;
+    }
+
+    public String getDatabaseUsername() {
+        return this.databaseUsername;
+    }
+
+    public String getDatabasePassword() {
+        return this.databasePassword;
+    }
+
+    public int getDatabasePoolSize() {
+        return this.databasePoolSize;
+    }
+
+    public boolean isPermissionJournalEnabled() {
+        return this.permissionJournal;
+    }
+
+    public boolean isPermissionBinarySnapshotEnabled() {
+        return this.permissionBinarySnapshot;
+    }
+
+    public boolean isPermissionShardingEnabled() {
+        return this.permissionSharded;
+    }
+
+    public boolean isPermissionWatchEnabled() {
+        return this.permissionWatch;
+    }
+
+    public int getPermissionMaxResidentGuilds() {
+        return this.permissionMaxResidentGuilds;
+    }
+
+    public int getPermissionMaxResidentEntries() {
+        return this.permissionMaxResidentEntries;
+    }
 }
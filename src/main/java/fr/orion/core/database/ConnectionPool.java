@@ -0,0 +1,147 @@
+package fr.orion.core.database;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small fixed-size JDBC connection pool.
+ * <p>
+ * Connections are opened on demand up to the pool size and kept idle for reuse. A connection that is
+ * closed or fails validation when released is dropped, and a new one is opened next time. SQLite
+ * connections are switched to WAL mode with a busy timeout, so readers do not block on the single writer.
+ */
+public class ConnectionPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    public static final int DEFAULT_SIZE = 4;
+    private static final long ACQUIRE_TIMEOUT_SECONDS = 10;
+
+    @FunctionalInterface
+    public interface SqlFunction<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final BlockingQueue<Connection> idle;
+    private final Semaphore permits;
+    private volatile boolean closed;
+
+    public ConnectionPool(String url, String username, String password, int size) {
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.idle = new ArrayBlockingQueue<>(size);
+        this.permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Runs {@code work} on a pooled connection in auto-commit mode. Work that changes the auto-commit
+     * mode must restore it.
+     */
+    public <T> T withConnection(SqlFunction<T> work) throws SQLException {
+        Connection connection = acquire();
+        boolean broken = true;
+        try {
+            T result = work.apply(connection);
+            broken = false;
+            return result;
+        } finally {
+            release(connection, broken);
+        }
+    }
+
+    /**
+     * Runs {@code work} in one transaction, rolling it back if it throws.
+     */
+    public <T> T inTransaction(SqlFunction<T> work) throws SQLException {
+        return withConnection(connection -> {
+            connection.setAutoCommit(false);
+            try {
+                T result = work.apply(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    private Connection acquire() throws SQLException {
+        if (this.closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+
+        try {
+            if (!this.permits.tryAcquire(ACQUIRE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new SQLException("Timed out waiting for a database connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+
+        try {
+            Connection connection = this.idle.poll();
+            return connection != null ? connection : open();
+        } catch (SQLException | RuntimeException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    private void release(Connection connection, boolean broken) {
+        try {
+            if (this.closed || broken && !connection.isValid(1) || !this.idle.offer(connection)) {
+                connection.close();
+            }
+        } catch (SQLException e) {
+            logger.debug("Dropped broken database connection", e);
+        } finally {
+            this.permits.release();
+        }
+    }
+
+    private Connection open() throws SQLException {
+        Connection connection = this.username == null || this.username.isEmpty()
+                ? DriverManager.getConnection(this.url)
+                : DriverManager.getConnection(this.url, this.username, this.password);
+
+        if (this.url.startsWith("jdbc:sqlite:")) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA busy_timeout=5000");
+            } catch (SQLException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        return connection;
+    }
+
+    @Override
+    public void close() {
+        this.closed = true;
+        Connection connection;
+        while ((connection = this.idle.poll()) != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.debug("Failed to close database connection", e);
+            }
+        }
+    }
+}
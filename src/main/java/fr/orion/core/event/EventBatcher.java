@@ -0,0 +1,130 @@
+package fr.orion.core.event;
+
+import fr.orion.core.util.TimingWheel;
+import net.dv8tion.jda.api.events.GenericEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Buffers the events of a batched subscription and hands them to its handler as a list once {@code maxSize}
+ * events are buffered, or {@code maxDelay} after the first of them, whichever comes first.
+ * <p>
+ * Buffering runs on the thread dispatching the event and only takes a lock. Batches run on the module executor
+ * when there is one, otherwise on the thread completing them: the dispatching thread for a full batch, the
+ * timer thread for a due one.
+ */
+class EventBatcher<T extends GenericEvent> implements Consumer<T> {
+    private static final Logger log = LoggerFactory.getLogger(EventBatcher.class);
+
+    private final Consumer<? super List<T>> handler;
+    private final int maxSize;
+    private final Duration maxDelay;
+    private final TimingWheel wheel;
+    private final String moduleId;
+    private final ModuleEventExecutor executor;
+    private List<T> buffer;
+    private TimingWheel.Timeout timeout;
+
+    EventBatcher(Consumer<? super List<T>> handler, int maxSize, Duration maxDelay, TimingWheel wheel,
+                 String moduleId, ModuleEventExecutor executor) {
+        this.handler = handler;
+        this.maxSize = Math.max(1, maxSize);
+        this.maxDelay = maxDelay;
+        this.wheel = wheel;
+        this.moduleId = moduleId;
+        this.executor = executor;
+    }
+
+    @Override
+    public void accept(T event) {
+        List<T> batch;
+        synchronized (this) {
+            if (this.buffer == null) {
+                List<T> buffer = new ArrayList<>(Math.min(this.maxSize, 64));
+                this.buffer = buffer;
+                this.timeout = this.wheel.schedule(this.maxDelay, () -> flush(buffer));
+            }
+            this.buffer.add(event);
+            if (this.buffer.size() < this.maxSize) {
+                return;
+            }
+            batch = take();
+        }
+        deliver(batch);
+    }
+
+    /**
+     * Delivers the buffered events now, if any.
+     */
+    void flush() {
+        List<T> batch;
+        synchronized (this) {
+            if (this.buffer == null) {
+                return;
+            }
+            batch = take();
+        }
+        deliver(batch);
+    }
+
+    /**
+     * Drops the buffered events without delivering them, for handlers of a module being torn down.
+     */
+    void discard() {
+        synchronized (this) {
+            if (this.buffer != null) {
+                take();
+            }
+        }
+    }
+
+    String describe() {
+        return this.handler.getClass().getName();
+    }
+
+    /**
+     * Delivers {@code expected} if it is still the buffer, which it is not once a full batch took it.
+     */
+    private void flush(List<T> expected) {
+        List<T> batch;
+        synchronized (this) {
+            if (this.buffer != expected) {
+                return;
+            }
+            batch = take();
+        }
+        deliver(batch);
+    }
+
+    private List<T> take() {
+        List<T> batch = this.buffer;
+        this.buffer = null;
+        if (this.timeout != null) {
+            this.timeout.cancel();
+            this.timeout = null;
+        }
+        return batch;
+    }
+
+    private void deliver(List<T> batch) {
+        if (this.executor != null) {
+            this.executor.execute(() -> handle(batch));
+        } else {
+            handle(batch);
+        }
+    }
+
+    private void handle(List<T> batch) {
+        try {
+            this.handler.accept(batch);
+        } catch (Throwable e) {
+            log.error("Batch handler {} of {} failed to handle {} events", describe(),
+                    this.moduleId != null ? "module " + this.moduleId : "core", batch.size(), e);
+        }
+    }
+}
@@ -0,0 +1,512 @@
+package fr.orion.core.event;
+
+import fr.orion.core.permission.LongObjectMap;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.UpdateEvent;
+import net.dv8tion.jda.api.hooks.EventListener;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Dispatches JDA events to subscribers by event type, fed by a single JDA listener.
+ * <p>
+ * Handlers subscribe to an event class or interface and receive every event assignable to it. The handlers of
+ * each concrete event class are resolved once into an array, so dispatching is a map lookup and a loop however
+ * many subscribers exist for other events. The array is rebuilt lazily after subscriptions change.
+ * <p>
+ * {@link ListenerAdapter}s are split into one subscription per {@code on...} method they override, bound with
+ * {@link LambdaMetafactory}, so they no longer walk the event's class hierarchy for every event. Other
+ * {@link EventListener}s subscribe to {@link GenericEvent}.
+ * <p>
+ * Subscriptions made for a module may name a {@link ModuleEventExecutor}; their handlers then run there, one task
+ * per module and event, instead of on the JDA event thread. Handlers slower than the configured threshold are
+ * logged with their module and event type.
+ * <p>
+ * Subscriptions may carry an {@link EventFilter}. Event type filters are applied when handlers are resolved, and
+ * guild filters through a per-guild index of handlers, so neither costs anything per event. Channel, bot and
+ * webhook filters are checked per handler before it is called or queued.
+ */
+public class EventBus implements EventListener {
+    private static final Logger log = LoggerFactory.getLogger(EventBus.class);
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * Binds a {@link ListenerAdapter} to one of its methods as a {@link Consumer}, per method.
+     */
+    private static final Map<Method, MethodHandle> ADAPTER_FACTORIES = new ConcurrentHashMap<>();
+
+    public static final Duration DEFAULT_SLOW_HANDLER_THRESHOLD = Duration.ofMillis(250);
+
+    private final Object lock = new Object();
+    private final long slowHandlerNanos;
+    private volatile State state = new State(new Subscription[0]);
+
+    /**
+     * Handlers of one concrete event class: those run on the calling thread, and those run by each module
+     * executor. {@code inspected} tells whether any of them filters on more than the event class and guild.
+     */
+    private record Dispatch(Subscription[] inline, ModuleEventExecutor[] executors, Subscription[][] queued,
+                            boolean inspected) {
+    }
+
+    /**
+     * Handlers of one concrete event class for events of any guild, and for each guild some handler is
+     * restricted to; {@code byGuild} is {@code null} when no handler is.
+     */
+    private record Routes(Dispatch anyGuild, LongObjectMap<Dispatch> byGuild) {
+        private Dispatch select(GenericEvent event) {
+            if (this.byGuild == null) {
+                return this.anyGuild;
+            }
+            long guildId = EventFilter.guildId(event);
+            Dispatch dispatch = guildId != 0 ? this.byGuild.get(guildId) : null;
+            return dispatch != null ? dispatch : this.anyGuild;
+        }
+    }
+
+    /**
+     * Subscriptions, in the order they run, with the handlers resolved so far per concrete event class.
+     */
+    private record State(Subscription[] subscriptions, Map<Class<?>, Routes> handlers) {
+        private State(Subscription[] subscriptions) {
+            this(subscriptions, new ConcurrentHashMap<>());
+        }
+
+        private Routes handlersFor(Class<?> eventClass) {
+            Routes routes = this.handlers.get(eventClass);
+            if (routes == null) {
+                routes = this.handlers.computeIfAbsent(eventClass, this::resolve);
+            }
+            return routes;
+        }
+
+        private Routes resolve(Class<?> eventClass) {
+            List<Subscription> matching = new ArrayList<>();
+            Set<Long> guildIds = new LinkedHashSet<>();
+            for (Subscription subscription : this.subscriptions) {
+                if (subscription.eventType.isAssignableFrom(eventClass) && subscription.filter.acceptsType(eventClass)) {
+                    matching.add(subscription);
+                    for (long guildId : subscription.filter.guildIds()) {
+                        guildIds.add(guildId);
+                    }
+                }
+            }
+
+            Dispatch anyGuild = dispatch(matching, 0);
+            if (guildIds.isEmpty()) {
+                return new Routes(anyGuild, null);
+            }
+            LongObjectMap<Dispatch> byGuild = new LongObjectMap<>(guildIds.size());
+            for (long guildId : guildIds) {
+                byGuild.put(guildId, dispatch(matching, guildId));
+            }
+            return new Routes(anyGuild, byGuild);
+        }
+
+        /**
+         * @param guildId the guild of the events, {@code 0} to keep only handlers not restricted to guilds
+         */
+        private static Dispatch dispatch(List<Subscription> matching, long guildId) {
+            List<Subscription> inline = new ArrayList<>();
+            Map<ModuleEventExecutor, List<Subscription>> queued = new LinkedHashMap<>();
+            boolean inspected = false;
+            for (Subscription subscription : matching) {
+                long[] guildIds = subscription.filter.guildIds();
+                if (guildIds.length > 0 && (guildId == 0 || Arrays.binarySearch(guildIds, guildId) < 0)) {
+                    continue;
+                }
+                inspected |= subscription.filter.inspectsEvents();
+                if (subscription.executor == null) {
+                    inline.add(subscription);
+                } else {
+                    queued.computeIfAbsent(subscription.executor, executor -> new ArrayList<>()).add(subscription);
+                }
+            }
+
+            Subscription[][] handlers = new Subscription[queued.size()][];
+            int i = 0;
+            for (List<Subscription> subscriptions : queued.values()) {
+                handlers[i++] = subscriptions.toArray(new Subscription[0]);
+            }
+            return new Dispatch(inline.toArray(new Subscription[0]),
+                    queued.keySet().toArray(new ModuleEventExecutor[0]), handlers, inspected);
+        }
+    }
+
+    public EventBus() {
+        this(DEFAULT_SLOW_HANDLER_THRESHOLD);
+    }
+
+    /**
+     * @param slowHandlerThreshold handlers taking longer than this are logged, zero to disable
+     */
+    public EventBus(Duration slowHandlerThreshold) {
+        this.slowHandlerNanos = slowHandlerThreshold.toNanos();
+    }
+
+    @Override
+    public void onEvent(GenericEvent event) {
+        Dispatch dispatch = this.state.handlersFor(event.getClass()).select(event);
+        if (dispatch.inspected()) {
+            dispatchFiltered(dispatch, event);
+            return;
+        }
+
+        for (Subscription subscription : dispatch.inline()) {
+            deliver(subscription, event);
+        }
+        for (int i = 0; i < dispatch.executors().length; i++) {
+            enqueue(dispatch.executors()[i], dispatch.queued()[i], event);
+        }
+    }
+
+    /**
+     * Dispatches {@code event} to the handlers whose filter accepts it, reading what the filters check from the
+     * event once.
+     */
+    private void dispatchFiltered(Dispatch dispatch, GenericEvent event) {
+        long channelId = EventFilter.channelId(event);
+        boolean fromBot = EventFilter.fromBot(event);
+        boolean fromWebhook = EventFilter.fromWebhook(event);
+        for (Subscription subscription : dispatch.inline()) {
+            if (subscription.filter.accepts(channelId, fromBot, fromWebhook)) {
+                deliver(subscription, event);
+            }
+        }
+        for (int i = 0; i < dispatch.executors().length; i++) {
+            Subscription[] handlers = accepting(dispatch.queued()[i], channelId, fromBot, fromWebhook);
+            if (handlers.length > 0) {
+                enqueue(dispatch.executors()[i], handlers, event);
+            }
+        }
+    }
+
+    private static Subscription[] accepting(Subscription[] subscriptions, long channelId, boolean fromBot,
+                                            boolean fromWebhook) {
+        int accepted = 0;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.filter.accepts(channelId, fromBot, fromWebhook)) {
+                accepted++;
+            }
+        }
+        if (accepted == subscriptions.length) {
+            return subscriptions;
+        }
+
+        Subscription[] filtered = new Subscription[accepted];
+        int i = 0;
+        for (Subscription subscription : subscriptions) {
+            if (subscription.filter.accepts(channelId, fromBot, fromWebhook)) {
+                filtered[i++] = subscription;
+            }
+        }
+        return filtered;
+    }
+
+    private void enqueue(ModuleEventExecutor executor, Subscription[] handlers, GenericEvent event) {
+        executor.execute(() -> {
+            for (Subscription subscription : handlers) {
+                deliver(subscription, event);
+            }
+        });
+    }
+
+    private void deliver(Subscription subscription, GenericEvent event) {
+        long start = System.nanoTime();
+        try {
+            subscription.handler.accept(event);
+        } catch (Throwable e) {
+            log.error("Listener {} of {} failed to handle {}", subscription.describe(), subscription.describeModule(),
+                    event.getClass().getSimpleName(), e);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        if (this.slowHandlerNanos > 0 && elapsed > this.slowHandlerNanos) {
+            log.warn("Listener {} of {} took {} ms to handle {}", subscription.describe(), subscription.describeModule(),
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), event.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Calls {@code handler} with every event of type {@code eventType}, including subtypes.
+     */
+    public <T extends GenericEvent> Subscription subscribe(Class<T> eventType, Consumer<? super T> handler) {
+        return subscribe(eventType, handler, EventFilter.ALL, null, null);
+    }
+
+    /**
+     * Calls {@code handler} with every event of type {@code eventType}, including subtypes, that {@code filter}
+     * accepts, on behalf of a module.
+     *
+     * @param moduleId the module owning the handler, or {@code null} for core code
+     * @param executor where the handler runs, or {@code null} for the thread dispatching the event
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends GenericEvent> Subscription subscribe(Class<T> eventType, Consumer<? super T> handler,
+                                                           EventFilter filter, String moduleId,
+                                                           ModuleEventExecutor executor) {
+        Subscription subscription = new Subscription(this, eventType, (Consumer<GenericEvent>) handler, handler,
+                filter, moduleId, executor);
+        add(List.of(subscription));
+        return subscription;
+    }
+
+    /**
+     * Subscribes {@code listener} to the events it handles, as {@link EventListener#onEvent} would receive them.
+     */
+    public void register(EventListener listener) {
+        register(listener, EventFilter.ALL, null, null);
+    }
+
+    /**
+     * Subscribes {@code listener} to the events it handles that {@code filter} accepts, on behalf of a module.
+     *
+     * @param moduleId the module owning the listener, or {@code null} for core code
+     * @param executor where the listener runs, or {@code null} for the thread dispatching the event
+     */
+    public void register(EventListener listener, EventFilter filter, String moduleId, ModuleEventExecutor executor) {
+        List<Subscription> subscriptions = new ArrayList<>();
+        if (listener instanceof ListenerAdapter adapter) {
+            for (Method method : overriddenMethods(adapter.getClass())) {
+                subscriptions.add(new Subscription(this, eventType(method), bind(adapter, method), listener,
+                        filter, moduleId, executor));
+            }
+        } else {
+            subscriptions.add(new Subscription(this, GenericEvent.class, listener::onEvent, listener,
+                    filter, moduleId, executor));
+        }
+        add(subscriptions);
+    }
+
+    /**
+     * Removes every subscription of {@code owner}: a listener passed to {@link #register(EventListener)} or a
+     * handler passed to {@link #subscribe(Class, Consumer)}.
+     *
+     * @return whether the owner had any subscription
+     */
+    public boolean unregister(Object owner) {
+        synchronized (this.lock) {
+            Subscription[] current = this.state.subscriptions();
+            Subscription[] remaining = Arrays.stream(current)
+                    .filter(subscription -> subscription.owner != owner)
+                    .toArray(Subscription[]::new);
+            if (remaining.length == current.length) {
+                return false;
+            }
+            this.state = new State(remaining);
+            return true;
+        }
+    }
+
+    /**
+     * Removes every subscription of the given owners at once, so no event reaches some of them but not others.
+     *
+     * @return the owners that had a subscription, in the order they subscribed
+     */
+    public List<Object> unregisterAll(Collection<?> owners) {
+        Set<Object> removing = Collections.newSetFromMap(new IdentityHashMap<>());
+        removing.addAll(owners);
+        Set<Object> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Object> removedOwners = new ArrayList<>();
+        synchronized (this.lock) {
+            List<Subscription> remaining = new ArrayList<>();
+            for (Subscription subscription : this.state.subscriptions()) {
+                if (!removing.contains(subscription.owner)) {
+                    remaining.add(subscription);
+                } else if (removed.add(subscription.owner)) {
+                    removedOwners.add(subscription.owner);
+                }
+            }
+            if (!removedOwners.isEmpty()) {
+                this.state = new State(remaining.toArray(new Subscription[0]));
+            }
+        }
+        return removedOwners;
+    }
+
+    public int getSubscriptionCount() {
+        return this.state.subscriptions().length;
+    }
+
+    private void add(List<Subscription> subscriptions) {
+        synchronized (this.lock) {
+            Subscription[] current = this.state.subscriptions();
+            Subscription[] updated = Arrays.copyOf(current, current.length + subscriptions.size());
+            for (int i = 0; i < subscriptions.size(); i++) {
+                updated[current.length + i] = subscriptions.get(i);
+            }
+            this.state = new State(updated);
+        }
+    }
+
+    private void remove(Subscription subscription) {
+        synchronized (this.lock) {
+            Subscription[] current = this.state.subscriptions();
+            Subscription[] remaining = Arrays.stream(current)
+                    .filter(candidate -> candidate != subscription)
+                    .toArray(Subscription[]::new);
+            if (remaining.length != current.length) {
+                this.state = new State(remaining);
+            }
+        }
+    }
+
+    /**
+     * The {@code on...} methods of {@link ListenerAdapter} that {@code type} overrides, in the order
+     * {@link ListenerAdapter#onEvent} calls them: {@code onGenericEvent}, {@code onGenericUpdate}, then from the
+     * most to the least specific event type.
+     */
+    private static List<Method> overriddenMethods(Class<?> type) {
+        Map<String, Method> methods = new HashMap<>();
+        for (Class<?> current = type; current != ListenerAdapter.class; current = current.getSuperclass()) {
+            for (Method method : current.getDeclaredMethods()) {
+                if (method.getParameterCount() != 1 || method.isBridge() || Modifier.isStatic(method.getModifiers())
+                        || !GenericEvent.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                    continue;
+                }
+                try {
+                    Method overridden = ListenerAdapter.class.getMethod(method.getName(), method.getParameterTypes());
+                    methods.putIfAbsent(method.getName() + method.getParameterTypes()[0].getName(), overridden);
+                } catch (NoSuchMethodException e) {
+                    // Not an event method of ListenerAdapter
+                }
+            }
+        }
+
+        List<Method> ordered = new ArrayList<>(methods.values());
+        ordered.sort(Comparator.comparingInt(EventBus::specificity).thenComparing(Method::getName));
+        return ordered;
+    }
+
+    /**
+     * @return a rank sorting {@code onGenericEvent} first, {@code onGenericUpdate} second, then deeper event
+     * classes before their superclasses
+     */
+    private static int specificity(Method method) {
+        Class<?> eventType = eventType(method);
+        if (eventType == GenericEvent.class) {
+            return Integer.MIN_VALUE;
+        }
+        if (eventType == UpdateEvent.class) {
+            return Integer.MIN_VALUE + 1;
+        }
+        int depth = 0;
+        for (Class<?> current = eventType; current != null; current = current.getSuperclass()) {
+            depth++;
+        }
+        return -depth;
+    }
+
+    private static Class<? extends GenericEvent> eventType(Method method) {
+        return method.getParameterTypes()[0].asSubclass(GenericEvent.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Consumer<GenericEvent> bind(ListenerAdapter adapter, Method method) {
+        try {
+            return (Consumer<GenericEvent>) ADAPTER_FACTORIES.computeIfAbsent(method, EventBus::adapterFactory)
+                    .invoke(adapter);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not bind " + method, e);
+        }
+    }
+
+    /**
+     * @return a handle turning a {@link ListenerAdapter} into a {@link Consumer} calling {@code method} on it
+     */
+    private static MethodHandle adapterFactory(Method method) {
+        try {
+            MethodHandle target = LOOKUP.unreflect(method);
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                    MethodType.methodType(Consumer.class, ListenerAdapter.class),
+                    MethodType.methodType(void.class, Object.class),
+                    target,
+                    MethodType.methodType(void.class, method.getParameterTypes()[0]));
+            return site.getTarget();
+        } catch (ReflectiveOperationException | LambdaConversionException e) {
+            throw new IllegalStateException("Could not bind " + method, e);
+        }
+    }
+
+    /**
+     * A handler subscribed to one event type. Cancelling it stops further deliveries.
+     */
+    public static final class Subscription implements AutoCloseable {
+        private final EventBus bus;
+        private final Class<?> eventType;
+        private final Consumer<GenericEvent> handler;
+        private final Object owner;
+        private final EventFilter filter;
+        private final String moduleId;
+        private final ModuleEventExecutor executor;
+
+        private Subscription(EventBus bus, Class<?> eventType, Consumer<GenericEvent> handler, Object owner,
+                             EventFilter filter, String moduleId, ModuleEventExecutor executor) {
+            this.bus = bus;
+            this.eventType = eventType;
+            this.handler = handler;
+            this.owner = owner;
+            this.filter = filter;
+            this.moduleId = moduleId;
+            this.executor = executor;
+        }
+
+        public Class<?> getEventType() {
+            return this.eventType;
+        }
+
+        public EventFilter getFilter() {
+            return this.filter;
+        }
+
+        /**
+         * @return the module owning the subscription, or {@code null} for core code
+         */
+        public String getModuleId() {
+            return this.moduleId;
+        }
+
+        public void cancel() {
+            this.bus.remove(this);
+        }
+
+        @Override
+        public void close() {
+            cancel();
+        }
+
+        private String describe() {
+            return this.owner.getClass().getName();
+        }
+
+        private String describeModule() {
+            return this.moduleId != null ? "module " + this.moduleId : "core";
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package fr.orion.core.event;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.entities.channel.middleman.GuildChannel;
+import net.dv8tion.jda.api.events.GenericEvent;
+import net.dv8tion.jda.api.events.channel.GenericChannelEvent;
+import net.dv8tion.jda.api.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.api.events.guild.member.GenericGuildMemberEvent;
+import net.dv8tion.jda.api.events.message.GenericMessageEvent;
+import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
+import net.dv8tion.jda.api.events.message.MessageUpdateEvent;
+import net.dv8tion.jda.api.events.message.react.GenericMessageReactionEvent;
+import net.dv8tion.jda.api.interactions.Interaction;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which events a listener wants, declared when it is registered so the {@link EventBus} can skip the others
+ * without calling the listener.
+ * <p>
+ * Filters are immutable; each method returns a narrower copy, starting from {@link #ALL}. Guild and channel
+ * filters only let through events that belong to one of the given guilds or channels, so events outside any
+ * guild or channel, such as {@code ReadyEvent}, are filtered out. Bot and webhook filters let through events
+ * without an author.
+ */
+public final class EventFilter {
+    public static final EventFilter ALL = new EventFilter(new long[0], new long[0], List.of(), false, false);
+
+    private final long[] guildIds;
+    private final long[] channelIds;
+    private final List<Class<? extends GenericEvent>> eventTypes;
+    private final boolean ignoreBots;
+    private final boolean ignoreWebhooks;
+
+    private EventFilter(long[] guildIds, long[] channelIds, List<Class<? extends GenericEvent>> eventTypes,
+                        boolean ignoreBots, boolean ignoreWebhooks) {
+        this.guildIds = guildIds;
+        this.channelIds = channelIds;
+        this.eventTypes = eventTypes;
+        this.ignoreBots = ignoreBots;
+        this.ignoreWebhooks = ignoreWebhooks;
+    }
+
+    /**
+     * @return a filter only letting through events of these guilds
+     */
+    public EventFilter inGuilds(long... guildIds) {
+        return new EventFilter(sorted(guildIds), this.channelIds, this.eventTypes, this.ignoreBots, this.ignoreWebhooks);
+    }
+
+    /**
+     * @return a filter only letting through events of these channels
+     */
+    public EventFilter inChannels(long... channelIds) {
+        return new EventFilter(this.guildIds, sorted(channelIds), this.eventTypes, this.ignoreBots, this.ignoreWebhooks);
+    }
+
+    /**
+     * @return a filter only letting through events of these types, including subtypes
+     */
+    @SafeVarargs
+    public final EventFilter ofTypes(Class<? extends GenericEvent>... eventTypes) {
+        return new EventFilter(this.guildIds, this.channelIds, List.of(eventTypes), this.ignoreBots, this.ignoreWebhooks);
+    }
+
+    /**
+     * @return a filter dropping events caused by bots
+     */
+    public EventFilter ignoringBots() {
+        return new EventFilter(this.guildIds, this.channelIds, this.eventTypes, true, this.ignoreWebhooks);
+    }
+
+    /**
+     * @return a filter dropping messages sent by webhooks
+     */
+    public EventFilter ignoringWebhooks() {
+        return new EventFilter(this.guildIds, this.channelIds, this.eventTypes, this.ignoreBots, true);
+    }
+
+    /**
+     * @return the guilds whose events pass, sorted; empty if the filter does not restrict guilds
+     */
+    long[] guildIds() {
+        return this.guildIds;
+    }
+
+    /**
+     * @return whether the filter looks at anything the event class alone does not tell
+     */
+    boolean inspectsEvents() {
+        return this.channelIds.length > 0 || this.ignoreBots || this.ignoreWebhooks;
+    }
+
+    boolean acceptsType(Class<?> eventClass) {
+        if (this.eventTypes.isEmpty()) {
+            return true;
+        }
+        for (Class<? extends GenericEvent> eventType : this.eventTypes) {
+            if (eventType.isAssignableFrom(eventClass)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks the parts of the filter {@link #acceptsType} and the guild index do not cover.
+     */
+    boolean accepts(long channelId, boolean fromBot, boolean fromWebhook) {
+        return (this.channelIds.length == 0 || Arrays.binarySearch(this.channelIds, channelId) >= 0)
+                && !(this.ignoreBots && fromBot)
+                && !(this.ignoreWebhooks && fromWebhook);
+    }
+
+    /**
+     * @return the guild {@code event} belongs to, {@code 0} if none
+     */
+    static long guildId(GenericEvent event) {
+        Guild guild = null;
+        if (event instanceof GenericGuildEvent guildEvent) {
+            guild = guildEvent.getGuild();
+        } else if (event instanceof GenericMessageEvent messageEvent) {
+            guild = messageEvent.isFromGuild() ? messageEvent.getGuild() : null;
+        } else if (event instanceof Interaction interaction) {
+            guild = interaction.getGuild();
+        } else if (event instanceof GenericChannelEvent channelEvent && channelEvent.getChannel() instanceof GuildChannel channel) {
+            guild = channel.getGuild();
+        }
+        return guild != null ? guild.getIdLong() : 0;
+    }
+
+    /**
+     * @return the channel {@code event} happened in, {@code 0} if none
+     */
+    static long channelId(GenericEvent event) {
+        if (event instanceof GenericMessageEvent messageEvent) {
+            return messageEvent.getChannel().getIdLong();
+        }
+        if (event instanceof Interaction interaction) {
+            return interaction.getChannelIdLong();
+        }
+        if (event instanceof GenericChannelEvent channelEvent) {
+            return channelEvent.getChannel().getIdLong();
+        }
+        return 0;
+    }
+
+    static boolean fromBot(GenericEvent event) {
+        User user = null;
+        if (event instanceof MessageReceivedEvent messageEvent) {
+            user = messageEvent.getAuthor();
+        } else if (event instanceof MessageUpdateEvent messageEvent) {
+            user = messageEvent.getAuthor();
+        } else if (event instanceof GenericMessageReactionEvent reactionEvent) {
+            user = reactionEvent.getUser();
+        } else if (event instanceof GenericGuildMemberEvent memberEvent) {
+            user = memberEvent.getUser();
+        } else if (event instanceof Interaction interaction) {
+            user = interaction.getUser();
+        }
+        return user != null && user.isBot();
+    }
+
+    static boolean fromWebhook(GenericEvent event) {
+        if (event instanceof MessageReceivedEvent messageEvent) {
+            return messageEvent.isWebhookMessage();
+        }
+        if (event instanceof MessageUpdateEvent messageEvent) {
+            return messageEvent.getMessage().isWebhookMessage();
+        }
+        return false;
+    }
+
+    private static long[] sorted(long[] ids) {
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,137 @@
+package fr.orion.core.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the event handlers of one module on a thread of its own, so a module blocking in a handler delays only
+ * its own events and never the JDA event thread.
+ * <p>
+ * Events are handled one at a time in the order they arrived, as they were on the JDA event thread. The queue
+ * is bounded; once it is full the {@link OverflowPolicy} decides what happens to new events.
+ */
+public class ModuleEventExecutor implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ModuleEventExecutor.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    private static final long OVERFLOW_WARN_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    public enum OverflowPolicy {
+        /**
+         * Drops the oldest queued event to make room for the new one.
+         */
+        DROP_OLDEST,
+        /**
+         * Handles the new event on the JDA event thread, slowing down event intake until the module catches up.
+         */
+        CALLER_RUNS,
+        /**
+         * Drops the new event.
+         */
+        REJECT
+    }
+
+    private final String moduleId;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong lastOverflowWarning = new AtomicLong(System.nanoTime() - OVERFLOW_WARN_INTERVAL);
+
+    public ModuleEventExecutor(String moduleId, boolean virtualThread, int queueCapacity, OverflowPolicy overflowPolicy) {
+        this.moduleId = moduleId;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                threadFactory("orion-events-" + moduleId, virtualThread),
+                rejectionHandler(overflowPolicy));
+    }
+
+    public void execute(Runnable task) {
+        this.executor.execute(task);
+    }
+
+    public String getModuleId() {
+        return this.moduleId;
+    }
+
+    public int getQueuedCount() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full
+     */
+    public long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    private RejectedExecutionHandler rejectionHandler(OverflowPolicy overflowPolicy) {
+        return switch (overflowPolicy) {
+            case DROP_OLDEST -> (task, executor) -> {
+                if (executor.isShutdown()) {
+                    return;
+                }
+                if (executor.getQueue().poll() != null) {
+                    overflowed();
+                }
+                executor.execute(task);
+            };
+            case CALLER_RUNS -> (task, executor) -> {
+                if (!executor.isShutdown()) {
+                    task.run();
+                }
+            };
+            case REJECT -> (task, executor) -> {
+                if (!executor.isShutdown()) {
+                    overflowed();
+                }
+            };
+        };
+    }
+
+    private void overflowed() {
+        long dropped = this.dropped.incrementAndGet();
+        long now = System.nanoTime();
+        long last = this.lastOverflowWarning.get();
+        if (now - last >= OVERFLOW_WARN_INTERVAL && this.lastOverflowWarning.compareAndSet(last, now)) {
+            log.warn("Event queue of module {} is full, {} events dropped so far", this.moduleId, dropped);
+        }
+    }
+
+    @Override
+    public void close() {
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(2, TimeUnit.SECONDS)) {
+                log.warn("Event handlers of module {} still running after shutdown timeout", this.moduleId);
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            this.executor.shutdownNow();
+        }
+    }
+
+    private static ThreadFactory threadFactory(String name, boolean virtualThread) {
+        if (virtualThread) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                builder = builderType.getMethod("name", String.class).invoke(builder, name);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                // Virtual threads need Java 21
+            }
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -1,28 +1,115 @@
 package fr.orion.core.event;
 
 import fr.orion.api.event.EventRegistry;
+import fr.orion.api.module.Module;
+import fr.orion.api.module.ModuleManager;
+import fr.orion.core.util.TimingWheel;
 import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.events.GenericEvent;
 import net.dv8tion.jda.api.hooks.EventListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.ref.WeakReference;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Registers listeners on an {@link EventBus}, which JDA feeds as its only listener from this registry.
+ * <p>
+ * Listeners loaded by a module's class loader belong to that module. When module isolation is enabled, each
+ * module's listeners run on a {@link ModuleEventExecutor} of its own; core listeners always run on the JDA
+ * event thread.
+ * <p>
+ * Batched subscriptions receive their events as lists, for handlers doing one write per batch rather than one
+ * per event.
+ * <p>
+ * Module listeners are tracked per class loader. Once a module is disabled or reloaded,
+ * {@link #releaseModule(String, ClassLoader)} removes those it left registered, which would otherwise keep
+ * receiving events and pin the old class loader.
+ */
 public class SimpleEventRegistry implements EventRegistry {
     private static final Logger log = LoggerFactory.getLogger(SimpleEventRegistry.class);
-    private final JDA jda;
+    private static final Duration BATCH_TICK = Duration.ofMillis(10);
+    private final EventBus eventBus;
+    private final boolean isolateModules;
+    private final boolean virtualThreads;
+    private final int queueCapacity;
+    private final ModuleEventExecutor.OverflowPolicy overflowPolicy;
+    private final Map<String, ModuleEventExecutor> executors = new ConcurrentHashMap<>();
+    private final Set<EventBatcher<?>> batchers = ConcurrentHashMap.newKeySet();
+    private final Map<ClassLoader, ModuleListeners> moduleListeners = new ConcurrentHashMap<>();
+    private final List<ReleasedLoader> releasedLoaders = new CopyOnWriteArrayList<>();
+    private final AtomicLong staleListeners = new AtomicLong();
+    private TimingWheel batchWheel;
+    private volatile ModuleManager moduleManager;
+
+    /**
+     * Listeners, handlers and batchers registered from one module class loader and not unregistered since.
+     */
+    private record ModuleListeners(String moduleId, Set<Object> owners) {
+    }
+
+    private record ReleasedLoader(String moduleId, WeakReference<ClassLoader> loader) {
+    }
 
     public SimpleEventRegistry(JDA jda) {
-        this.jda = jda;
+        this(jda, true, true, ModuleEventExecutor.DEFAULT_QUEUE_CAPACITY, ModuleEventExecutor.OverflowPolicy.DROP_OLDEST,
+                EventBus.DEFAULT_SLOW_HANDLER_THRESHOLD);
+    }
+
+    /**
+     * @param isolateModules       run each module's listeners on an executor of its own
+     * @param queueCapacity        events each module executor queues before applying {@code overflowPolicy}
+     * @param slowHandlerThreshold handlers taking longer than this are logged, zero to disable
+     */
+    public SimpleEventRegistry(JDA jda, boolean isolateModules, boolean virtualThreads, int queueCapacity,
+                               ModuleEventExecutor.OverflowPolicy overflowPolicy, Duration slowHandlerThreshold) {
+        this.eventBus = new EventBus(slowHandlerThreshold);
+        this.isolateModules = isolateModules;
+        this.virtualThreads = virtualThreads;
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        jda.addEventListener(this.eventBus);
+    }
+
+    /**
+     * Sets the module manager used to find which module a listener belongs to. Until one is set, every
+     * listener is treated as core code.
+     */
+    public void useModuleManager(ModuleManager moduleManager) {
+        this.moduleManager = moduleManager;
     }
 
     @Override
     public void registerListener(EventListener listener) {
-        this.jda.addEventListener(listener);
-        log.info("Registered listener: {}", listener.getClass().getSimpleName());
+        registerListener(listener, EventFilter.ALL);
+    }
+
+    /**
+     * Registers {@code listener} for the events {@code filter} accepts only. Other events never reach it, so it
+     * does not need to check and ignore them itself.
+     */
+    public void registerListener(EventListener listener, EventFilter filter) {
+        String moduleId = moduleOf(listener);
+        track(listener, listener, moduleId);
+        this.eventBus.register(listener, filter, moduleId, executorFor(moduleId));
+        log.info("Registered listener: {}{}", listener.getClass().getSimpleName(),
+                moduleId != null ? " (module " + moduleId + ")" : "");
     }
 
     @Override
     public void unregisterListener(EventListener listener) {
-        this.jda.removeEventListener(listener);
+        this.eventBus.unregister(listener);
+        untrack(listener, listener);
         log.info("Unregistered listener: {}", listener.getClass().getSimpleName());
     }
 
@@ -39,4 +126,192 @@ public class SimpleEventRegistry implements EventRegistry {
             unregisterListener(listener);
         }
     }
+
+    /**
+     * Calls {@code handler} with every event of type {@code eventType}, including subtypes. This is cheaper than
+     * a {@link net.dv8tion.jda.api.hooks.ListenerAdapter} handling a single event.
+     */
+    public <T extends GenericEvent> EventBus.Subscription subscribe(Class<T> eventType, Consumer<? super T> handler) {
+        return subscribe(eventType, handler, EventFilter.ALL);
+    }
+
+    /**
+     * Calls {@code handler} with every event of type {@code eventType}, including subtypes, that {@code filter}
+     * accepts.
+     */
+    public <T extends GenericEvent> EventBus.Subscription subscribe(Class<T> eventType, Consumer<? super T> handler,
+                                                                    EventFilter filter) {
+        String moduleId = moduleOf(handler);
+        track(handler, handler, moduleId);
+        return this.eventBus.subscribe(eventType, handler, filter, moduleId, executorFor(moduleId));
+    }
+
+    /**
+     * Calls {@code handler} with the events of type {@code eventType}, including subtypes, in batches of up to
+     * {@code maxBatchSize} events. A batch is delivered once full, or {@code maxDelay} after its first event.
+     */
+    public <T extends GenericEvent> EventBus.Subscription subscribeBatched(Class<T> eventType,
+                                                                           Consumer<? super List<T>> handler,
+                                                                           int maxBatchSize, Duration maxDelay) {
+        return subscribeBatched(eventType, handler, maxBatchSize, maxDelay, EventFilter.ALL);
+    }
+
+    /**
+     * Calls {@code handler} with the events of type {@code eventType}, including subtypes, that {@code filter}
+     * accepts, in batches of up to {@code maxBatchSize} events. A batch is delivered once full, or
+     * {@code maxDelay} after its first event.
+     */
+    public <T extends GenericEvent> EventBus.Subscription subscribeBatched(Class<T> eventType,
+                                                                           Consumer<? super List<T>> handler,
+                                                                           int maxBatchSize, Duration maxDelay,
+                                                                           EventFilter filter) {
+        String moduleId = moduleOf(handler);
+        EventBatcher<T> batcher = new EventBatcher<>(handler, maxBatchSize, maxDelay, batchWheel(), moduleId,
+                executorFor(moduleId));
+        this.batchers.add(batcher);
+        track(batcher, handler, moduleId);
+        // Buffering is cheap, so it happens on the dispatching thread and only whole batches are queued
+        return this.eventBus.subscribe(eventType, batcher, filter, moduleId, null);
+    }
+
+    /**
+     * Removes the listeners a module registered from {@code loader} and has not unregistered, once the module
+     * was disabled or reloaded, and stops its executor if it no longer runs. Nothing is removed while a module
+     * loaded by {@code loader} is still enabled.
+     *
+     * @param loader the class loader of the module before it was disabled or reloaded
+     * @return the number of listeners removed
+     */
+    public int releaseModule(String moduleId, ClassLoader loader) {
+        ModuleManager moduleManager = this.moduleManager;
+        Module current = moduleManager != null ? moduleManager.getModule(moduleId) : null;
+        boolean running = current != null && current.isEnabled();
+        if (running && current.getClass().getClassLoader() == loader) {
+            return 0;
+        }
+
+        List<Object> stale = List.of();
+        ModuleListeners listeners = this.moduleListeners.remove(loader);
+        if (listeners != null) {
+            stale = this.eventBus.unregisterAll(listeners.owners());
+            for (Object owner : listeners.owners()) {
+                if (owner instanceof EventBatcher<?> batcher) {
+                    batcher.discard();
+                    this.batchers.remove(batcher);
+                }
+            }
+        }
+        if (!stale.isEmpty()) {
+            this.staleListeners.addAndGet(stale.size());
+            log.warn("Module {} left {} listeners registered, removed them: {}", moduleId, stale.size(),
+                    stale.stream().map(SimpleEventRegistry::describe).collect(Collectors.joining(", ")));
+        }
+
+        if (!running) {
+            ModuleEventExecutor executor = this.executors.remove(moduleId);
+            if (executor != null) {
+                executor.close();
+            }
+        }
+        if (current == null || current.getClass().getClassLoader() != loader) {
+            this.releasedLoaders.add(new ReleasedLoader(moduleId, new WeakReference<>(loader)));
+        }
+        return stale.size();
+    }
+
+    /**
+     * @return the number of listeners removed by {@link #releaseModule} because their module left them
+     * registered, since startup
+     */
+    public long getStaleListenerCount() {
+        return this.staleListeners.get();
+    }
+
+    /**
+     * Class loaders of reloaded or unloaded modules that are still reachable. A count that keeps growing with
+     * reloads means something outside the event registry still references old module classes; a full garbage
+     * collection may be needed before released loaders disappear from it.
+     *
+     * @return the IDs of the modules whose old class loaders are still alive, one per loader
+     */
+    public List<String> getRetainedModuleLoaders() {
+        this.releasedLoaders.removeIf(released -> released.loader().get() == null);
+        List<String> moduleIds = new ArrayList<>();
+        for (ReleasedLoader released : this.releasedLoaders) {
+            moduleIds.add(released.moduleId());
+        }
+        return moduleIds;
+    }
+
+    public EventBus getEventBus() {
+        return this.eventBus;
+    }
+
+    /**
+     * Delivers the pending batches and stops every module executor, letting queued events run for a short while.
+     */
+    public void shutdown() {
+        this.batchers.forEach(EventBatcher::flush);
+        this.batchers.clear();
+        this.moduleListeners.clear();
+        synchronized (this) {
+            if (this.batchWheel != null) {
+                this.batchWheel.close();
+                this.batchWheel = null;
+            }
+        }
+        this.executors.values().forEach(ModuleEventExecutor::close);
+        this.executors.clear();
+    }
+
+    private synchronized TimingWheel batchWheel() {
+        if (this.batchWheel == null) {
+            this.batchWheel = new TimingWheel("orion-event-batches", BATCH_TICK, 512);
+        }
+        return this.batchWheel;
+    }
+
+    private void track(Object owner, Object handler, String moduleId) {
+        if (moduleId != null) {
+            this.moduleListeners.computeIfAbsent(handler.getClass().getClassLoader(),
+                    loader -> new ModuleListeners(moduleId, ConcurrentHashMap.newKeySet())).owners().add(owner);
+        }
+    }
+
+    private void untrack(Object owner, Object handler) {
+        ModuleListeners listeners = this.moduleListeners.get(handler.getClass().getClassLoader());
+        if (listeners != null) {
+            listeners.owners().remove(owner);
+        }
+    }
+
+    private static String describe(Object owner) {
+        return owner instanceof EventBatcher<?> batcher ? batcher.describe() : owner.getClass().getName();
+    }
+
+    private ModuleEventExecutor executorFor(String moduleId) {
+        if (moduleId == null || !this.isolateModules) {
+            return null;
+        }
+        return this.executors.computeIfAbsent(moduleId, id ->
+                new ModuleEventExecutor(id, this.virtualThreads, this.queueCapacity, this.overflowPolicy));
+    }
+
+    /**
+     * @return the ID of the module whose class loader loaded {@code handler}, or {@code null} for core code
+     */
+    private String moduleOf(Object handler) {
+        ClassLoader loader = handler.getClass().getClassLoader();
+        ModuleManager moduleManager = this.moduleManager;
+        if (moduleManager == null || loader == SimpleEventRegistry.class.getClassLoader()) {
+            return null;
+        }
+
+        for (Module module : moduleManager.getModules()) {
+            if (module.getClass().getClassLoader() == loader && module.getModuleDescriptor() != null) {
+                return module.getModuleDescriptor().id();
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,184 @@
+package fr.orion.core.interaction;
+
+import fr.orion.api.interfaction.EmbedTemplate;
+import fr.orion.core.util.TimingWheel;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.events.interaction.component.ButtonInteractionEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.interactions.components.buttons.Button;
+import net.dv8tion.jda.api.utils.messages.MessageCreateBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Routes button clicks to the handlers of the message that owns them.
+ * <p>
+ * Every routed message gets a unique prefix, and its buttons use {@code <prefix>:<action>} as component ID, so
+ * a click resolves with one hash lookup however many messages are pending. Routes are one-shot: the first click
+ * or the expiry removes them. Expiry runs on a {@link TimingWheel} and edits the original message to say so,
+ * which keeps the route table bounded by the number of messages sent within one TTL.
+ */
+public class ComponentRouter extends ListenerAdapter implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(ComponentRouter.class);
+
+    public static final Duration DEFAULT_TTL = Duration.ofMinutes(2);
+    /**
+     * Interaction hooks stop working 15 minutes after the interaction, after which an expired message can no
+     * longer be edited.
+     */
+    public static final Duration MAX_TTL = Duration.ofMinutes(14);
+
+    private static final String NAMESPACE = "orion:";
+    private static final Duration TICK = Duration.ofSeconds(1);
+
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    /**
+     * Distinguishes this process's prefixes from those of buttons sent before a restart.
+     */
+    private final String instance = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, Character.MAX_RADIX);
+    private final TimingWheel wheel;
+    private final Duration ttl;
+
+    public ComponentRouter() {
+        this(DEFAULT_TTL);
+    }
+
+    public ComponentRouter(Duration ttl) {
+        this.ttl = ttl.compareTo(MAX_TTL) > 0 ? MAX_TTL : ttl;
+        this.wheel = new TimingWheel("orion-component-expiry", TICK, (int) (this.ttl.toSeconds() / TICK.toSeconds()) + 1);
+    }
+
+    /**
+     * Replies to {@code event} with a confirmation prompt. Only the user who ran the command can answer it.
+     */
+    public void confirm(SlashCommandInteractionEvent event, String message,
+                        Consumer<ButtonInteractionEvent> onConfirm,
+                        Consumer<ButtonInteractionEvent> onCancel) {
+        String prefix = register(event.getUser().getId(), Map.of("confirm", onConfirm, "cancel", onCancel));
+        InteractionReplies.reply(event, new MessageCreateBuilder()
+                .setEmbeds(EmbedTemplate.warning("Confirmation required", message).build())
+                .setActionRow(Button.danger(componentId(prefix, "confirm"), "Confirm"),
+                        Button.secondary(componentId(prefix, "cancel"), "Cancel"))
+                .build(), false, failure -> discard(prefix));
+        attach(prefix, event.getHook());
+    }
+
+    /**
+     * Registers the handlers of a new message and starts its expiry.
+     *
+     * @param ownerId  the only user allowed to click, or {@code null} for anyone
+     * @param handlers handler per action name; buttons must use {@link #componentId(String, String)}
+     * @return the prefix of the message's component IDs
+     */
+    public String register(String ownerId, Map<String, Consumer<ButtonInteractionEvent>> handlers) {
+        String prefix = NAMESPACE + this.instance + "." + Long.toString(this.sequence.incrementAndGet(), Character.MAX_RADIX);
+        Route route = new Route(ownerId, Map.copyOf(handlers));
+        this.routes.put(prefix, route);
+        route.timeout = this.wheel.schedule(this.ttl, () -> expire(prefix));
+        return prefix;
+    }
+
+    /**
+     * Remembers the hook of the message sent for {@code prefix}, so expiry can edit it.
+     */
+    public void attach(String prefix, InteractionHook hook) {
+        Route route = this.routes.get(prefix);
+        if (route != null) {
+            route.hook = hook;
+        }
+    }
+
+    /**
+     * Drops the route of a message that could not be sent.
+     */
+    public void discard(String prefix) {
+        Route route = this.routes.remove(prefix);
+        if (route != null) {
+            route.timeout.cancel();
+        }
+    }
+
+    public static String componentId(String prefix, String action) {
+        return prefix + ":" + action;
+    }
+
+    /**
+     * @return the number of messages still waiting for a click
+     */
+    public int pending() {
+        return this.routes.size();
+    }
+
+    @Override
+    public void onButtonInteraction(ButtonInteractionEvent event) {
+        String componentId = event.getComponentId();
+        int separator = componentId.lastIndexOf(':');
+        if (!componentId.startsWith(NAMESPACE) || separator <= NAMESPACE.length()) {
+            return;
+        }
+
+        String prefix = componentId.substring(0, separator);
+        Route route = this.routes.get(prefix);
+        if (route == null) {
+            event.editMessageEmbeds(expiredEmbed()).setComponents().queue();
+            return;
+        }
+        if (route.ownerId != null && !route.ownerId.equals(event.getUser().getId())) {
+            event.replyEmbeds(EmbedTemplate.error("Not your prompt",
+                            "Only the user who ran the command can answer it.").build())
+                    .setEphemeral(true).queue();
+            return;
+        }
+
+        Consumer<ButtonInteractionEvent> handler = route.handlers.get(componentId.substring(separator + 1));
+        if (handler == null || !this.routes.remove(prefix, route)) {
+            event.editMessageEmbeds(expiredEmbed()).setComponents().queue();
+            return;
+        }
+
+        route.timeout.cancel();
+        handler.accept(event);
+    }
+
+    private void expire(String prefix) {
+        Route route = this.routes.remove(prefix);
+        if (route == null || route.hook == null) {
+            return;
+        }
+
+        route.hook.editOriginalEmbeds(expiredEmbed()).setComponents()
+                .queue(null, failure -> log.debug("Could not mark {} as expired: {}", prefix, failure.getMessage()));
+    }
+
+    private static MessageEmbed expiredEmbed() {
+        return EmbedTemplate.info("Prompt expired", "This prompt expired and no action was taken.").build();
+    }
+
+    @Override
+    public void close() {
+        this.wheel.close();
+        this.routes.clear();
+    }
+
+    private static final class Route {
+        private final String ownerId;
+        private final Map<String, Consumer<ButtonInteractionEvent>> handlers;
+        private volatile InteractionHook hook;
+        private volatile TimingWheel.Timeout timeout;
+
+        private Route(String ownerId, Map<String, Consumer<ButtonInteractionEvent>> handlers) {
+            this.ownerId = ownerId;
+            this.handlers = handlers;
+        }
+    }
+}
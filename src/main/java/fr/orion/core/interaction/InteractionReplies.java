@@ -0,0 +1,164 @@
+package fr.orion.core.interaction;
+
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
+import net.dv8tion.jda.api.interactions.InteractionHook;
+import net.dv8tion.jda.api.utils.messages.MessageCreateData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Sends slash command replies whether or not the interaction was already acknowledged.
+ * <p>
+ * The command executor may defer an interaction from its scheduler thread while the command is still running,
+ * after which {@code event.reply(...)} throws. The executor {@link #track tracks} such interactions, and replies
+ * sent through this class take the same per-interaction lock as the deferral, so each goes either as the
+ * interaction's response or through its hook. A deferral fixes the visibility of the response; when the first
+ * reply after it has the other visibility, the deferred placeholder is deleted and the reply is sent as a
+ * follow-up instead.
+ */
+public final class InteractionReplies {
+    private static final Logger log = LoggerFactory.getLogger(InteractionReplies.class);
+
+    private static final Map<Long, State> TRACKED = new ConcurrentHashMap<>();
+
+    private InteractionReplies() {
+    }
+
+    public static void reply(SlashCommandInteractionEvent event, MessageEmbed embed, boolean ephemeral) {
+        reply(event, MessageCreateData.fromEmbeds(embed), ephemeral, null);
+    }
+
+    public static void reply(SlashCommandInteractionEvent event, String message, boolean ephemeral) {
+        reply(event, MessageCreateData.fromContent(message), ephemeral, null);
+    }
+
+    /**
+     * @param failure called if the reply could not be sent, {@code null} for JDA's default failure handler
+     */
+    public static void reply(SlashCommandInteractionEvent event, MessageCreateData message, boolean ephemeral,
+                             Consumer<? super Throwable> failure) {
+        State state = TRACKED.get(event.getIdLong());
+        if (state == null) {
+            send(event, message, ephemeral, false, failure);
+            return;
+        }
+
+        synchronized (state) {
+            send(event, message, ephemeral, state.deferred && !state.answered && state.deferredEphemeral != ephemeral,
+                    failure);
+            state.answered = true;
+            if (state.deferred) {
+                TRACKED.remove(event.getIdLong(), state);
+            }
+        }
+    }
+
+    /**
+     * Defers the interaction unless it was already acknowledged, for commands about to do slow work.
+     */
+    public static void defer(SlashCommandInteractionEvent event, boolean ephemeral) {
+        State state = TRACKED.get(event.getIdLong());
+        if (state == null) {
+            if (!event.isAcknowledged()) {
+                event.deferReply(ephemeral).queue();
+            }
+            return;
+        }
+
+        synchronized (state) {
+            deferIfUnanswered(event, state, ephemeral);
+        }
+    }
+
+    /**
+     * Starts coordinating replies to {@code event} with a deferral that may come from another thread.
+     */
+    public static void track(SlashCommandInteractionEvent event) {
+        TRACKED.put(event.getIdLong(), new State());
+    }
+
+    /**
+     * Defers {@code event} if nothing answered it yet. Tracking stops unless it deferred, in which case the
+     * first reply still has to check the deferral's visibility.
+     *
+     * @return whether the interaction was deferred
+     */
+    public static boolean deferIfUnanswered(SlashCommandInteractionEvent event, boolean ephemeral) {
+        State state = TRACKED.get(event.getIdLong());
+        if (state == null) {
+            return false;
+        }
+
+        synchronized (state) {
+            boolean deferred = deferIfUnanswered(event, state, ephemeral);
+            if (!deferred && !state.deferred) {
+                TRACKED.remove(event.getIdLong(), state);
+            }
+            return deferred;
+        }
+    }
+
+    /**
+     * Stops tracking {@code event} once it has been acknowledged, unless a deferral is still waiting for its
+     * first reply.
+     *
+     * @return whether {@code event} is still tracked, in which case the caller must {@link #untrack} it once
+     * the interaction can no longer be answered
+     */
+    public static boolean release(SlashCommandInteractionEvent event) {
+        State state = TRACKED.get(event.getIdLong());
+        if (state == null) {
+            return false;
+        }
+
+        synchronized (state) {
+            if (!state.deferred || state.answered) {
+                TRACKED.remove(event.getIdLong(), state);
+                return false;
+            }
+            return true;
+        }
+    }
+
+    public static void untrack(SlashCommandInteractionEvent event) {
+        TRACKED.remove(event.getIdLong());
+    }
+
+    private static boolean deferIfUnanswered(SlashCommandInteractionEvent event, State state, boolean ephemeral) {
+        if (state.answered || state.deferred || event.isAcknowledged()) {
+            return false;
+        }
+
+        event.deferReply(ephemeral).queue(null, error ->
+                log.debug("Could not defer command {}: {}", event.getName(), error.getMessage()));
+        state.deferred = true;
+        state.deferredEphemeral = ephemeral;
+        return true;
+    }
+
+    private static void send(SlashCommandInteractionEvent event, MessageCreateData message, boolean ephemeral,
+                             boolean replaceDeferral, Consumer<? super Throwable> failure) {
+        if (!event.isAcknowledged()) {
+            event.reply(message).setEphemeral(ephemeral).queue(null, failure);
+            return;
+        }
+
+        InteractionHook hook = event.getHook();
+        if (replaceDeferral) {
+            hook.deleteOriginal().queue(null, error ->
+                    log.debug("Could not delete deferred reply of {}: {}", event.getName(), error.getMessage()));
+        }
+        hook.sendMessage(message).setEphemeral(ephemeral).queue(null, failure);
+    }
+
+    private static final class State {
+        private boolean deferred;
+        private boolean deferredEphemeral;
+        private boolean answered;
+    }
+}
@@ -0,0 +1,110 @@
+package fr.orion.core.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and error statistics per full command path, such as {@code modules/reload}.
+ * <p>
+ * Every dispatch records three latencies: queue time (received until the handler starts), handler time,
+ * and acknowledgement time (received until Discord confirmed the first reply or deferral).
+ */
+public class CommandMetrics {
+    private static final long PENDING_ACK_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(30);
+
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+    private final Map<Long, PendingAck> pendingAcks = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong(System.nanoTime());
+
+    private record PendingAck(String commandPath, long receivedNanos) {
+    }
+
+    private static final class Stats {
+        private final LatencyHistogram queue = new LatencyHistogram();
+        private final LatencyHistogram handler = new LatencyHistogram();
+        private final LatencyHistogram acknowledgement = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+    }
+
+    /**
+     * Statistics of one command path; latencies are in nanoseconds.
+     */
+    public record CommandStats(String commandPath, LatencyHistogram.Summary queue, LatencyHistogram.Summary handler,
+                               LatencyHistogram.Summary acknowledgement, long errors) {
+
+        public long invocations() {
+            return this.handler.count();
+        }
+    }
+
+    /**
+     * Starts waiting for the acknowledgement of an interaction received at {@code receivedNanos}.
+     */
+    public void interactionReceived(long interactionId, String commandPath, long receivedNanos) {
+        sweepIfDue(receivedNanos);
+        this.pendingAcks.put(interactionId, new PendingAck(commandPath, receivedNanos));
+    }
+
+    /**
+     * Records the acknowledgement latency of an interaction, if it was still pending.
+     */
+    public void interactionAcknowledged(long interactionId) {
+        PendingAck pending = this.pendingAcks.remove(interactionId);
+        if (pending != null) {
+            stats(pending.commandPath()).acknowledgement.record(System.nanoTime() - pending.receivedNanos());
+        }
+    }
+
+    public void recordExecution(String commandPath, long queueNanos, long handlerNanos, boolean failed) {
+        Stats stats = stats(commandPath);
+        stats.queue.record(queueNanos);
+        stats.handler.record(handlerNanos);
+        if (failed) {
+            stats.errors.increment();
+        }
+    }
+
+    public CommandStats getStats(String commandPath) {
+        Stats stats = this.stats.get(commandPath);
+        return stats != null ? summarize(commandPath, stats) : null;
+    }
+
+    /**
+     * @return statistics of every command that ran, sorted by command path
+     */
+    public Map<String, CommandStats> snapshot() {
+        Map<String, CommandStats> snapshot = new TreeMap<>();
+        this.stats.forEach((commandPath, stats) -> snapshot.put(commandPath, summarize(commandPath, stats)));
+        return snapshot;
+    }
+
+    /**
+     * Converts a slash command's full name ({@code "modules reload"}) to its metrics path.
+     */
+    public static String commandPath(String fullCommandName) {
+        return fullCommandName.replace(' ', '/');
+    }
+
+    private Stats stats(String commandPath) {
+        return this.stats.computeIfAbsent(commandPath, path -> new Stats());
+    }
+
+    private static CommandStats summarize(String commandPath, Stats stats) {
+        return new CommandStats(commandPath, stats.queue.summarize(), stats.handler.summarize(),
+                stats.acknowledgement.summarize(), stats.errors.sum());
+    }
+
+    private void sweepIfDue(long now) {
+        long last = this.lastSweep.get();
+        if (now - last < SWEEP_INTERVAL || !this.lastSweep.compareAndSet(last, now)) {
+            return;
+        }
+        // Interactions that were never answered
+        this.pendingAcks.values().removeIf(pending -> now - pending.receivedNanos() > PENDING_ACK_TIMEOUT);
+    }
+}
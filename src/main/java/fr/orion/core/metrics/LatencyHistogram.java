@@ -0,0 +1,92 @@
+package fr.orion.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free latency histogram with logarithmic buckets, in the style of HdrHistogram.
+ * <p>
+ * Values are recorded in microseconds. Values below {@value #SUB_BUCKETS} are counted exactly and every
+ * power of two above is split into {@value #HALF_SUB_BUCKETS} linear sub-buckets, so a reported percentile
+ * is within about 3% of the recorded value. Values above {@link #MAX_TRACKABLE_MICROS} are clamped into
+ * the last bucket, but {@link #getMaxNanos()} stays exact.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    private static final int MAX_SHIFT = 30;
+    public static final long MAX_TRACKABLE_MICROS = (1L << (MAX_SHIFT + SUB_BUCKET_BITS)) - 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(SUB_BUCKETS + MAX_SHIFT * HALF_SUB_BUCKETS);
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+
+        this.counts.incrementAndGet(indexOf(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_TRACKABLE_MICROS)));
+        this.total.incrementAndGet();
+        this.maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    public long getCount() {
+        return this.total.get();
+    }
+
+    public long getMaxNanos() {
+        return this.maxNanos.get();
+    }
+
+    /**
+     * @param percentile between {@code 0} and {@code 100}
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds, or {@code 0} if empty
+     */
+    public long getPercentileNanos(double percentile) {
+        long total = this.total.get();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < this.counts.length(); i++) {
+            seen += this.counts.get(i);
+            if (seen >= rank) {
+                return Math.min(TimeUnit.MICROSECONDS.toNanos(upperBoundOf(i)), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    public Summary summarize() {
+        return new Summary(getCount(), getPercentileNanos(50), getPercentileNanos(99), getMaxNanos());
+    }
+
+    /**
+     * Point-in-time view of a histogram, in nanoseconds.
+     */
+    public record Summary(long count, long p50Nanos, long p99Nanos, long maxNanos) {
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS + 1;
+        int subBucket = (int) (micros >>> shift);
+        return SUB_BUCKETS + (shift - 1) * HALF_SUB_BUCKETS + subBucket - HALF_SUB_BUCKETS;
+    }
+
+    private static long upperBoundOf(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = (index - SUB_BUCKETS) / HALF_SUB_BUCKETS + 1;
+        long subBucket = (index - SUB_BUCKETS) % HALF_SUB_BUCKETS + HALF_SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,12 @@
+package fr.orion.core.permission;
+
+import fr.orion.api.permission.PermissionManager;
+
+/**
+ * A {@link PermissionManager} that can apply many changes as a single transaction: readers observe either
+ * none or all of a batch, and it costs one persistence write and one cache invalidation pass.
+ */
+public interface BatchPermissionManager extends PermissionManager {
+
+    PermissionBatch.Result applyBatch(PermissionBatch batch);
+}
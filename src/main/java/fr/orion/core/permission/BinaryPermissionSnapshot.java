@@ -0,0 +1,202 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.permission.PermissionJournal.Principal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binary mirror of {@code permissions.yml} used to skip YAML parsing at startup.
+ * <p>
+ * Layout (big-endian): magic, format version, the {@link Stamp} and the size and SHA-256 of the YAML file
+ * it was written from, a table of distinct permission strings, then the user and role sections. Each
+ * section is a count followed by, per principal, its snowflake as a {@code long} and a length-prefixed
+ * array of indexes into the string table. Every permission is decoded once and shared by all principals
+ * holding it.
+ * <p>
+ * The YAML file stays the source of truth: the binary form is only read when the YAML file still has the
+ * recorded hash. The hash check is skipped when the file still has the recorded modification time and size,
+ * unless that time could also be the time of a later edit: it has whole-second precision, or lies within
+ * {@link #TIMESTAMP_GRANULARITY} of when the file was read, so an edit made in the same clock tick would
+ * not have changed it.
+ */
+public final class BinaryPermissionSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(BinaryPermissionSnapshot.class);
+
+    private static final int MAGIC = 0x4F50524D;
+    private static final int VERSION = 2;
+    private static final int HASH_LENGTH = 32;
+    private static final long TIMESTAMP_GRANULARITY = TimeUnit.SECONDS.toNanos(2);
+
+    private BinaryPermissionSnapshot() {
+    }
+
+    /**
+     * Loads the snapshot into {@code store} if it is still in sync with the YAML file.
+     *
+     * @return {@code false} if the snapshot is missing, stale or unreadable, in which case the store is untouched
+     */
+    public static boolean read(Path snapshot, Path yamlFile, PermissionStore store) {
+        if (!Files.exists(snapshot) || !Files.exists(yamlFile)) {
+            return false;
+        }
+
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return false;
+            }
+
+            Stamp stamp = new Stamp(buffer.getLong(), buffer.getLong());
+            long size = buffer.getLong();
+            byte[] hash = new byte[HASH_LENGTH];
+            buffer.get(hash);
+
+            boolean sameFile = stamp.trusted()
+                    && Files.getLastModifiedTime(yamlFile).to(TimeUnit.NANOSECONDS) == stamp.modified()
+                    && Files.size(yamlFile) == size;
+            if (!sameFile && !Arrays.equals(hash, sha256(Files.readAllBytes(yamlFile)))) {
+                return false;
+            }
+
+            PermissionInterner interner = store.interner();
+            int[] permissionIds = new int[buffer.getInt()];
+            for (int i = 0; i < permissionIds.length; i++) {
+                byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(bytes);
+                permissionIds[i] = interner.intern(new String(bytes, StandardCharsets.UTF_8));
+            }
+
+            LongObjectMap<int[]> users = readSection(buffer, permissionIds);
+            LongObjectMap<int[]> roles = readSection(buffer, permissionIds);
+            users.forEach((id, grants) -> store.put(Principal.USER, id, grants));
+            roles.forEach((id, grants) -> store.put(Principal.ROLE, id, grants));
+            return true;
+        } catch (IOException | BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            logger.warn("Ignoring unreadable binary permission snapshot {}", snapshot.getFileName(), e);
+            return false;
+        }
+    }
+
+    /**
+     * Writes a snapshot of {@code store}, stamped with the YAML content it was parsed from or rendered to.
+     *
+     * @param stamp taken before {@code yamlContent} was read from the YAML file, or right after it was written
+     */
+    public static void write(Path snapshot, Stamp stamp, byte[] yamlContent, PermissionStore store) throws IOException {
+        PermissionInterner interner = store.interner();
+        Map<Integer, Integer> indexes = new HashMap<>();
+        ByteArrayOutputStream strings = new ByteArrayOutputStream();
+        DataOutputStream stringsOut = new DataOutputStream(strings);
+        ByteArrayOutputStream sections = new ByteArrayOutputStream();
+        DataOutputStream sectionsOut = new DataOutputStream(sections);
+
+        if (!writeSection(sectionsOut, store.grants(Principal.USER), interner, indexes, stringsOut)
+                || !writeSection(sectionsOut, store.grants(Principal.ROLE), interner, indexes, stringsOut)) {
+            Files.deleteIfExists(snapshot);
+            return;
+        }
+
+        ByteArrayOutputStream content = new ByteArrayOutputStream(HASH_LENGTH + strings.size() + sections.size() + 64);
+        DataOutputStream out = new DataOutputStream(content);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(stamp.modified());
+        out.writeLong(stamp.observed());
+        out.writeLong(yamlContent.length);
+        out.write(sha256(yamlContent));
+        out.writeInt(indexes.size());
+        strings.writeTo(out);
+        sections.writeTo(out);
+        out.flush();
+
+        WriteBehindPersister.writeAtomically(snapshot, content.toByteArray());
+    }
+
+    private static LongObjectMap<int[]> readSection(MappedByteBuffer buffer, int[] permissionIds) {
+        int count = buffer.getInt();
+        LongObjectMap<int[]> section = new LongObjectMap<>(count);
+        for (int i = 0; i < count; i++) {
+            long id = buffer.getLong();
+            int[] grants = new int[buffer.getInt()];
+            for (int j = 0; j < grants.length; j++) {
+                grants[j] = permissionIds[buffer.getInt()];
+            }
+            section.put(id, GrantArrays.of(grants, grants.length));
+        }
+        return section;
+    }
+
+    private static boolean writeSection(DataOutputStream out, PersistentLongMap<int[]> section, PermissionInterner interner,
+                                        Map<Integer, Integer> indexes, DataOutputStream stringsOut) throws IOException {
+        out.writeInt(section.size());
+        for (long id : section.keys()) {
+            int[] grants = section.get(id);
+            out.writeLong(id);
+            out.writeInt(grants.length);
+            for (int permissionId : grants) {
+                Integer index = indexes.get(permissionId);
+                if (index == null) {
+                    byte[] bytes = interner.get(permissionId).getBytes(StandardCharsets.UTF_8);
+                    if (bytes.length > 0xFFFF) {
+                        return false;
+                    }
+                    index = indexes.size();
+                    indexes.put(permissionId, index);
+                    stringsOut.writeShort(bytes.length);
+                    stringsOut.write(bytes);
+                }
+                out.writeInt(index);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * When a version of the YAML file was seen: its modification time and the clock time just before it was
+     * read, both in nanoseconds.
+     */
+    public record Stamp(long modified, long observed) {
+        /**
+         * Reads the clock, then the modification time of {@code yamlFile}; take it before reading the file.
+         */
+        public static Stamp of(Path yamlFile) throws IOException {
+            Instant now = Instant.now();
+            long observed = TimeUnit.SECONDS.toNanos(now.getEpochSecond()) + now.getNano();
+            return new Stamp(Files.getLastModifiedTime(yamlFile).to(TimeUnit.NANOSECONDS), observed);
+        }
+
+        /**
+         * @return whether a matching modification time proves the file did not change since it was read
+         */
+        boolean trusted() {
+            return this.modified % TimeUnit.SECONDS.toNanos(1) != 0
+                    && this.modified < this.observed - TIMESTAMP_GRANULARITY;
+        }
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
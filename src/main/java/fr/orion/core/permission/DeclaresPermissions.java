@@ -0,0 +1,12 @@
+package fr.orion.core.permission;
+
+import java.util.Collection;
+
+/**
+ * Implemented by commands that know which permissions they check. The command registry adds them to the
+ * {@link PermissionCatalog} when the command is registered.
+ */
+public interface DeclaresPermissions {
+
+    Collection<String> getDeclaredPermissions();
+}
@@ -0,0 +1,117 @@
+package fr.orion.core.permission;
+
+import java.util.Arrays;
+
+/**
+ * Operations on sorted, duplicate-free {@code int[]} sets of interned permission IDs.
+ * <p>
+ * Arrays are treated as immutable once stored: every update returns a new array, so a grant array can be
+ * shared between maps and handed to readers without copying.
+ */
+public final class GrantArrays {
+    public static final int[] EMPTY = new int[0];
+
+    private GrantArrays() {
+    }
+
+    public static boolean contains(int[] grants, int id) {
+        return grants != null && Arrays.binarySearch(grants, id) >= 0;
+    }
+
+    /**
+     * @return {@code grants} itself if {@code id} is already present
+     */
+    public static int[] with(int[] grants, int id) {
+        if (grants == null) {
+            return new int[]{id};
+        }
+
+        int index = Arrays.binarySearch(grants, id);
+        if (index >= 0) {
+            return grants;
+        }
+
+        int insertion = -index - 1;
+        int[] result = new int[grants.length + 1];
+        System.arraycopy(grants, 0, result, 0, insertion);
+        result[insertion] = id;
+        System.arraycopy(grants, insertion, result, insertion + 1, grants.length - insertion);
+        return result;
+    }
+
+    /**
+     * @return {@code grants} itself if {@code id} is absent, or {@code null} if the result would be empty
+     */
+    public static int[] without(int[] grants, int id) {
+        if (grants == null) {
+            return null;
+        }
+
+        int index = Arrays.binarySearch(grants, id);
+        if (index < 0) {
+            return grants;
+        }
+        if (grants.length == 1) {
+            return null;
+        }
+
+        int[] result = new int[grants.length - 1];
+        System.arraycopy(grants, 0, result, 0, index);
+        System.arraycopy(grants, index + 1, result, index, grants.length - index - 1);
+        return result;
+    }
+
+    /**
+     * Sorts and deduplicates {@code ids} in place, returning a trimmed array.
+     */
+    public static int[] of(int[] ids, int length) {
+        if (length == 0) {
+            return EMPTY;
+        }
+
+        Arrays.sort(ids, 0, length);
+        int unique = 1;
+        for (int i = 1; i < length; i++) {
+            if (ids[i] != ids[unique - 1]) {
+                ids[unique++] = ids[i];
+            }
+        }
+        return unique == ids.length ? ids : Arrays.copyOf(ids, unique);
+    }
+
+    public static int[] union(int[] left, int[] right) {
+        if (left == null || left.length == 0) {
+            return right != null ? right : EMPTY;
+        }
+        if (right == null || right.length == 0) {
+            return left;
+        }
+
+        int[] result = new int[left.length + right.length];
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < left.length && j < right.length) {
+            int a = left[i];
+            int b = right[j];
+            if (a < b) {
+                result[k++] = a;
+                i++;
+            } else if (a > b) {
+                result[k++] = b;
+                j++;
+            } else {
+                result[k++] = a;
+                i++;
+                j++;
+            }
+        }
+        while (i < left.length) {
+            result[k++] = left[i++];
+        }
+        while (j < right.length) {
+            result[k++] = right[j++];
+        }
+        return k == result.length ? result : Arrays.copyOf(result, k);
+    }
+}
@@ -0,0 +1,697 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.database.ConnectionPool;
+import fr.orion.core.permission.PermissionJournal.Operation;
+import fr.orion.core.permission.PermissionJournal.Principal;
+import fr.orion.core.util.PrefixIndex;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Permission manager backed by a JDBC database, with one table of user grants and one of role grants,
+ * each keyed by (principal ID, permission).
+ * <p>
+ * A principal's grants are read through an LRU cache of compiled {@link PermissionTrie}s, so checks only
+ * query the database on a miss. Changes are written immediately, in one transaction per call or batch, and
+ * then evict the cached grants and decisions they affect. Grants are added with a delete followed by an
+ * insert, which behaves the same on every database without vendor-specific upsert syntax.
+ */
+public class JdbcPermissionManager implements BatchPermissionManager, SuggestsPermissions {
+    private static final Logger logger = LoggerFactory.getLogger(JdbcPermissionManager.class);
+
+    public static final int DEFAULT_GRANT_CACHE_SIZE = 10_000;
+
+    private static final String YAML_MIGRATION = "permissions-yaml";
+
+    private final ConnectionPool pool;
+    private final PermissionDecisionCache decisionCache;
+    private final GrantCache userGrants;
+    private final GrantCache roleGrants;
+    private volatile PermissionCatalog catalog = new PermissionCatalog();
+    private volatile PrefixIndex permissionNodes = new PrefixIndex();
+
+    public JdbcPermissionManager(ConnectionPool pool, int decisionCacheSize, int grantCacheSize) throws SQLException {
+        this.pool = pool;
+        this.decisionCache = new PermissionDecisionCache(decisionCacheSize);
+        this.userGrants = new GrantCache(grantCacheSize);
+        this.roleGrants = new GrantCache(grantCacheSize);
+        createSchema();
+        loadPermissionNodes();
+    }
+
+    private void createSchema() throws SQLException {
+        this.pool.withConnection(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                for (Principal principal : Principal.values()) {
+                    statement.execute("CREATE TABLE IF NOT EXISTS " + table(principal) + " ("
+                            + column(principal) + " BIGINT NOT NULL, "
+                            + "permission VARCHAR(255) NOT NULL, "
+                            + "PRIMARY KEY (" + column(principal) + ", permission))");
+                }
+                statement.execute("CREATE TABLE IF NOT EXISTS orion_migrations ("
+                        + "name VARCHAR(64) NOT NULL PRIMARY KEY, "
+                        + "applied_at BIGINT NOT NULL)");
+            }
+            return null;
+        });
+    }
+
+    private static String table(Principal principal) {
+        return principal == Principal.USER ? "orion_user_permissions" : "orion_role_permissions";
+    }
+
+    private static String column(Principal principal) {
+        return principal == Principal.USER ? "user_id" : "role_id";
+    }
+
+    @Override
+    public boolean hasPermission(Member member, String permission) {
+        if (member == null || permission == null) {
+            return false;
+        }
+
+        String guildId = member.getGuild().getId();
+        Boolean cached = this.decisionCache.get(guildId, member.getId(), permission);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = this.decisionCache.generation();
+        boolean decision = resolvePermission(member, permission);
+        this.decisionCache.put(guildId, member.getId(), member.getRoles(), permission, decision, generation);
+        return decision;
+    }
+
+    private boolean resolvePermission(Member member, String permission) {
+        if (hasPermission(member.getUser(), permission)) {
+            return true;
+        }
+
+        for (Role role : member.getRoles()) {
+            if (hasPermission(role, permission)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean hasPermission(User user, String permission) {
+        if (user == null || permission == null) {
+            return false;
+        }
+
+        return grants(Principal.USER, user.getIdLong()).trie().matches(permission, this.catalog);
+    }
+
+    @Override
+    public boolean hasPermission(Role role, String permission) {
+        if (role == null || permission == null) {
+            return false;
+        }
+
+        return grants(Principal.ROLE, role.getIdLong()).trie().matches(permission, this.catalog);
+    }
+
+    @Override
+    public void addUserPermission(String userId, String permission) {
+        if (userId != null && permission != null) {
+            apply(Operation.ADD, Principal.USER, userId, permission);
+        }
+    }
+
+    @Override
+    public void removeUserPermission(String userId, String permission) {
+        if (userId != null && permission != null) {
+            apply(Operation.REMOVE, Principal.USER, userId, permission);
+        }
+    }
+
+    @Override
+    public void addRolePermission(String roleId, String permission) {
+        if (roleId != null && permission != null) {
+            apply(Operation.ADD, Principal.ROLE, roleId, permission);
+        }
+    }
+
+    @Override
+    public void removeRolePermission(String roleId, String permission) {
+        if (roleId != null && permission != null) {
+            apply(Operation.REMOVE, Principal.ROLE, roleId, permission);
+        }
+    }
+
+    @Override
+    public void clearUserPermissions(String userId) {
+        if (userId != null) {
+            apply(Operation.CLEAR, Principal.USER, userId, null);
+        }
+    }
+
+    @Override
+    public void clearRolePermissions(String roleId) {
+        if (roleId != null) {
+            apply(Operation.CLEAR, Principal.ROLE, roleId, null);
+        }
+    }
+
+    private void apply(Operation operation, Principal principal, String id, String permission) {
+        PermissionBatch batch;
+        try {
+            batch = PermissionBatch.builder().add(operation, principal, id, permission).build();
+        } catch (IllegalArgumentException e) {
+            logger.warn("Ignoring permission change: {}", e.getMessage());
+            return;
+        }
+
+        try {
+            applyBatch(batch);
+            logger.debug("Applied {} of '{}' to {} {}", operation, permission, principal.name().toLowerCase(), id);
+        } catch (IllegalStateException e) {
+            logger.error("Failed to change permissions of {} {}", principal.name().toLowerCase(), id, e.getCause());
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if the database rejected the batch, in which case none of it was applied
+     */
+    @Override
+    public PermissionBatch.Result applyBatch(PermissionBatch batch) {
+        if (batch.isEmpty()) {
+            return new PermissionBatch.Result(0, 0, 0, 0, 0);
+        }
+
+        // Nodes whose last grant this batch may remove, read before the cached grants are invalidated
+        Set<String> released = new HashSet<>();
+        for (PermissionBatch.Change change : batch.changes()) {
+            if (change.operation() == Operation.REMOVE) {
+                released.add(change.permission());
+            } else if (change.operation() == Operation.CLEAR) {
+                released.addAll(grants(change.principal(), PermissionStore.parseId(change.id())).permissions());
+            }
+        }
+
+        PermissionBatch.Result result;
+        try {
+            result = this.pool.inTransaction(connection -> write(connection, batch));
+        } catch (SQLException e) {
+            throw new IllegalStateException("Failed to apply permission batch", e);
+        }
+
+        for (PermissionBatch.Change change : batch.changes()) {
+            invalidate(change.principal(), change.id());
+            if (change.operation() == Operation.ADD) {
+                this.permissionNodes.add(change.permission());
+            }
+        }
+        if (!released.isEmpty()) {
+            updatePermissionNodes(released);
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> suggestPermissions(String prefix, int limit) {
+        return this.permissionNodes.complete(prefix, limit);
+    }
+
+    private void loadPermissionNodes() {
+        try {
+            List<String> nodes = this.pool.withConnection(connection -> {
+                List<String> permissions = new ArrayList<>();
+                try (Statement statement = connection.createStatement();
+                     ResultSet results = statement.executeQuery("SELECT DISTINCT permission FROM " + table(Principal.USER)
+                             + " UNION SELECT DISTINCT permission FROM " + table(Principal.ROLE))) {
+                    while (results.next()) {
+                        permissions.add(results.getString(1));
+                    }
+                }
+                return permissions;
+            });
+            PrefixIndex index = new PrefixIndex();
+            index.addAll(nodes);
+            this.permissionNodes = index;
+        } catch (SQLException e) {
+            logger.warn("Failed to load permission nodes for autocompletion", e);
+        }
+    }
+
+    /**
+     * Drops the nodes among {@code permissions} that no user or role holds anymore.
+     */
+    private void updatePermissionNodes(Set<String> permissions) {
+        try {
+            this.pool.withConnection(connection -> {
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT 1 FROM " + table(Principal.USER) + " WHERE permission = ?"
+                                + " UNION SELECT 1 FROM " + table(Principal.ROLE) + " WHERE permission = ?")) {
+                    for (String permission : permissions) {
+                        select.setString(1, permission);
+                        select.setString(2, permission);
+                        try (ResultSet results = select.executeQuery()) {
+                            if (!results.next()) {
+                                this.permissionNodes.remove(permission);
+                            }
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            logger.warn("Failed to update permission nodes for autocompletion", e);
+        }
+    }
+
+    private static PermissionBatch.Result write(Connection connection, PermissionBatch batch) throws SQLException {
+        try (BatchWriter writer = new BatchWriter(connection)) {
+            for (PermissionBatch.Change change : batch.changes()) {
+                writer.add(change);
+            }
+            writer.flush();
+
+            int applied = writer.grants + writer.revokes + writer.clearCount;
+            return new PermissionBatch.Result(applied, batch.size() - applied, writer.grants, writer.revokes, writer.clearCount);
+        }
+    }
+
+    private void invalidate(Principal principal, String id) {
+        cache(principal).invalidate(PermissionStore.parseId(id));
+        if (principal == Principal.USER) {
+            this.decisionCache.invalidateUser(id);
+        } else {
+            this.decisionCache.invalidateRole(id);
+        }
+    }
+
+    @Override
+    public Set<String> getUserPermissions(String userId) {
+        long id = PermissionStore.parseId(userId);
+        return id != 0 ? new HashSet<>(grants(Principal.USER, id).permissions()) : new HashSet<>();
+    }
+
+    @Override
+    public Set<String> getRolePermissions(String roleId) {
+        long id = PermissionStore.parseId(roleId);
+        return id != 0 ? new HashSet<>(grants(Principal.ROLE, id).permissions()) : new HashSet<>();
+    }
+
+    @Override
+    public Set<String> getEffectivePermissions(Member member) {
+        if (member == null) {
+            return new HashSet<>();
+        }
+
+        Set<String> permissions = new HashSet<>(grants(Principal.USER, member.getIdLong()).permissions());
+        for (Role role : member.getRoles()) {
+            permissions.addAll(grants(Principal.ROLE, role.getIdLong()).permissions());
+        }
+        return permissions;
+    }
+
+    /**
+     * Declared permissions granted to the member directly or through a role, as bits over the catalog.
+     */
+    public BitSet getEffectiveCatalogPermissions(Member member) {
+        BitSet effective = new BitSet();
+        if (member == null) {
+            return effective;
+        }
+
+        PermissionCatalog catalog = this.catalog;
+        effective.or(grants(Principal.USER, member.getIdLong()).trie().expand(catalog));
+        for (Role role : member.getRoles()) {
+            effective.or(grants(Principal.ROLE, role.getIdLong()).trie().expand(catalog));
+        }
+        return effective;
+    }
+
+    /**
+     * Answers checks for permissions declared in {@code catalog} with bit tests over pre-expanded grants.
+     */
+    public void useCatalog(PermissionCatalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    public Set<String> getAllUsersWithPermissions() {
+        return principalIds(Principal.USER);
+    }
+
+    @Override
+    public Set<String> getAllRolesWithPermissions() {
+        return principalIds(Principal.ROLE);
+    }
+
+    private Set<String> principalIds(Principal principal) {
+        try {
+            return this.pool.withConnection(connection -> {
+                Set<String> ids = new HashSet<>();
+                try (Statement statement = connection.createStatement();
+                     ResultSet results = statement.executeQuery(
+                             "SELECT DISTINCT " + column(principal) + " FROM " + table(principal))) {
+                    while (results.next()) {
+                        ids.add(Long.toString(results.getLong(1)));
+                    }
+                }
+                return ids;
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to list {}s with permissions", principal.name().toLowerCase(), e);
+            return new HashSet<>();
+        }
+    }
+
+    public PermissionDecisionCache getDecisionCache() {
+        return this.decisionCache;
+    }
+
+    /**
+     * Drops every cached grant and decision, so changes made to the database directly are picked up.
+     */
+    @Override
+    public void reload() {
+        this.userGrants.invalidateAll();
+        this.roleGrants.invalidateAll();
+        this.decisionCache.invalidateAll();
+        loadPermissionNodes();
+        logger.info("Permission cache cleared, permissions will be reloaded from the database");
+    }
+
+    /**
+     * Changes are written as they are made, so there is nothing to save.
+     */
+    @Override
+    public void save() {
+    }
+
+    /**
+     * Copies the grants in {@code yamlFile} into the database the first time it is called, and records that
+     * it did so the file is not imported again. The file itself is left in place.
+     *
+     * @return the number of grants copied, or {@code 0} if there was nothing to migrate
+     */
+    public int migrateFromYaml(Path yamlFile) {
+        if (!Files.exists(yamlFile)) {
+            return 0;
+        }
+
+        PermissionBatch batch;
+        try {
+            batch = readYaml(yamlFile);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to read {} for migration", yamlFile, e);
+            return 0;
+        }
+
+        try {
+            int migrated = this.pool.inTransaction(connection -> {
+                try (PreparedStatement select = connection.prepareStatement(
+                        "SELECT 1 FROM orion_migrations WHERE name = ?")) {
+                    select.setString(1, YAML_MIGRATION);
+                    try (ResultSet results = select.executeQuery()) {
+                        if (results.next()) {
+                            return 0;
+                        }
+                    }
+                }
+
+                write(connection, batch);
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO orion_migrations (name, applied_at) VALUES (?, ?)")) {
+                    insert.setString(1, YAML_MIGRATION);
+                    insert.setLong(2, System.currentTimeMillis());
+                    insert.executeUpdate();
+                }
+                return batch.size();
+            });
+
+            if (migrated > 0) {
+                reload();
+                logger.info("Migrated {} permission grants from {}", migrated, yamlFile);
+            }
+            return migrated;
+        } catch (SQLException e) {
+            logger.error("Failed to migrate permissions from {}", yamlFile, e);
+            return 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static PermissionBatch readYaml(Path yamlFile) throws IOException {
+        Map<String, Object> data;
+        try (InputStream input = Files.newInputStream(yamlFile)) {
+            LoaderOptions options = new LoaderOptions();
+            options.setCodePointLimit(YamlPermissionManager.MAX_FILE_CODE_POINTS);
+            data = new Yaml(options).load(input);
+        }
+
+        PermissionBatch.Builder builder = PermissionBatch.builder();
+        if (data != null) {
+            readSection(builder, (Map<Object, Object>) data.get("users"), Principal.USER);
+            readSection(builder, (Map<Object, Object>) data.get("roles"), Principal.ROLE);
+        }
+        return builder.build();
+    }
+
+    private static void readSection(PermissionBatch.Builder builder, Map<Object, Object> section, Principal principal) {
+        if (section == null) {
+            return;
+        }
+
+        for (Map.Entry<Object, Object> entry : section.entrySet()) {
+            if (!(entry.getValue() instanceof List<?> permissions)) {
+                continue;
+            }
+
+            for (Object permission : permissions) {
+                try {
+                    builder.add(Operation.ADD, principal, String.valueOf(entry.getKey()), String.valueOf(permission));
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Skipping {} during migration", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private Grants grants(Principal principal, long id) {
+        GrantCache cache = cache(principal);
+        Grants grants = cache.get(id);
+        if (grants != null) {
+            return grants;
+        }
+
+        long generation = cache.generation();
+        try {
+            grants = this.pool.withConnection(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "SELECT permission FROM " + table(principal) + " WHERE " + column(principal) + " = ?")) {
+                    statement.setLong(1, id);
+                    Set<String> permissions = new HashSet<>();
+                    try (ResultSet results = statement.executeQuery()) {
+                        while (results.next()) {
+                            permissions.add(results.getString(1));
+                        }
+                    }
+                    return permissions.isEmpty()
+                            ? Grants.EMPTY
+                            : new Grants(Collections.unmodifiableSet(permissions), PermissionTrie.compile(permissions));
+                }
+            });
+        } catch (SQLException e) {
+            logger.error("Failed to load permissions of {} {}", principal.name().toLowerCase(), id, e);
+            return Grants.EMPTY;
+        }
+
+        cache.put(id, grants, generation);
+        return grants;
+    }
+
+    private GrantCache cache(Principal principal) {
+        return principal == Principal.USER ? this.userGrants : this.roleGrants;
+    }
+
+    private record Grants(Set<String> permissions, PermissionTrie trie) {
+        static final Grants EMPTY = new Grants(Set.of(), PermissionTrie.EMPTY);
+    }
+
+    /**
+     * LRU cache of loaded grants. Like {@link PermissionDecisionCache}, every invalidation bumps a
+     * generation, and grants loaded before the bump are not cached.
+     */
+    private static final class GrantCache {
+        private final LinkedHashMap<Long, Grants> entries;
+        private long generation;
+
+        GrantCache(int maximumSize) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, Grants> eldest) {
+                    return size() > maximumSize;
+                }
+            };
+        }
+
+        synchronized Grants get(long id) {
+            return this.entries.get(id);
+        }
+
+        synchronized long generation() {
+            return this.generation;
+        }
+
+        synchronized void put(long id, Grants grants, long generation) {
+            if (this.generation == generation) {
+                this.entries.put(id, grants);
+            }
+        }
+
+        synchronized void invalidate(long id) {
+            this.entries.remove(id);
+            this.generation++;
+        }
+
+        synchronized void invalidateAll() {
+            this.entries.clear();
+            this.generation++;
+        }
+    }
+
+    /**
+     * Writes changes in order on one connection. Each run of consecutive changes with the same operation and
+     * principal kind goes to the database as one JDBC batch. Repeats within a run are skipped.
+     */
+    private static final class BatchWriter implements AutoCloseable {
+        private final Connection connection;
+        private final Map<Principal, PreparedStatement> inserts = new EnumMap<>(Principal.class);
+        private final Map<Principal, PreparedStatement> deletes = new EnumMap<>(Principal.class);
+        private final Map<Principal, PreparedStatement> clears = new EnumMap<>(Principal.class);
+        private final List<PermissionBatch.Change> run = new ArrayList<>();
+        private final Set<PermissionBatch.Change> runChanges = new HashSet<>();
+
+        int grants;
+        int revokes;
+        int clearCount;
+
+        BatchWriter(Connection connection) {
+            this.connection = connection;
+        }
+
+        void add(PermissionBatch.Change change) throws SQLException {
+            if (!this.run.isEmpty()) {
+                PermissionBatch.Change first = this.run.get(0);
+                if (first.operation() != change.operation() || first.principal() != change.principal()) {
+                    flush();
+                }
+            }
+            if (this.runChanges.add(change)) {
+                this.run.add(change);
+            }
+        }
+
+        void flush() throws SQLException {
+            if (this.run.isEmpty()) {
+                return;
+            }
+
+            PermissionBatch.Change first = this.run.get(0);
+            Principal principal = first.principal();
+            switch (first.operation()) {
+                case ADD -> {
+                    int[] removed = execute(delete(principal), true);
+                    execute(insert(principal), true);
+                    for (int count : removed) {
+                        this.grants += count == 0 || count == Statement.SUCCESS_NO_INFO ? 1 : 0;
+                    }
+                }
+                case REMOVE -> {
+                    for (int count : execute(delete(principal), true)) {
+                        this.revokes += count != 0 ? 1 : 0;
+                    }
+                }
+                case CLEAR -> {
+                    for (int count : execute(clear(principal), false)) {
+                        this.clearCount += count != 0 ? 1 : 0;
+                    }
+                }
+            }
+
+            this.run.clear();
+            this.runChanges.clear();
+        }
+
+        private int[] execute(PreparedStatement statement, boolean withPermission) throws SQLException {
+            for (PermissionBatch.Change change : this.run) {
+                statement.setLong(1, PermissionStore.parseId(change.id()));
+                if (withPermission) {
+                    statement.setString(2, change.permission());
+                }
+                statement.addBatch();
+            }
+            return statement.executeBatch();
+        }
+
+        private PreparedStatement insert(Principal principal) throws SQLException {
+            PreparedStatement statement = this.inserts.get(principal);
+            if (statement == null) {
+                statement = this.connection.prepareStatement("INSERT INTO " + table(principal)
+                        + " (" + column(principal) + ", permission) VALUES (?, ?)");
+                this.inserts.put(principal, statement);
+            }
+            return statement;
+        }
+
+        private PreparedStatement delete(Principal principal) throws SQLException {
+            PreparedStatement statement = this.deletes.get(principal);
+            if (statement == null) {
+                statement = this.connection.prepareStatement("DELETE FROM " + table(principal)
+                        + " WHERE " + column(principal) + " = ? AND permission = ?");
+                this.deletes.put(principal, statement);
+            }
+            return statement;
+        }
+
+        private PreparedStatement clear(Principal principal) throws SQLException {
+            PreparedStatement statement = this.clears.get(principal);
+            if (statement == null) {
+                statement = this.connection.prepareStatement("DELETE FROM " + table(principal)
+                        + " WHERE " + column(principal) + " = ?");
+                this.clears.put(principal, statement);
+            }
+            return statement;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            for (Map<Principal, PreparedStatement> statements : List.of(this.inserts, this.deletes, this.clears)) {
+                for (PreparedStatement statement : statements.values()) {
+                    statement.close();
+                }
+            }
+        }
+    }
+}
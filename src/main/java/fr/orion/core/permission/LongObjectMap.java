@@ -0,0 +1,209 @@
+package fr.orion.core.permission;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to objects, with linear probing and
+ * backward-shift deletion. Keys are Discord snowflakes, so {@code 0} is reserved as the empty slot marker.
+ * <p>
+ * Not thread-safe.
+ */
+public final class LongObjectMap<V> {
+    private static final long EMPTY = 0L;
+    private static final int MINIMUM_CAPACITY = 8;
+
+    @FunctionalInterface
+    public interface Consumer<V> {
+        void accept(long key, V value);
+    }
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+
+    public LongObjectMap() {
+        this(MINIMUM_CAPACITY);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private LongObjectMap(LongObjectMap<V> source) {
+        this.keys = source.keys.clone();
+        this.values = source.values.clone();
+        this.size = source.size;
+        this.mask = source.mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        checkKey(key);
+        int index = index(key);
+        while (true) {
+            long current = this.keys[index];
+            if (current == key) {
+                return (V) this.values[index];
+            }
+            if (current == EMPTY) {
+                return null;
+            }
+            index = (index + 1) & this.mask;
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        checkKey(key);
+        if (value == null) {
+            return remove(key);
+        }
+
+        int index = index(key);
+        while (true) {
+            long current = this.keys[index];
+            if (current == key) {
+                V previous = (V) this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+            if (current == EMPTY) {
+                this.keys[index] = key;
+                this.values[index] = value;
+                if (++this.size > (this.keys.length >> 1) + (this.keys.length >> 2)) {
+                    resize(this.keys.length << 1);
+                }
+                return null;
+            }
+            index = (index + 1) & this.mask;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        checkKey(key);
+        int index = index(key);
+        while (true) {
+            long current = this.keys[index];
+            if (current == EMPTY) {
+                return null;
+            }
+            if (current == key) {
+                V previous = (V) this.values[index];
+                shiftBack(index);
+                this.size--;
+                return previous;
+            }
+            index = (index + 1) & this.mask;
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(this.keys, EMPTY);
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    public long[] keys() {
+        long[] result = new long[this.size];
+        int i = 0;
+        for (long key : this.keys) {
+            if (key != EMPTY) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super V> consumer) {
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != EMPTY) {
+                consumer.accept(this.keys[i], (V) this.values[i]);
+            }
+        }
+    }
+
+    /**
+     * Returns a shallow copy; values are shared.
+     */
+    public LongObjectMap<V> copy() {
+        return new LongObjectMap<>(this);
+    }
+
+    private void shiftBack(int hole) {
+        int index = hole;
+        while (true) {
+            index = (index + 1) & this.mask;
+            long key = this.keys[index];
+            if (key == EMPTY) {
+                break;
+            }
+
+            int home = index(key);
+            boolean movable = hole <= index ? (home <= hole || home > index) : (home <= hole && home > index);
+            if (movable) {
+                this.keys[hole] = key;
+                this.values[hole] = this.values[index];
+                hole = index;
+            }
+        }
+        this.keys[hole] = EMPTY;
+        this.values[hole] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != EMPTY) {
+                int index = index(key);
+                while (this.keys[index] != EMPTY) {
+                    index = (index + 1) & this.mask;
+                }
+                this.keys[index] = key;
+                this.values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private int index(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & this.mask;
+    }
+
+    private static void checkKey(long key) {
+        if (key == EMPTY) {
+            throw new IllegalArgumentException("0 is not a valid key");
+        }
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MINIMUM_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -0,0 +1,104 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.permission.PermissionJournal.Operation;
+import fr.orion.core.permission.PermissionJournal.Principal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered set of grant, revoke and clear operations applied as one transaction by a
+ * {@link BatchPermissionManager}. Entries are validated when added, so a built batch always applies in full.
+ */
+public final class PermissionBatch {
+    private final List<Change> changes;
+
+    private PermissionBatch(List<Change> changes) {
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<Change> changes() {
+        return this.changes;
+    }
+
+    public int size() {
+        return this.changes.size();
+    }
+
+    public boolean isEmpty() {
+        return this.changes.isEmpty();
+    }
+
+    public record Change(Operation operation, Principal principal, String id, String permission) {
+    }
+
+    /**
+     * Outcome of a batch: how many changes altered the stored grants and how many were already in effect.
+     */
+    public record Result(int applied, int unchanged, int grants, int revokes, int clears) {
+    }
+
+    public static final class Builder {
+        private final List<Change> changes = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        public Builder addUserPermission(String userId, String permission) {
+            return add(Operation.ADD, Principal.USER, userId, permission);
+        }
+
+        public Builder removeUserPermission(String userId, String permission) {
+            return add(Operation.REMOVE, Principal.USER, userId, permission);
+        }
+
+        public Builder addRolePermission(String roleId, String permission) {
+            return add(Operation.ADD, Principal.ROLE, roleId, permission);
+        }
+
+        public Builder removeRolePermission(String roleId, String permission) {
+            return add(Operation.REMOVE, Principal.ROLE, roleId, permission);
+        }
+
+        public Builder clearUserPermissions(String userId) {
+            return add(Operation.CLEAR, Principal.USER, userId, null);
+        }
+
+        public Builder clearRolePermissions(String roleId) {
+            return add(Operation.CLEAR, Principal.ROLE, roleId, null);
+        }
+
+        /**
+         * @throws IllegalArgumentException if the ID is not a snowflake or the permission is missing or blank
+         */
+        public Builder add(Operation operation, Principal principal, String id, String permission) {
+            if (PermissionStore.parseId(id) == 0) {
+                throw new IllegalArgumentException("Invalid " + principal.name().toLowerCase() + " ID: " + id);
+            }
+
+            String normalized = null;
+            if (operation != Operation.CLEAR) {
+                if (permission == null || permission.isBlank() || permission.chars().anyMatch(Character::isWhitespace)) {
+                    throw new IllegalArgumentException("Invalid permission: " + permission);
+                }
+                normalized = permission.toLowerCase();
+            }
+
+            this.changes.add(new Change(operation, principal, id, normalized));
+            return this;
+        }
+
+        public int size() {
+            return this.changes.size();
+        }
+
+        public PermissionBatch build() {
+            return new PermissionBatch(new ArrayList<>(this.changes));
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.permission.PermissionJournal.Operation;
+import fr.orion.core.permission.PermissionJournal.Principal;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parses bulk permission change files into a {@link PermissionBatch}.
+ * <p>
+ * CSV files hold one change per line as {@code action,target,id[,permission]}, where action is
+ * {@code add}, {@code remove} or {@code clear} and target is {@code user} or {@code role}. Blank lines,
+ * {@code #} comments and a leading header row are skipped.
+ * <p>
+ * YAML files hold a list of changes, either at the top level or under {@code changes}, each written as
+ * {@code {action: add, role: "123", permission: modules.view}}.
+ */
+public final class PermissionBatchReader {
+
+    private PermissionBatchReader() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if any entry is malformed; the message names the offending line or entry
+     */
+    public static PermissionBatch read(String fileName, InputStream input) throws IOException {
+        String lowerName = fileName.toLowerCase(Locale.ROOT);
+        if (lowerName.endsWith(".yml") || lowerName.endsWith(".yaml")) {
+            return readYaml(input);
+        }
+        return readCsv(input);
+    }
+
+    private static PermissionBatch readCsv(InputStream input) throws IOException {
+        PermissionBatch.Builder builder = PermissionBatch.builder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")
+                        || (lineNumber == 1 && line.toLowerCase(Locale.ROOT).startsWith("action"))) {
+                    continue;
+                }
+
+                String[] fields = line.split(",", -1);
+                try {
+                    if (fields.length < 3) {
+                        throw new IllegalArgumentException("expected action,target,id[,permission]");
+                    }
+                    builder.add(operation(fields[0]), principal(fields[1]), fields[2].strip(),
+                            fields.length > 3 ? fields[3].strip() : null);
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private static PermissionBatch readYaml(InputStream input) {
+        Object root = new Yaml().load(input);
+        if (root instanceof Map<?, ?> map) {
+            root = map.get("changes");
+        }
+        if (!(root instanceof List<?> entries)) {
+            throw new IllegalArgumentException("Expected a list of changes");
+        }
+
+        PermissionBatch.Builder builder = PermissionBatch.builder();
+        int index = 0;
+        for (Object entry : entries) {
+            index++;
+            try {
+                if (!(entry instanceof Map<?, ?> change)) {
+                    throw new IllegalArgumentException("expected a map");
+                }
+
+                Object user = change.get("user");
+                Object role = change.get("role");
+                if ((user == null) == (role == null)) {
+                    throw new IllegalArgumentException("exactly one of 'user' or 'role' is required");
+                }
+
+                Object permission = change.get("permission");
+                builder.add(operation(String.valueOf(change.get("action"))),
+                        user != null ? Principal.USER : Principal.ROLE,
+                        String.valueOf(user != null ? user : role),
+                        permission != null ? permission.toString() : null);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Entry " + index + ": " + e.getMessage(), e);
+            }
+        }
+        return builder.build();
+    }
+
+    private static Operation operation(String value) {
+        return switch (value.strip().toLowerCase(Locale.ROOT)) {
+            case "add", "grant" -> Operation.ADD;
+            case "remove", "revoke" -> Operation.REMOVE;
+            case "clear" -> Operation.CLEAR;
+            default -> throw new IllegalArgumentException("unknown action '" + value.strip() + "'");
+        };
+    }
+
+    private static Principal principal(String value) {
+        return switch (value.strip().toLowerCase(Locale.ROOT)) {
+            case "user" -> Principal.USER;
+            case "role" -> Principal.ROLE;
+            default -> throw new IllegalArgumentException("unknown target '" + value.strip() + "'");
+        };
+    }
+}
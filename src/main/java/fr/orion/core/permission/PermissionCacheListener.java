@@ -0,0 +1,29 @@
+package fr.orion.core.permission;
+
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleAddEvent;
+import net.dv8tion.jda.api.events.guild.member.GuildMemberRoleRemoveEvent;
+import net.dv8tion.jda.api.events.role.RoleDeleteEvent;
+import net.dv8tion.jda.api.hooks.ListenerAdapter;
+
+public class PermissionCacheListener extends ListenerAdapter {
+    private final PermissionDecisionCache cache;
+
+    public PermissionCacheListener(PermissionDecisionCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void onGuildMemberRoleAdd(GuildMemberRoleAddEvent event) {
+        this.cache.invalidateMember(event.getGuild().getId(), event.getUser().getId());
+    }
+
+    @Override
+    public void onGuildMemberRoleRemove(GuildMemberRoleRemoveEvent event) {
+        this.cache.invalidateMember(event.getGuild().getId(), event.getUser().getId());
+    }
+
+    @Override
+    public void onRoleDelete(RoleDeleteEvent event) {
+        this.cache.invalidateRole(event.getRole().getId());
+    }
+}
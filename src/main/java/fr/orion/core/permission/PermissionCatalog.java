@@ -0,0 +1,90 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.util.PrefixIndex;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The concrete permissions that commands and modules declare they check, each assigned a stable bit index.
+ * <p>
+ * A {@link PermissionTrie} can be expanded once into a {@link BitSet} over the catalog. A check for a
+ * declared permission is then a single bit test, and a member's effective catalog permissions are an OR of
+ * their user and role bitsets. Permissions can only be added, so indexes never move and
+ * {@link #size()} doubles as the catalog version.
+ */
+public final class PermissionCatalog {
+    private final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private volatile String[] permissions = new String[0];
+    private final PrefixIndex prefixes = new PrefixIndex();
+
+    /**
+     * @return whether the permission was not declared yet
+     * @throws IllegalArgumentException if the permission is blank or a wildcard
+     */
+    public synchronized boolean declare(String permission) {
+        if (permission == null || permission.isBlank() || permission.contains("*")) {
+            throw new IllegalArgumentException("Not a concrete permission: " + permission);
+        }
+
+        String normalized = permission.toLowerCase();
+        if (this.indexes.containsKey(normalized)) {
+            return false;
+        }
+
+        String[] table = Arrays.copyOf(this.permissions, this.permissions.length + 1);
+        table[table.length - 1] = normalized;
+        this.permissions = table;
+        this.indexes.put(normalized, table.length - 1);
+        this.prefixes.add(normalized);
+        return true;
+    }
+
+    public void declareAll(Collection<String> permissions) {
+        for (String permission : permissions) {
+            declare(permission);
+        }
+    }
+
+    /**
+     * @return the bit index of {@code permission}, or {@code -1} if it was not declared
+     */
+    public int indexOf(String permission) {
+        Integer index = this.indexes.get(permission);
+        return index != null ? index : -1;
+    }
+
+    public String get(int index) {
+        return this.permissions[index];
+    }
+
+    public int size() {
+        return this.permissions.length;
+    }
+
+    public List<String> permissions() {
+        return List.of(this.permissions);
+    }
+
+    /**
+     * @return up to {@code limit} declared permissions starting with {@code prefix}, ignoring case
+     */
+    public List<String> complete(String prefix, int limit) {
+        return this.prefixes.complete(prefix, limit);
+    }
+
+    public Set<String> toPermissions(BitSet bits) {
+        String[] table = this.permissions;
+        Set<String> result = new HashSet<>(bits.cardinality() * 4 / 3 + 1);
+        for (int i = bits.nextSetBit(0); i >= 0 && i < table.length; i = bits.nextSetBit(i + 1)) {
+            result.add(table[i]);
+        }
+        return result;
+    }
+}
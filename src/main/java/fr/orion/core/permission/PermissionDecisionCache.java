@@ -0,0 +1,249 @@
+package fr.orion.core.permission;
+
+import net.dv8tion.jda.api.entities.Role;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of member permission decisions keyed by (guild, member, permission).
+ * <p>
+ * Decisions are held per user, then per guild, in concurrent maps, so a lookup takes no lock and allocates
+ * nothing. A change to a user's grants or a member's roles evicts that user's or member's decisions; a change
+ * to a role's grants evicts the users whose decisions were made while holding it, which scans the cached
+ * users since role changes are rare.
+ * <p>
+ * Every invalidation bumps a generation counter; callers read it before resolving a decision and pass it
+ * back to {@link #put}, which drops decisions resolved against state that has since changed. {@code put}
+ * checks the generation again once the decision is stored and takes it back if an invalidation ran in
+ * between, so no decision outlives the invalidation that should have removed it.
+ * <p>
+ * Eviction is approximate: the size is tracked by a counter that races with invalidations, and once it
+ * passes the maximum size the thread that notices recounts and drops the least recently used users until
+ * the cache is back under seven eighths of it.
+ */
+public final class PermissionDecisionCache {
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    private static final long ACCESS_RESOLUTION = 1_000_000;
+
+    private final int maximumSize;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<String, UserDecisions> users = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public PermissionDecisionCache() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public PermissionDecisionCache(int maximumSize) {
+        this(maximumSize, System::nanoTime);
+    }
+
+    /**
+     * @param clock source of the access times that order eviction, in nanoseconds
+     */
+    PermissionDecisionCache(int maximumSize, LongSupplier clock) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+    }
+
+    public Boolean get(String guildId, String userId, String permission) {
+        UserDecisions user = this.users.get(userId);
+        Map<String, Boolean> decisions = user != null ? user.guilds.get(guildId) : null;
+        Boolean decision = decisions != null ? decisions.get(permission) : null;
+        if (decision == null) {
+            this.misses.increment();
+        } else {
+            this.hits.increment();
+            user.touch(this.clock.getAsLong());
+        }
+        return decision;
+    }
+
+    public long generation() {
+        return this.generation.get();
+    }
+
+    public void put(String guildId, String userId, List<Role> roles, String permission,
+                    boolean decision, long generation) {
+        if (generation != this.generation.get()) {
+            return;
+        }
+
+        UserDecisions user = this.users.computeIfAbsent(userId, k -> new UserDecisions(this.clock.getAsLong()));
+        for (Role role : roles) {
+            user.roles.add(role.getId());
+        }
+        Map<String, Boolean> decisions = user.guilds.computeIfAbsent(guildId, k -> new ConcurrentHashMap<>());
+        Boolean previous = decisions.put(permission, decision);
+        if (generation != this.generation.get()) {
+            decisions.remove(permission);
+            return;
+        }
+        if (previous == null && this.size.incrementAndGet() > this.maximumSize) {
+            evict();
+        }
+    }
+
+    public void invalidateUser(String userId) {
+        this.generation.incrementAndGet();
+        UserDecisions user = this.users.remove(userId);
+        if (user != null) {
+            drop(user.size());
+        }
+    }
+
+    public void invalidateMember(String guildId, String userId) {
+        this.generation.incrementAndGet();
+        UserDecisions user = this.users.get(userId);
+        Map<String, Boolean> decisions = user != null ? user.guilds.remove(guildId) : null;
+        if (decisions != null) {
+            drop(decisions.size());
+        }
+    }
+
+    public void invalidateRole(String roleId) {
+        this.generation.incrementAndGet();
+        this.users.forEach((userId, user) -> {
+            if (user.roles.contains(roleId) && this.users.remove(userId, user)) {
+                drop(user.size());
+            }
+        });
+    }
+
+    public void invalidateAll() {
+        this.generation.incrementAndGet();
+        for (String userId : this.users.keySet()) {
+            UserDecisions user = this.users.remove(userId);
+            if (user != null) {
+                drop(user.size());
+            }
+        }
+    }
+
+    /**
+     * Counts the cached decisions, walking every user; use for statistics only.
+     */
+    public int size() {
+        int size = 0;
+        for (UserDecisions user : this.users.values()) {
+            size += user.size();
+        }
+        return size;
+    }
+
+    public int getMaximumSize() {
+        return this.maximumSize;
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return this.evictions.sum();
+    }
+
+    public long getInvalidationCount() {
+        return this.invalidations.sum();
+    }
+
+    private void drop(int decisions) {
+        this.size.addAndGet(-decisions);
+        this.invalidations.add(decisions);
+    }
+
+    /**
+     * Drops the least recently used users until the cache is back under seven eighths of its maximum size.
+     * Only one thread evicts at a time; the others carry on, as the cache may briefly exceed its bound.
+     */
+    private void evict() {
+        if (!this.evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            List<Candidate> candidates = new ArrayList<>(this.users.size());
+            int size = 0;
+            for (Map.Entry<String, UserDecisions> entry : this.users.entrySet()) {
+                UserDecisions user = entry.getValue();
+                candidates.add(new Candidate(entry.getKey(), user, user.lastAccess));
+                size += user.size();
+            }
+            candidates.sort(Comparator.comparingLong(Candidate::lastAccess));
+
+            int target = this.maximumSize - this.maximumSize / 8;
+            for (int i = 0; i < candidates.size() && size > target; i++) {
+                Candidate candidate = candidates.get(i);
+                if (this.users.remove(candidate.userId(), candidate.user())) {
+                    int evicted = candidate.user().size();
+                    size -= evicted;
+                    this.evictions.add(evicted);
+                }
+            }
+            this.size.set(size);
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * A user considered for eviction, with its last access read once so that sorting sees a stable order.
+     */
+    private record Candidate(String userId, UserDecisions user, long lastAccess) {
+    }
+
+    /**
+     * The decisions cached for one user, by guild, and the roles they were made with.
+     */
+    private static final class UserDecisions {
+        private final Map<String, Map<String, Boolean>> guilds = new ConcurrentHashMap<>();
+        private final Set<String> roles = ConcurrentHashMap.newKeySet();
+        private volatile long lastAccess;
+
+        private UserDecisions(long now) {
+            this.lastAccess = now;
+        }
+
+        /**
+         * Records an access, at most once per {@link #ACCESS_RESOLUTION} nanoseconds so that frequent hits
+         * on the same user do not keep writing to it.
+         */
+        private void touch(long now) {
+            if (now - this.lastAccess > ACCESS_RESOLUTION) {
+                this.lastAccess = now;
+            }
+        }
+
+        private int size() {
+            int size = 0;
+            for (Map<String, Boolean> decisions : this.guilds.values()) {
+                size += decisions.size();
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package fr.orion.core.permission;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches permission files for changes made outside the bot, with a single {@link WatchService} thread for
+ * every watched file.
+ * <p>
+ * Bursts of events for one file, such as an editor truncating and then rewriting it, are collapsed. The
+ * file's callback runs on the watcher thread once the file has been quiet for the debounce delay.
+ */
+public class PermissionFileWatcher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PermissionFileWatcher.class);
+
+    public static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(250);
+
+    private final WatchService watchService;
+    private final long debounceNanos;
+    private final Map<Path, Runnable> callbacks = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> keys = new HashMap<>();
+    private final Map<Path, Long> due = new HashMap<>();
+    private final Thread thread;
+
+    public PermissionFileWatcher(Duration debounce) throws IOException {
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.debounceNanos = debounce.toNanos();
+        this.thread = new Thread(this::run, "orion-permission-watcher");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Calls {@code onChange} whenever {@code file} is created or modified, replacing any earlier callback
+     * for the same file.
+     */
+    public void watch(Path file, Runnable onChange) {
+        Path target = file.toAbsolutePath().normalize();
+        Path directory = target.getParent();
+        synchronized (this.keys) {
+            try {
+                if (!this.keys.containsKey(directory)) {
+                    this.keys.put(directory, directory.register(this.watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY));
+                }
+                this.callbacks.put(target, onChange);
+            } catch (IOException | ClosedWatchServiceException e) {
+                logger.warn("Cannot watch {} for changes", target, e);
+            }
+        }
+    }
+
+    public void unwatch(Path file) {
+        Path target = file.toAbsolutePath().normalize();
+        Path directory = target.getParent();
+        synchronized (this.keys) {
+            this.callbacks.remove(target);
+            if (this.callbacks.keySet().stream().noneMatch(watched -> watched.getParent().equals(directory))) {
+                WatchKey key = this.keys.remove(directory);
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.watchService.close();
+        } catch (IOException e) {
+            logger.warn("Failed to close permission file watcher", e);
+        }
+        this.thread.interrupt();
+    }
+
+    private void run() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = this.due.isEmpty()
+                        ? this.watchService.take()
+                        : this.watchService.poll(nextDelay(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+
+            if (key != null) {
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        for (Path file : this.callbacks.keySet()) {
+                            if (file.getParent().equals(directory)) {
+                                this.due.put(file, System.nanoTime() + this.debounceNanos);
+                            }
+                        }
+                        continue;
+                    }
+
+                    Path file = directory.resolve((Path) event.context());
+                    if (this.callbacks.containsKey(file)) {
+                        this.due.put(file, System.nanoTime() + this.debounceNanos);
+                    }
+                }
+                key.reset();
+            }
+
+            runDueCallbacks();
+        }
+    }
+
+    private long nextDelay() {
+        long now = System.nanoTime();
+        long delay = Long.MAX_VALUE;
+        for (long deadline : this.due.values()) {
+            delay = Math.min(delay, deadline - now);
+        }
+        return Math.max(0, delay);
+    }
+
+    private void runDueCallbacks() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Long>> iterator = this.due.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Path, Long> entry = iterator.next();
+            if (entry.getValue() - now > 0) {
+                continue;
+            }
+
+            iterator.remove();
+            Runnable callback = this.callbacks.get(entry.getKey());
+            if (callback == null) {
+                continue;
+            }
+
+            try {
+                callback.run();
+            } catch (RuntimeException e) {
+                logger.error("Failed to handle change to {}", entry.getKey(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package fr.orion.core.permission;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns each distinct permission string a stable {@code int} ID so grants can be stored as {@code int[]}
+ * and every principal holding a permission shares the same {@code String} instance.
+ * <p>
+ * IDs are never reclaimed; the table only grows with the number of distinct permissions ever granted.
+ */
+public final class PermissionInterner {
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private volatile String[] permissions = new String[64];
+    private int size;
+
+    public int intern(String permission) {
+        Integer id = this.ids.get(permission);
+        if (id != null) {
+            return id;
+        }
+
+        synchronized (this) {
+            id = this.ids.get(permission);
+            if (id != null) {
+                return id;
+            }
+
+            String[] table = this.permissions;
+            if (this.size == table.length) {
+                table = Arrays.copyOf(table, table.length << 1);
+            }
+            int next = this.size++;
+            table[next] = permission;
+            this.permissions = table;
+            this.ids.put(permission, next);
+            return next;
+        }
+    }
+
+    /**
+     * @return the ID of {@code permission}, or {@code -1} if it was never interned
+     */
+    public int find(String permission) {
+        Integer id = this.ids.get(permission);
+        return id != null ? id : -1;
+    }
+
+    public String get(int id) {
+        return this.permissions[id];
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+}
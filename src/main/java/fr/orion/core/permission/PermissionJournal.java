@@ -0,0 +1,236 @@
+package fr.orion.core.permission;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only log of permission mutations.
+ * <p>
+ * Each mutation is one line: an operation ({@code +} add, {@code -} remove, {@code !} clear), a principal
+ * kind ({@code u} user, {@code r} role), the principal ID and, except for clears, the permission. Records
+ * are idempotent set operations, so replaying a journal over a snapshot that already contains some of its
+ * records still converges on the live state.
+ * <p>
+ * Every append is forced to the storage device before it returns, and a {@link PermissionBatch} is written
+ * and forced as a whole, so a mutation that was acknowledged survives a crash or power loss.
+ * <p>
+ * Compaction {@link #rotate() rotates} the active log aside before the snapshot is written, so mutations
+ * made while the snapshot is being written land in a fresh log and are never lost.
+ */
+public class PermissionJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PermissionJournal.class);
+
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1024 * 1024;
+
+    public enum Operation {
+        ADD('+'), REMOVE('-'), CLEAR('!');
+
+        private final char symbol;
+
+        Operation(char symbol) {
+            this.symbol = symbol;
+        }
+
+        private static Operation of(char symbol) {
+            for (Operation operation : values()) {
+                if (operation.symbol == symbol) {
+                    return operation;
+                }
+            }
+            return null;
+        }
+    }
+
+    public enum Principal {
+        USER('u'), ROLE('r');
+
+        private final char symbol;
+
+        Principal(char symbol) {
+            this.symbol = symbol;
+        }
+
+        private static Principal of(char symbol) {
+            for (Principal principal : values()) {
+                if (principal.symbol == symbol) {
+                    return principal;
+                }
+            }
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void apply(Operation operation, Principal principal, String id, String permission);
+    }
+
+    private final Path active;
+    private final Path rotated;
+    private final long compactionThreshold;
+
+    private FileChannel channel;
+    private long size;
+
+    public PermissionJournal(Path dataDirectory, long compactionThreshold) {
+        this.active = dataDirectory.resolve("permissions.journal");
+        this.rotated = dataDirectory.resolve("permissions.journal.1");
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Replays the rotated log left over from an interrupted compaction, then the active log.
+     *
+     * @return the number of records applied
+     */
+    public synchronized int replay(RecordHandler handler) throws IOException {
+        return replay(this.rotated, handler) + replay(this.active, handler);
+    }
+
+    public synchronized void append(Operation operation, Principal principal, String id, String permission) throws IOException {
+        StringBuilder records = new StringBuilder(32);
+        record(records, operation, principal, id, permission);
+        write(records);
+    }
+
+    /**
+     * Appends every change of a batch with a single write and a single sync.
+     */
+    public synchronized void append(PermissionBatch batch) throws IOException {
+        StringBuilder records = new StringBuilder(32 * batch.changes().size());
+        for (PermissionBatch.Change change : batch.changes()) {
+            record(records, change.operation(), change.principal(), change.id(), change.permission());
+        }
+        write(records);
+    }
+
+    private static void record(StringBuilder out, Operation operation, Principal principal, String id, String permission) {
+        out.append(operation.symbol).append(principal.symbol).append(' ').append(id);
+        if (permission != null) {
+            out.append(' ').append(permission);
+        }
+        out.append('\n');
+    }
+
+    private void write(StringBuilder records) throws IOException {
+        FileChannel out = channel();
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(records.toString());
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        out.force(false);
+        this.size += length;
+    }
+
+    public synchronized boolean needsCompaction() {
+        return this.size >= this.compactionThreshold || Files.exists(this.rotated);
+    }
+
+    /**
+     * Moves the active log aside so that a snapshot can absorb it. If a previous rotation was never
+     * compacted, the active log is appended to it instead so that no record is dropped.
+     */
+    public synchronized void rotate() throws IOException {
+        closeChannel();
+        if (!Files.exists(this.active)) {
+            return;
+        }
+
+        if (Files.exists(this.rotated)) {
+            Files.write(this.rotated, Files.readAllBytes(this.active), StandardOpenOption.APPEND);
+            Files.delete(this.active);
+        } else {
+            Files.move(this.active, this.rotated, StandardCopyOption.ATOMIC_MOVE);
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Discards the rotated log once a snapshot containing it has been durably written.
+     */
+    public synchronized void discardRotated() throws IOException {
+        Files.deleteIfExists(this.rotated);
+    }
+
+    public synchronized long size() {
+        return this.size;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            closeChannel();
+        } catch (IOException e) {
+            logger.error("Failed to close permission journal", e);
+        }
+    }
+
+    private FileChannel channel() throws IOException {
+        if (this.channel == null) {
+            this.channel = FileChannel.open(this.active, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.APPEND);
+            this.size = this.channel.size();
+        }
+        return this.channel;
+    }
+
+    private void closeChannel() throws IOException {
+        if (this.channel != null) {
+            this.channel.close();
+            this.channel = null;
+        }
+    }
+
+    private int replay(Path file, RecordHandler handler) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        String content = Files.readString(file, StandardCharsets.UTF_8);
+        int complete = content.lastIndexOf('\n') + 1;
+        if (complete < content.length()) {
+            logger.warn("Discarding torn record at the end of {}", file.getFileName());
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(content.substring(0, complete).getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+
+        int applied = 0;
+        int start = 0;
+        while (start < complete) {
+            int end = content.indexOf('\n', start);
+            String line = content.substring(start, end);
+            start = end + 1;
+            if (line.length() < 4) {
+                continue;
+            }
+
+            Operation operation = Operation.of(line.charAt(0));
+            Principal principal = Principal.of(line.charAt(1));
+            String[] parts = line.substring(3).split(" ", 2);
+            if (operation == null || principal == null
+                    || (operation != Operation.CLEAR && parts.length < 2)) {
+                logger.warn("Skipping malformed permission journal record in {}: {}", file.getFileName(), line);
+                continue;
+            }
+
+            handler.apply(operation, principal, parts[0], parts.length > 1 ? parts[1] : null);
+            applied++;
+        }
+
+        if (file.equals(this.active)) {
+            this.size = Files.size(file);
+        }
+        return applied;
+    }
+}
@@ -0,0 +1,46 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.util.PrefixIndex;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Permission nodes currently granted to at least one user or role, for autocompletion.
+ * <p>
+ * Each node is reference counted by the number of grants holding it, so a node leaves the index when its
+ * last grant is revoked. Managers report grants as they publish changes, keeping the index up to date
+ * without rescanning the store.
+ */
+public final class PermissionNodeIndex {
+    private final Map<String, Integer> grants = new HashMap<>();
+    private final PrefixIndex nodes = new PrefixIndex();
+
+    public synchronized void retain(String permission) {
+        if (this.grants.merge(permission, 1, Integer::sum) == 1) {
+            this.nodes.add(permission);
+        }
+    }
+
+    public synchronized void release(String permission) {
+        Integer count = this.grants.get(permission);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            this.grants.put(permission, count - 1);
+        } else {
+            this.grants.remove(permission);
+            this.nodes.remove(permission);
+        }
+    }
+
+    public List<String> complete(String prefix, int limit) {
+        return this.nodes.complete(prefix, limit);
+    }
+
+    public int size() {
+        return this.nodes.size();
+    }
+}
@@ -0,0 +1,168 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.permission.PermissionJournal.Principal;
+
+/**
+ * Immutable, versioned view of every grant together with its compiled {@link PermissionTrie}s.
+ * <p>
+ * Snapshots are never modified once built, so any number of threads can read one without locking or
+ * copying. Changes go through an {@link Editor}, which starts from the snapshot's persistent maps and
+ * replaces only the entries of the principals it changes, so an edit costs the same however many grants
+ * exist. The previous snapshot stays valid for readers still holding it.
+ */
+public final class PermissionSnapshot {
+    private final long version;
+    private final PermissionStore store;
+    private final PersistentLongMap<PermissionTrie> userTries;
+    private final PersistentLongMap<PermissionTrie> roleTries;
+
+    private PermissionSnapshot(long version, PermissionStore store,
+                               PersistentLongMap<PermissionTrie> userTries, PersistentLongMap<PermissionTrie> roleTries) {
+        this.version = version;
+        this.store = store;
+        this.userTries = userTries;
+        this.roleTries = roleTries;
+    }
+
+    public static PermissionSnapshot empty(PermissionInterner interner) {
+        return new PermissionSnapshot(0, new PermissionStore(interner), PersistentLongMap.empty(),
+                PersistentLongMap.empty());
+    }
+
+    public long version() {
+        return this.version;
+    }
+
+    /**
+     * The grants of this version. Callers must not modify the returned store.
+     */
+    public PermissionStore store() {
+        return this.store;
+    }
+
+    public boolean matches(Principal principal, long id, String permission) {
+        return trie(principal, id).matches(permission);
+    }
+
+    public boolean matches(Principal principal, long id, String permission, PermissionCatalog catalog) {
+        return trie(principal, id).matches(permission, catalog);
+    }
+
+    /**
+     * @return the compiled grants of the principal, or {@link PermissionTrie#EMPTY} if it has none
+     */
+    public PermissionTrie trie(Principal principal, long id) {
+        if (id == 0) {
+            return PermissionTrie.EMPTY;
+        }
+        PermissionTrie trie = tries(principal).get(id);
+        return trie != null ? trie : PermissionTrie.EMPTY;
+    }
+
+    public Editor edit() {
+        return new Editor(this);
+    }
+
+    private PersistentLongMap<PermissionTrie> tries(Principal principal) {
+        return principal == Principal.USER ? this.userTries : this.roleTries;
+    }
+
+    /**
+     * Single-threaded builder for the next snapshot. Tries are only recompiled for principals that
+     * actually changed, once, when the snapshot is built.
+     */
+    public static final class Editor {
+        private final long version;
+        private final PermissionStore store;
+        private PersistentLongMap<PermissionTrie> userTries;
+        private PersistentLongMap<PermissionTrie> roleTries;
+        private final LongObjectMap<Boolean> changedUsers = new LongObjectMap<>();
+        private final LongObjectMap<Boolean> changedRoles = new LongObjectMap<>();
+
+        private Editor(PermissionSnapshot base) {
+            this.version = base.version + 1;
+            this.store = base.store.copy();
+            this.userTries = base.userTries;
+            this.roleTries = base.roleTries;
+        }
+
+        public PermissionStore store() {
+            return this.store;
+        }
+
+        public boolean grant(Principal principal, long id, String permission) {
+            return changed(principal, id, this.store.grant(principal, id, permission));
+        }
+
+        public boolean revoke(Principal principal, long id, String permission) {
+            return changed(principal, id, this.store.revoke(principal, id, permission));
+        }
+
+        public boolean clear(Principal principal, long id) {
+            return changed(principal, id, this.store.clear(principal, id));
+        }
+
+        /**
+         * Drops every grant, as the starting point for a full reload.
+         */
+        public void clearAll() {
+            for (Principal principal : Principal.values()) {
+                for (long id : this.store.grants(principal).keys()) {
+                    changed(principal, id, true);
+                }
+            }
+            this.store.clear();
+        }
+
+        /**
+         * Marks every principal as changed, for when the store was filled directly rather than through
+         * this editor.
+         */
+        public void recompileAll() {
+            for (Principal principal : Principal.values()) {
+                for (long id : this.store.grants(principal).keys()) {
+                    changed(principal, id, true);
+                }
+            }
+        }
+
+        public void put(Principal principal, long id, int[] grants) {
+            this.store.put(principal, id, grants);
+            changed(principal, id, true);
+        }
+
+        public boolean hasChanges() {
+            return !this.changedUsers.isEmpty() || !this.changedRoles.isEmpty();
+        }
+
+        public long[] changes(Principal principal) {
+            return changedIds(principal).keys();
+        }
+
+        public PermissionSnapshot build() {
+            for (long id : this.changedUsers.keys()) {
+                this.userTries = this.userTries.with(id, compile(Principal.USER, id));
+            }
+            for (long id : this.changedRoles.keys()) {
+                this.roleTries = this.roleTries.with(id, compile(Principal.ROLE, id));
+            }
+            return new PermissionSnapshot(this.version, this.store, this.userTries, this.roleTries);
+        }
+
+        private PermissionTrie compile(Principal principal, long id) {
+            int[] grants = this.store.get(principal, id);
+            return grants == null ? null : PermissionTrie.compile(this.store.permissions(grants));
+        }
+
+        private boolean changed(Principal principal, long id, boolean changed) {
+            if (changed) {
+                changedIds(principal).put(id, Boolean.TRUE);
+            }
+            return changed;
+        }
+
+        private LongObjectMap<Boolean> changedIds(Principal principal) {
+            return principal == Principal.USER ? this.changedUsers : this.changedRoles;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.permission.PermissionJournal.Principal;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Grant storage keyed by primitive snowflake. Each principal's grants are a sorted {@code int[]} of
+ * permission IDs from a shared {@link PermissionInterner}, so a permission string is held once no
+ * matter how many users and roles are granted it.
+ * <p>
+ * Principals are held in {@link PersistentLongMap}s, so an update replaces one path of the map rather than
+ * the whole table and {@link #copy()} costs nothing. A store is not thread-safe, but its copies can be read
+ * while it keeps changing.
+ */
+public final class PermissionStore {
+    private final PermissionInterner interner;
+    private PersistentLongMap<int[]> users;
+    private PersistentLongMap<int[]> roles;
+
+    public PermissionStore(PermissionInterner interner) {
+        this(interner, PersistentLongMap.empty(), PersistentLongMap.empty());
+    }
+
+    private PermissionStore(PermissionInterner interner, PersistentLongMap<int[]> users, PersistentLongMap<int[]> roles) {
+        this.interner = interner;
+        this.users = users;
+        this.roles = roles;
+    }
+
+    /**
+     * @return the snowflake as a {@code long}, or {@code 0} if {@code id} is not a canonical snowflake
+     */
+    public static long parseId(String id) {
+        if (id == null || id.isEmpty() || id.length() > 19) {
+            return 0;
+        }
+
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9' || (i == 0 && c == '0')) {
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+            if (value < 0) {
+                return 0;
+            }
+        }
+        return value;
+    }
+
+    public PermissionInterner interner() {
+        return this.interner;
+    }
+
+    public PersistentLongMap<int[]> grants(Principal principal) {
+        return principal == Principal.USER ? this.users : this.roles;
+    }
+
+    public int[] get(Principal principal, long id) {
+        return grants(principal).get(id);
+    }
+
+    public void put(Principal principal, long id, int[] grants) {
+        update(principal, grants(principal).with(id, grants == null || grants.length == 0 ? null : grants));
+    }
+
+    /**
+     * @return whether the grant was not already present
+     */
+    public boolean grant(Principal principal, long id, String permission) {
+        int[] current = get(principal, id);
+        int[] updated = GrantArrays.with(current, this.interner.intern(permission));
+        if (updated == current) {
+            return false;
+        }
+        put(principal, id, updated);
+        return true;
+    }
+
+    /**
+     * @return whether the grant was present
+     */
+    public boolean revoke(Principal principal, long id, String permission) {
+        int permissionId = this.interner.find(permission);
+        if (permissionId < 0) {
+            return false;
+        }
+
+        int[] current = get(principal, id);
+        int[] updated = GrantArrays.without(current, permissionId);
+        if (updated == current) {
+            return false;
+        }
+        put(principal, id, updated);
+        return true;
+    }
+
+    /**
+     * @return whether the principal had any grant
+     */
+    public boolean clear(Principal principal, long id) {
+        PersistentLongMap<int[]> grants = grants(principal);
+        PersistentLongMap<int[]> updated = grants.without(id);
+        update(principal, updated);
+        return updated != grants;
+    }
+
+    public void clear() {
+        this.users = PersistentLongMap.empty();
+        this.roles = PersistentLongMap.empty();
+    }
+
+    private void update(Principal principal, PersistentLongMap<int[]> grants) {
+        if (principal == Principal.USER) {
+            this.users = grants;
+        } else {
+            this.roles = grants;
+        }
+    }
+
+    public List<String> permissions(int[] grants) {
+        if (grants == null) {
+            return new ArrayList<>();
+        }
+
+        List<String> permissions = new ArrayList<>(grants.length);
+        for (int id : grants) {
+            permissions.add(this.interner.get(id));
+        }
+        return permissions;
+    }
+
+    public Set<String> permissionSet(int[] grants) {
+        if (grants == null) {
+            return new HashSet<>();
+        }
+
+        Set<String> permissions = new HashSet<>(grants.length * 4 / 3 + 1);
+        for (int id : grants) {
+            permissions.add(this.interner.get(id));
+        }
+        return permissions;
+    }
+
+    /**
+     * Returns a copy that can be read while this store keeps changing. Maps and grant arrays are shared,
+     * which is safe because neither is ever modified once stored.
+     */
+    public PermissionStore copy() {
+        return new PermissionStore(this.interner, this.users, this.roles);
+    }
+}
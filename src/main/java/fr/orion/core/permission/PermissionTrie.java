@@ -0,0 +1,205 @@
+package fr.orion.core.permission;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable, wildcard-aware index over a set of permission grants.
+ * <p>
+ * Grants are split on {@code .} once, when the trie is compiled. A trailing {@code *} segment
+ * grants every permission below its parent ({@code modules.*} matches {@code modules.view}),
+ * and a lone {@code *} grants everything. Lookups walk the requested permission in place and
+ * never allocate.
+ */
+public final class PermissionTrie {
+    public static final PermissionTrie EMPTY = new PermissionTrie(new Node(new String[0], new Node[0], false, false), 0);
+
+    private static final String WILDCARD = "*";
+    private static final BitSet NO_BITS = new BitSet();
+
+    private final Node root;
+    private final int size;
+    private volatile Expansion expansion;
+
+    private PermissionTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static PermissionTrie compile(Collection<String> grants) {
+        if (grants == null || grants.isEmpty()) {
+            return EMPTY;
+        }
+
+        Builder root = new Builder();
+        int size = 0;
+        for (String grant : grants) {
+            if (grant == null || grant.isEmpty()) {
+                continue;
+            }
+
+            Builder node = root;
+            String[] segments = grant.toLowerCase().split("\\.", -1);
+            for (int i = 0; i < segments.length; i++) {
+                String segment = segments[i];
+                if (WILDCARD.equals(segment) && i == segments.length - 1) {
+                    node.wildcard = true;
+                    break;
+                }
+                node = node.children.computeIfAbsent(segment, k -> new Builder());
+                if (i == segments.length - 1) {
+                    node.terminal = true;
+                }
+            }
+            size++;
+        }
+
+        return new PermissionTrie(root.freeze(), size);
+    }
+
+    public boolean matches(String permission) {
+        if (permission == null) {
+            return false;
+        }
+
+        Node node = this.root;
+        int length = permission.length();
+        int start = 0;
+
+        while (true) {
+            if (node.wildcard) {
+                return true;
+            }
+
+            int end = permission.indexOf('.', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            node = node.find(permission, start, end - start);
+            if (node == null) {
+                return false;
+            }
+
+            if (end == length) {
+                return node.terminal;
+            }
+            start = end + 1;
+        }
+    }
+
+    /**
+     * Same as {@link #matches(String)}, answered with a single bit test when {@code permission} is declared
+     * in {@code catalog}.
+     */
+    public boolean matches(String permission, PermissionCatalog catalog) {
+        int index = catalog.indexOf(permission);
+        return index >= 0 ? expand(catalog).get(index) : matches(permission);
+    }
+
+    /**
+     * Returns which permissions of {@code catalog} this trie grants, one bit per catalog index. The result is
+     * cached and only extended when the catalog grows, so callers must not modify it.
+     */
+    public BitSet expand(PermissionCatalog catalog) {
+        if (this.size == 0) {
+            return NO_BITS;
+        }
+
+        int size = catalog.size();
+        Expansion current = this.expansion;
+        if (current != null && current.catalog == catalog && current.size == size) {
+            return current.bits;
+        }
+
+        int from = 0;
+        BitSet bits = new BitSet(size);
+        if (current != null && current.catalog == catalog && current.size < size) {
+            bits.or(current.bits);
+            from = current.size;
+        }
+        for (int i = from; i < size; i++) {
+            if (matches(catalog.get(i))) {
+                bits.set(i);
+            }
+        }
+
+        this.expansion = new Expansion(catalog, size, bits);
+        return bits;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    private record Expansion(PermissionCatalog catalog, int size, BitSet bits) {
+    }
+
+    private static final class Node {
+        private final String[] keys;
+        private final Node[] children;
+        private final boolean terminal;
+        private final boolean wildcard;
+
+        private Node(String[] keys, Node[] children, boolean terminal, boolean wildcard) {
+            this.keys = keys;
+            this.children = children;
+            this.terminal = terminal;
+            this.wildcard = wildcard;
+        }
+
+        private Node find(String permission, int offset, int length) {
+            int low = 0;
+            int high = this.keys.length - 1;
+
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compareSegment(this.keys[mid], permission, offset, length);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return this.children[mid];
+                }
+            }
+            return null;
+        }
+
+        private static int compareSegment(String key, String permission, int offset, int length) {
+            int limit = Math.min(key.length(), length);
+            for (int i = 0; i < limit; i++) {
+                char a = key.charAt(i);
+                char b = Character.toLowerCase(permission.charAt(offset + i));
+                if (a != b) {
+                    return a - b;
+                }
+            }
+            return key.length() - length;
+        }
+    }
+
+    private static final class Builder {
+        private final TreeMap<String, Builder> children = new TreeMap<>();
+        private boolean terminal;
+        private boolean wildcard;
+
+        private Node freeze() {
+            String[] keys = new String[this.children.size()];
+            Node[] nodes = new Node[this.children.size()];
+            int i = 0;
+            for (Map.Entry<String, Builder> entry : this.children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().freeze();
+                i++;
+            }
+            return new Node(keys, nodes, this.terminal, this.wildcard);
+        }
+    }
+}
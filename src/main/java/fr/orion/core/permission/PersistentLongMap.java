@@ -0,0 +1,244 @@
+package fr.orion.core.permission;
+
+/**
+ * Immutable hash trie from primitive {@code long} keys to objects.
+ * <p>
+ * {@link #with} and {@link #without} return a new map that shares every node off the path to the changed
+ * key, so an update copies at most one small array per level (13 levels for 64-bit keys) however large the
+ * map is, and earlier versions stay valid for the readers holding them. Keys are spread with a bijective mix
+ * before indexing, so two distinct keys always end up in different slots and no collision buckets are needed.
+ */
+public final class PersistentLongMap<V> {
+    private static final int BITS = 5;
+    private static final PersistentLongMap<?> EMPTY = new PersistentLongMap<>(Node.EMPTY, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentLongMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentLongMap<V> empty() {
+        return (PersistentLongMap<V>) EMPTY;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        long hash = mix(key);
+        Node node = this.root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = bit(hash, shift);
+            if ((node.bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = node.slots[index(node.bitmap, bit)];
+            if (slot instanceof Node child) {
+                node = child;
+            } else {
+                Entry entry = (Entry) slot;
+                return entry.key == key ? (V) entry.value : null;
+            }
+        }
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return a map where {@code key} maps to {@code value}, or without {@code key} if {@code value} is null
+     */
+    public PersistentLongMap<V> with(long key, V value) {
+        if (value == null) {
+            return without(key);
+        }
+
+        int[] added = new int[1];
+        Node root = put(this.root, key, mix(key), value, 0, added);
+        return root == this.root ? this : new PersistentLongMap<>(root, this.size + added[0]);
+    }
+
+    public PersistentLongMap<V> without(long key) {
+        long hash = mix(key);
+        Object root = remove(this.root, key, hash, 0);
+        if (root == this.root) {
+            return this;
+        }
+        if (root == null) {
+            return empty();
+        }
+        if (root instanceof Entry entry) {
+            return new PersistentLongMap<>(new Node(bit(hash(entry), 0), new Object[]{entry}), this.size - 1);
+        }
+        return new PersistentLongMap<>((Node) root, this.size - 1);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public long[] keys() {
+        long[] keys = new long[this.size];
+        int[] count = new int[1];
+        forEach((key, value) -> keys[count[0]++] = key);
+        return keys;
+    }
+
+    public void forEach(LongObjectMap.Consumer<? super V> consumer) {
+        forEach(this.root, consumer);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> void forEach(Node node, LongObjectMap.Consumer<? super V> consumer) {
+        for (Object slot : node.slots) {
+            if (slot instanceof Node child) {
+                forEach(child, consumer);
+            } else {
+                Entry entry = (Entry) slot;
+                consumer.accept(entry.key, (V) entry.value);
+            }
+        }
+    }
+
+    private static Node put(Node node, long key, long hash, Object value, int shift, int[] added) {
+        int bit = bit(hash, shift);
+        int index = index(node.bitmap, bit);
+        if ((node.bitmap & bit) == 0) {
+            added[0] = 1;
+            return node.insert(bit, index, new Entry(key, value));
+        }
+
+        Object slot = node.slots[index];
+        if (slot instanceof Node child) {
+            Node updated = put(child, key, hash, value, shift + BITS, added);
+            return updated == child ? node : node.replace(index, updated);
+        }
+
+        Entry entry = (Entry) slot;
+        if (entry.key == key) {
+            return entry.value == value ? node : node.replace(index, new Entry(key, value));
+        }
+        added[0] = 1;
+        return node.replace(index, pair(entry, hash(entry), new Entry(key, value), hash, shift + BITS));
+    }
+
+    /**
+     * @return {@code node} if {@code key} is absent, {@code null} if nothing is left, or the only remaining
+     * entry, which the parent then holds in place of this node
+     */
+    private static Object remove(Node node, long key, long hash, int shift) {
+        int bit = bit(hash, shift);
+        if ((node.bitmap & bit) == 0) {
+            return node;
+        }
+
+        int index = index(node.bitmap, bit);
+        Object slot = node.slots[index];
+        Object replacement;
+        if (slot instanceof Node child) {
+            replacement = remove(child, key, hash, shift + BITS);
+            if (replacement == child) {
+                return node;
+            }
+        } else if (((Entry) slot).key == key) {
+            replacement = null;
+        } else {
+            return node;
+        }
+
+        if (replacement == null) {
+            if (node.slots.length == 1) {
+                return null;
+            }
+            if (node.slots.length == 2 && node.slots[1 - index] instanceof Entry other) {
+                return other;
+            }
+            return node.remove(bit, index);
+        }
+        if (replacement instanceof Entry && node.slots.length == 1) {
+            return replacement;
+        }
+        return node.replace(index, replacement);
+    }
+
+    private static Node pair(Entry first, long firstHash, Entry second, long secondHash, int shift) {
+        int firstBit = bit(firstHash, shift);
+        int secondBit = bit(secondHash, shift);
+        if (firstBit == secondBit) {
+            return new Node(firstBit, new Object[]{pair(first, firstHash, second, secondHash, shift + BITS)});
+        }
+        return Integer.compareUnsigned(firstBit, secondBit) < 0
+                ? new Node(firstBit | secondBit, new Object[]{first, second})
+                : new Node(firstBit | secondBit, new Object[]{second, first});
+    }
+
+    private static int bit(long hash, int shift) {
+        return 1 << (int) ((hash >>> shift) & 31);
+    }
+
+    private static int index(int bitmap, int bit) {
+        return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    private static long hash(Entry entry) {
+        return mix(entry.key);
+    }
+
+    /**
+     * MurmurHash3's 64-bit finalizer: bijective, so distinct keys keep distinct hashes.
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private record Entry(long key, Object value) {
+    }
+
+    /**
+     * Up to 32 slots, one per set bit of {@code bitmap}, each holding an {@link Entry} or a deeper node.
+     */
+    private static final class Node {
+        private static final Node EMPTY = new Node(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        private Node(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private Node insert(int bit, int index, Object slot) {
+            Object[] slots = new Object[this.slots.length + 1];
+            System.arraycopy(this.slots, 0, slots, 0, index);
+            slots[index] = slot;
+            System.arraycopy(this.slots, index, slots, index + 1, this.slots.length - index);
+            return new Node(this.bitmap | bit, slots);
+        }
+
+        private Node replace(int index, Object slot) {
+            Object[] slots = this.slots.clone();
+            slots[index] = slot;
+            return new Node(this.bitmap, slots);
+        }
+
+        private Node remove(int bit, int index) {
+            Object[] slots = new Object[this.slots.length - 1];
+            System.arraycopy(this.slots, 0, slots, 0, index);
+            System.arraycopy(this.slots, index + 1, slots, index, this.slots.length - index - 1);
+            return new Node(this.bitmap & ~bit, slots);
+        }
+    }
+}
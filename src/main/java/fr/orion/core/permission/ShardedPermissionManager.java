@@ -0,0 +1,653 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.permission.PermissionJournal.Operation;
+import fr.orion.core.permission.PermissionJournal.Principal;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Permission manager that keeps one partition per guild next to a global partition.
+ * <p>
+ * The global partition is {@code permissions.yml} in the data directory. It holds user grants, which are
+ * bot-wide, and any role grants written before partitioning. Role grants live in
+ * {@code guilds/<guildId>/permissions.yml}. User grants added to a guild's file by hand apply only inside
+ * that guild; the {@code PermissionManager} API has no guild to scope a user grant to, so this manager
+ * never writes them there. A guild's partition is loaded the first time that guild is checked or changed.
+ * Startup time and heap therefore follow active guilds, not every guild the bot has joined.
+ * <p>
+ * Partitions load lazily, each under its own lock, so a cold load only holds up callers of that guild.
+ * A running count of resident grant entries is kept as partitions load and change; once it or the number
+ * of resident guilds exceeds its budget, a background thread evicts the least recently used partitions,
+ * flushing their pending writes.
+ * <p>
+ * Each partition is a {@link YamlPermissionManager} with the same journaling and binary snapshot settings.
+ * All partitions share one {@link PermissionDecisionCache}.
+ */
+public class ShardedPermissionManager implements BatchPermissionManager, SuggestsPermissions {
+    private static final Logger logger = LoggerFactory.getLogger(ShardedPermissionManager.class);
+
+    public static final int DEFAULT_MAX_RESIDENT_GUILDS = 256;
+    public static final int DEFAULT_MAX_RESIDENT_ENTRIES = 100_000;
+
+    private static final long ACCESS_RESOLUTION = 1_000_000;
+
+    private final Path guildsDirectory;
+    private final Duration writeDelay;
+    private final long journalCompactionThreshold;
+    private final boolean binarySnapshot;
+    private final int maxResidentGuilds;
+    private final int maxResidentEntries;
+    private final Function<String, String> roleGuilds;
+    private final PermissionDecisionCache decisionCache;
+    private final PermissionNodeIndex nodeIndex = new PermissionNodeIndex();
+    private final YamlPermissionManager global;
+    private final ConcurrentHashMap<String, Partition> partitions = new ConcurrentHashMap<>();
+    private final AtomicLong residentEntries = new AtomicLong();
+    private final AtomicBoolean evictionScheduled = new AtomicBoolean();
+    private final ExecutorService evictionExecutor;
+    private volatile PermissionFileWatcher watcher;
+    private volatile PermissionCatalog catalog;
+
+    /**
+     * @param roleGuilds resolves a role ID to the ID of its guild, or {@code null} if the role is unknown
+     */
+    public ShardedPermissionManager(Path dataDirectory, int decisionCacheSize, Duration writeDelay,
+                                    long journalCompactionThreshold, boolean binarySnapshot,
+                                    int maxResidentGuilds, int maxResidentEntries, Function<String, String> roleGuilds) {
+        this.guildsDirectory = dataDirectory.resolve("guilds");
+        this.writeDelay = writeDelay;
+        this.journalCompactionThreshold = journalCompactionThreshold;
+        this.binarySnapshot = binarySnapshot;
+        this.maxResidentGuilds = maxResidentGuilds;
+        this.maxResidentEntries = maxResidentEntries;
+        this.roleGuilds = roleGuilds;
+        this.decisionCache = new PermissionDecisionCache(decisionCacheSize);
+        this.global = new YamlPermissionManager(dataDirectory, this.decisionCache, this.nodeIndex, writeDelay,
+                journalCompactionThreshold, binarySnapshot);
+        this.evictionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orion-permission-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean hasPermission(Member member, String permission) {
+        if (member == null || permission == null) {
+            return false;
+        }
+
+        String guildId = member.getGuild().getId();
+        Boolean cached = this.decisionCache.get(guildId, member.getId(), permission);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = this.decisionCache.generation();
+        boolean decision = resolvePermission(member, permission);
+        this.decisionCache.put(guildId, member.getId(), member.getRoles(), permission, decision, generation);
+        return decision;
+    }
+
+    private boolean resolvePermission(Member member, String permission) {
+        YamlPermissionManager partition = guildPartition(member.getGuild().getId());
+        if (this.global.hasPermission(member.getUser(), permission)
+                || (partition != null && partition.hasPermission(member.getUser(), permission))) {
+            return true;
+        }
+
+        for (Role role : member.getRoles()) {
+            if (this.global.hasPermission(role, permission)
+                    || (partition != null && partition.hasPermission(role, permission))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean hasPermission(User user, String permission) {
+        return this.global.hasPermission(user, permission);
+    }
+
+    @Override
+    public boolean hasPermission(Role role, String permission) {
+        if (role == null || permission == null) {
+            return false;
+        }
+
+        if (this.global.hasPermission(role, permission)) {
+            return true;
+        }
+
+        YamlPermissionManager partition = guildPartition(role.getGuild().getId());
+        return partition != null && partition.hasPermission(role, permission);
+    }
+
+    @Override
+    public void addUserPermission(String userId, String permission) {
+        this.global.addUserPermission(userId, permission);
+    }
+
+    @Override
+    public void removeUserPermission(String userId, String permission) {
+        this.global.removeUserPermission(userId, permission);
+    }
+
+    @Override
+    public void addRolePermission(String roleId, String permission) {
+        if (roleId == null || permission == null) {
+            return;
+        }
+
+        String guildId = this.roleGuilds.apply(roleId);
+        Boolean added = guildId != null ? withPartition(guildId, true, partition -> {
+            partition.addRolePermission(roleId, permission);
+            return true;
+        }) : null;
+        if (added == null) {
+            this.global.addRolePermission(roleId, permission);
+        }
+    }
+
+    @Override
+    public void removeRolePermission(String roleId, String permission) {
+        if (roleId == null || permission == null) {
+            return;
+        }
+
+        this.global.removeRolePermission(roleId, permission);
+        String guildId = this.roleGuilds.apply(roleId);
+        if (guildId != null) {
+            withPartition(guildId, false, partition -> {
+                partition.removeRolePermission(roleId, permission);
+                return true;
+            });
+        }
+    }
+
+    @Override
+    public Set<String> getUserPermissions(String userId) {
+        return this.global.getUserPermissions(userId);
+    }
+
+    @Override
+    public Set<String> getRolePermissions(String roleId) {
+        Set<String> permissions = this.global.getRolePermissions(roleId);
+        YamlPermissionManager partition = rolePartition(roleId);
+        if (partition != null) {
+            permissions.addAll(partition.getRolePermissions(roleId));
+        }
+        return permissions;
+    }
+
+    @Override
+    public Set<String> getEffectivePermissions(Member member) {
+        Set<String> permissions = this.global.getEffectivePermissions(member);
+        if (member != null) {
+            YamlPermissionManager partition = guildPartition(member.getGuild().getId());
+            if (partition != null) {
+                permissions.addAll(partition.getEffectivePermissions(member));
+            }
+        }
+        return permissions;
+    }
+
+    /**
+     * Declared permissions granted to the member in the global partition or in its guild's partition, as
+     * bits over the catalog.
+     */
+    public BitSet getEffectiveCatalogPermissions(Member member) {
+        BitSet effective = this.global.getEffectiveCatalogPermissions(member);
+        if (member != null) {
+            YamlPermissionManager partition = guildPartition(member.getGuild().getId());
+            if (partition != null) {
+                effective.or(partition.getEffectiveCatalogPermissions(member));
+            }
+        }
+        return effective;
+    }
+
+    /**
+     * Answers checks for permissions declared in {@code catalog} with bit tests, in every partition.
+     */
+    public void useCatalog(PermissionCatalog catalog) {
+        this.catalog = catalog;
+        this.global.useCatalog(catalog);
+        for (YamlPermissionManager partition : residentPartitions()) {
+            partition.useCatalog(catalog);
+        }
+    }
+
+    @Override
+    public void clearUserPermissions(String userId) {
+        this.global.clearUserPermissions(userId);
+    }
+
+    @Override
+    public void clearRolePermissions(String roleId) {
+        if (roleId == null) {
+            return;
+        }
+
+        this.global.clearRolePermissions(roleId);
+        String guildId = this.roleGuilds.apply(roleId);
+        if (guildId != null) {
+            withPartition(guildId, false, partition -> {
+                partition.clearRolePermissions(roleId);
+                return true;
+            });
+        }
+    }
+
+    /**
+     * Users with grants in the global partition or in a guild partition that is currently resident.
+     */
+    @Override
+    public Set<String> getAllUsersWithPermissions() {
+        Set<String> users = this.global.getAllUsersWithPermissions();
+        for (YamlPermissionManager partition : residentPartitions()) {
+            users.addAll(partition.getAllUsersWithPermissions());
+        }
+        return users;
+    }
+
+    /**
+     * Roles with grants in the global partition or in a guild partition that is currently resident.
+     */
+    @Override
+    public Set<String> getAllRolesWithPermissions() {
+        Set<String> roles = this.global.getAllRolesWithPermissions();
+        for (YamlPermissionManager partition : residentPartitions()) {
+            roles.addAll(partition.getAllRolesWithPermissions());
+        }
+        return roles;
+    }
+
+    /**
+     * Routes user changes to the global partition and role changes to their guild's partition, then applies
+     * each partition's share as one transaction, holding only that partition's lock. Removals and clears also
+     * reach the global partition for roles it still holds.
+     */
+    @Override
+    public PermissionBatch.Result applyBatch(PermissionBatch batch) {
+        Map<String, List<PermissionBatch.Change>> byGuild = new LinkedHashMap<>();
+        PermissionBatch.Builder globalChanges = PermissionBatch.builder();
+        for (PermissionBatch.Change change : batch.changes()) {
+            String guildId = change.principal() == Principal.ROLE ? this.roleGuilds.apply(change.id()) : null;
+            if (guildId != null && PermissionStore.parseId(guildId) != 0) {
+                byGuild.computeIfAbsent(guildId, key -> new ArrayList<>()).add(change);
+            } else {
+                route(globalChanges, change);
+            }
+        }
+
+        PermissionStore globalStore = this.global.getSnapshot().store();
+        PermissionBatch.Result total = new PermissionBatch.Result(0, 0, 0, 0, 0);
+        for (Map.Entry<String, List<PermissionBatch.Change>> entry : byGuild.entrySet()) {
+            List<PermissionBatch.Change> changes = entry.getValue();
+            boolean adds = changes.stream().anyMatch(change -> change.operation() == Operation.ADD);
+            PermissionBatch.Result result = withPartition(entry.getKey(), adds, partition -> {
+                PermissionBatch.Builder partitionChanges = PermissionBatch.builder();
+                for (PermissionBatch.Change change : changes) {
+                    route(partitionChanges, change);
+                }
+                return partition.applyBatch(partitionChanges.build());
+            });
+            if (result != null) {
+                total = sum(total, result);
+            }
+
+            for (PermissionBatch.Change change : changes) {
+                boolean heldGlobally = globalStore.get(Principal.ROLE, PermissionStore.parseId(change.id())) != null;
+                if (result == null || (change.operation() != Operation.ADD && heldGlobally)) {
+                    route(globalChanges, change);
+                }
+            }
+        }
+
+        if (globalChanges.size() > 0) {
+            total = sum(total, this.global.applyBatch(globalChanges.build()));
+        }
+        return new PermissionBatch.Result(total.applied(), Math.max(0, batch.size() - total.applied()),
+                total.grants(), total.revokes(), total.clears());
+    }
+
+    private static void route(PermissionBatch.Builder builder, PermissionBatch.Change change) {
+        builder.add(change.operation(), change.principal(), change.id(), change.permission());
+    }
+
+    private static PermissionBatch.Result sum(PermissionBatch.Result first, PermissionBatch.Result second) {
+        return new PermissionBatch.Result(first.applied() + second.applied(), first.unchanged() + second.unchanged(),
+                first.grants() + second.grants(), first.revokes() + second.revokes(), first.clears() + second.clears());
+    }
+
+    public PermissionDecisionCache getDecisionCache() {
+        return this.decisionCache;
+    }
+
+    public int getResidentGuildCount() {
+        return this.partitions.size();
+    }
+
+    public long getResidentEntryCount() {
+        return this.residentEntries.get();
+    }
+
+    /**
+     * Reloads the global partition and every resident guild partition whenever another process changes
+     * its file. Partitions loaded later are watched as they load.
+     */
+    public void watch(PermissionFileWatcher watcher) {
+        this.watcher = watcher;
+        this.global.watch(watcher);
+        for (YamlPermissionManager partition : residentPartitions()) {
+            partition.watch(watcher);
+        }
+    }
+
+    /**
+     * Suggests nodes granted in the global partition or in a guild partition that is currently resident.
+     */
+    @Override
+    public List<String> suggestPermissions(String prefix, int limit) {
+        return this.nodeIndex.complete(prefix, limit);
+    }
+
+    /**
+     * Reloads the global partition and every resident guild partition, and forgets which guilds had no
+     * stored permissions so their directories are checked again.
+     */
+    @Override
+    public void reload() {
+        this.global.reload();
+        for (Partition partition : this.partitions.values()) {
+            synchronized (partition) {
+                if (partition.evicted || !partition.loaded) {
+                    continue;
+                }
+                if (partition.manager == null) {
+                    evict(partition);
+                } else {
+                    partition.manager.reload();
+                    recount(partition);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void save() {
+        this.global.save();
+        for (YamlPermissionManager partition : residentPartitions()) {
+            partition.save();
+        }
+    }
+
+    /**
+     * Writes pending changes of every resident partition to disk and stops their background writers.
+     */
+    public void shutdown() {
+        this.evictionExecutor.shutdown();
+        try {
+            this.evictionExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (Partition partition : this.partitions.values()) {
+            synchronized (partition) {
+                evict(partition);
+            }
+        }
+        this.global.shutdown();
+    }
+
+    /**
+     * Looks up a guild's partition for reading, loading it if needed.
+     *
+     * @return the partition, or {@code null} if the guild has no stored permissions
+     */
+    private YamlPermissionManager guildPartition(String guildId) {
+        if (PermissionStore.parseId(guildId) == 0) {
+            return null;
+        }
+
+        YamlPermissionManager manager;
+        while (true) {
+            Partition partition = this.partitions.computeIfAbsent(guildId, Partition::new);
+            partition.touch();
+            if (partition.loaded) {
+                manager = partition.manager;
+                break;
+            }
+            manager = load(partition, false);
+            if (!partition.evicted) {
+                break;
+            }
+        }
+        evictIfNeeded();
+        return manager;
+    }
+
+    private YamlPermissionManager rolePartition(String roleId) {
+        String guildId = this.roleGuilds.apply(roleId);
+        return guildId != null ? guildPartition(guildId) : null;
+    }
+
+    /**
+     * Runs {@code change} on a guild's partition while holding that partition's lock, so it cannot be
+     * evicted halfway, then updates the resident entry count.
+     *
+     * @param create whether to create the partition if the guild has no stored permissions yet
+     * @return what {@code change} returned, or {@code null} if the guild has no partition and {@code create}
+     * is {@code false}
+     */
+    private <T> T withPartition(String guildId, boolean create, Function<YamlPermissionManager, T> change) {
+        if (PermissionStore.parseId(guildId) == 0) {
+            return null;
+        }
+
+        while (true) {
+            Partition partition = this.partitions.computeIfAbsent(guildId, Partition::new);
+            partition.touch();
+            synchronized (partition) {
+                if (partition.evicted) {
+                    continue;
+                }
+
+                YamlPermissionManager manager = load(partition, create);
+                T result = manager != null ? change.apply(manager) : null;
+                if (manager != null) {
+                    recount(partition);
+                }
+                evictIfNeeded();
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Loads the partition's manager if it is not loaded yet, or creates it if {@code create} is set and the
+     * guild had no stored permissions. Only this partition's lock is held while its files are read.
+     *
+     * @return the manager, or {@code null} if the guild has none or the partition was evicted meanwhile
+     */
+    private YamlPermissionManager load(Partition partition, boolean create) {
+        synchronized (partition) {
+            if (partition.evicted) {
+                return null;
+            }
+            if (partition.loaded && (partition.manager != null || !create)) {
+                return partition.manager;
+            }
+
+            Path directory = this.guildsDirectory.resolve(partition.guildId);
+            if (create || Files.isDirectory(directory)) {
+                YamlPermissionManager manager = new YamlPermissionManager(directory, this.decisionCache,
+                        this.nodeIndex, this.writeDelay, this.journalCompactionThreshold, this.binarySnapshot);
+                PermissionFileWatcher watcher = this.watcher;
+                if (watcher != null) {
+                    manager.watch(watcher);
+                }
+                PermissionCatalog catalog = this.catalog;
+                if (catalog != null) {
+                    manager.useCatalog(catalog);
+                }
+                partition.manager = manager;
+                recount(partition);
+                logger.debug("Loaded permission partition for guild {}", partition.guildId);
+            }
+            partition.loaded = true;
+            return partition.manager;
+        }
+    }
+
+    /**
+     * Must be called while holding the partition's lock.
+     */
+    private void recount(Partition partition) {
+        int entries = entries(partition.manager);
+        this.residentEntries.addAndGet(entries - partition.entries);
+        partition.entries = entries;
+    }
+
+    private void evictIfNeeded() {
+        if (overBudget() && this.evictionScheduled.compareAndSet(false, true)) {
+            try {
+                this.evictionExecutor.execute(this::evictLeastRecentlyUsed);
+            } catch (RejectedExecutionException e) {
+                this.evictionScheduled.set(false);
+            }
+        }
+    }
+
+    private boolean overBudget() {
+        return this.partitions.size() > this.maxResidentGuilds
+                || (this.maxResidentEntries > 0 && this.residentEntries.get() > this.maxResidentEntries);
+    }
+
+    /**
+     * Evicts least recently used partitions, flushing their pending writes, until both budgets are met. The
+     * most recently used partition is always kept. Cached decisions stay valid because the evicted grants
+     * are unchanged on disk.
+     */
+    private void evictLeastRecentlyUsed() {
+        this.evictionScheduled.set(false);
+        if (!overBudget()) {
+            return;
+        }
+
+        List<Candidate> candidates = new ArrayList<>(this.partitions.size());
+        for (Partition partition : this.partitions.values()) {
+            candidates.add(new Candidate(partition, partition.lastAccess));
+        }
+        candidates.sort(Comparator.comparingLong(Candidate::lastAccess));
+
+        for (int i = 0; i < candidates.size() - 1 && overBudget(); i++) {
+            Partition partition = candidates.get(i).partition();
+            synchronized (partition) {
+                evict(partition);
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the partition's lock.
+     */
+    private void evict(Partition partition) {
+        if (partition.evicted) {
+            return;
+        }
+
+        partition.evicted = true;
+        this.partitions.remove(partition.guildId, partition);
+        YamlPermissionManager manager = partition.manager;
+        if (manager == null) {
+            return;
+        }
+
+        this.residentEntries.addAndGet(-partition.entries);
+        PermissionFileWatcher watcher = this.watcher;
+        if (watcher != null) {
+            watcher.unwatch(manager.getConfigFile());
+        }
+        manager.shutdown();
+        manager.releasePermissionNodes();
+        logger.debug("Evicted permission partition for guild {}", partition.guildId);
+    }
+
+    private static int entries(YamlPermissionManager partition) {
+        if (partition == null) {
+            return 0;
+        }
+
+        PermissionStore store = partition.getSnapshot().store();
+        return store.grants(Principal.USER).size() + store.grants(Principal.ROLE).size();
+    }
+
+    private List<YamlPermissionManager> residentPartitions() {
+        List<YamlPermissionManager> resident = new ArrayList<>(this.partitions.size());
+        for (Partition partition : this.partitions.values()) {
+            YamlPermissionManager manager = partition.manager;
+            if (manager != null && !partition.evicted) {
+                resident.add(manager);
+            }
+        }
+        return resident;
+    }
+
+    /**
+     * A guild's slot in the partition map. {@code loaded} with a {@code null} manager records that the guild
+     * has no stored permissions, so the filesystem is not checked again on every lookup. Loading, changes
+     * and eviction synchronize on the slot; reads only follow its volatile fields.
+     */
+    private static final class Partition {
+        private final String guildId;
+        private volatile YamlPermissionManager manager;
+        private volatile boolean loaded;
+        private volatile boolean evicted;
+        private volatile long lastAccess = System.nanoTime();
+        private int entries;
+
+        private Partition(String guildId) {
+            this.guildId = guildId;
+        }
+
+        private void touch() {
+            long now = System.nanoTime();
+            if (now - this.lastAccess > ACCESS_RESOLUTION) {
+                this.lastAccess = now;
+            }
+        }
+    }
+
+    /**
+     * A partition considered for eviction, with its last access read once so that sorting sees a stable order.
+     */
+    private record Candidate(Partition partition, long lastAccess) {
+    }
+}
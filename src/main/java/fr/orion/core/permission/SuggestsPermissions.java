@@ -0,0 +1,15 @@
+package fr.orion.core.permission;
+
+import java.util.List;
+
+/**
+ * Implemented by permission managers that can suggest the permission nodes they currently grant, for
+ * autocompletion. Suggestions come from memory and never touch storage.
+ */
+public interface SuggestsPermissions {
+
+    /**
+     * @return up to {@code limit} granted permission nodes starting with {@code prefix}, ignoring case
+     */
+    List<String> suggestPermissions(String prefix, int limit);
+}
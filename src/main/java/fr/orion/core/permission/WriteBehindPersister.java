@@ -0,0 +1,180 @@
+package fr.orion.core.permission;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Coalescing write-behind for a single file.
+ * <p>
+ * {@link #schedule()} returns immediately; every request made within the write delay collapses into one
+ * write of the latest snapshot. Writes go to a sibling temp file which is fsynced and then atomically
+ * renamed over the target, so readers and crashes only ever observe a complete file.
+ */
+public class WriteBehindPersister implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindPersister.class);
+
+    public static final Duration DEFAULT_WRITE_DELAY = Duration.ofMillis(500);
+
+    private final Path target;
+    private final Supplier<String> snapshot;
+    private final long writeDelayMillis;
+    private final ScheduledExecutorService executor;
+    private final Consumer<byte[]> afterWrite;
+    private final Object lock = new Object();
+    private final Object writeLock = new Object();
+
+    private ScheduledFuture<?> pending;
+    private long requested;
+    private long written;
+
+    public WriteBehindPersister(Path target, Supplier<String> snapshot, Duration writeDelay) {
+        this(target, snapshot, writeDelay, content -> {});
+    }
+
+    /**
+     * @param afterWrite called with the bytes of each snapshot once they are durably in place, before the
+     *                   next snapshot is taken
+     */
+    public WriteBehindPersister(Path target, Supplier<String> snapshot, Duration writeDelay, Consumer<byte[]> afterWrite) {
+        this.target = target;
+        this.snapshot = snapshot;
+        this.afterWrite = afterWrite;
+        this.writeDelayMillis = Math.max(0, writeDelay.toMillis());
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orion-persist-" + target.getFileName());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void schedule() {
+        synchronized (this.lock) {
+            this.requested++;
+            if (this.pending == null && !this.executor.isShutdown()) {
+                this.pending = this.executor.schedule((Runnable) this::writePending, this.writeDelayMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Writes the current snapshot synchronously if any change is still pending, and waits for it to reach disk.
+     *
+     * @return whether the file is now up to date
+     */
+    public boolean flush() {
+        synchronized (this.lock) {
+            if (this.pending != null) {
+                this.pending.cancel(false);
+                this.pending = null;
+            }
+        }
+        if (this.executor.isShutdown()) {
+            return writePending();
+        }
+
+        try {
+            return this.executor.submit(this::writePending).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            logger.error("Failed to flush {}", this.target, e);
+        }
+        return false;
+    }
+
+    /**
+     * Writes the current snapshot synchronously regardless of pending changes.
+     */
+    public boolean writeNow() {
+        synchronized (this.lock) {
+            this.requested++;
+        }
+        return flush();
+    }
+
+    public long getPendingWrites() {
+        synchronized (this.lock) {
+            return this.requested - this.written;
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        this.executor.shutdown();
+        try {
+            if (!this.executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                this.executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            this.executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        writePending();
+    }
+
+    private boolean writePending() {
+        long version;
+        synchronized (this.lock) {
+            this.pending = null;
+            if (this.requested == this.written) {
+                return true;
+            }
+            version = this.requested;
+        }
+
+        try {
+            synchronized (this.writeLock) {
+                byte[] content = this.snapshot.get().getBytes(StandardCharsets.UTF_8);
+                writeAtomically(this.target, content);
+                this.afterWrite.accept(content);
+            }
+            synchronized (this.lock) {
+                this.written = Math.max(this.written, version);
+            }
+            logger.debug("Persisted {}", this.target);
+            return true;
+        } catch (Exception e) {
+            logger.error("Failed to persist {}", this.target, e);
+            return false;
+        }
+    }
+
+    /**
+     * Replaces {@code target} with {@code content} through an fsynced sibling temp file and an atomic rename.
+     */
+    static void writeAtomically(Path target, byte[] content) throws IOException {
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        try (FileChannel channel = FileChannel.open(temporary,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -1,38 +1,110 @@
 package fr.orion.core.permission;
 
-import fr.orion.api.permission.PermissionManager;
-import fr.orion.api.permission.PermissionNode;
+import fr.orion.core.permission.PermissionJournal.Operation;
+import fr.orion.core.permission.PermissionJournal.Principal;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Role;
 import net.dv8tion.jda.api.entities.User;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
 import org.yaml.snakeyaml.Yaml;
 
-import java.io.InputStream;
-import java.io.Writer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-
-public class YamlPermissionManager implements PermissionManager {
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class YamlPermissionManager implements BatchPermissionManager, SuggestsPermissions {
     private static final Logger logger = LoggerFactory.getLogger(YamlPermissionManager.class);
+    /**
+     * Largest permissions file read, in code points. SnakeYAML stops at 3 MiB by default, which a bot with
+     * about 100k grants already exceeds.
+     */
+    static final int MAX_FILE_CODE_POINTS = 256 * 1024 * 1024;
 
     private final Path configFile;
     private final Yaml yaml;
-    private final Map<String, Set<String>> userPermissions = new ConcurrentHashMap<>();
-    private final Map<String, Set<String>> rolePermissions = new ConcurrentHashMap<>();
+    private final PermissionInterner interner = new PermissionInterner();
+    private final AtomicReference<PermissionSnapshot> state = new AtomicReference<>(PermissionSnapshot.empty(this.interner));
+    private final PermissionDecisionCache decisionCache;
+    private final WriteBehindPersister persister;
+    private final PermissionJournal journal;
+    private final ExecutorService compactionExecutor;
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private final Path binarySnapshotFile;
+    private volatile PermissionSnapshot lastRendered;
+    private volatile PermissionCatalog catalog = new PermissionCatalog();
+    private final PermissionNodeIndex nodeIndex;
+    private volatile PermissionStore diskStore;
+    private volatile FileVersion diskVersion;
+    private final LongAdder reloads = new LongAdder();
+    private volatile long lastReloadNanos;
+    private volatile int lastReloadChanges;
 
     public YamlPermissionManager(Path dataDirectory) {
+        this(dataDirectory, PermissionDecisionCache.DEFAULT_MAXIMUM_SIZE, WriteBehindPersister.DEFAULT_WRITE_DELAY, 0, false);
+    }
+
+    /**
+     * @param journalCompactionThreshold journal size in bytes after which it is folded into the snapshot,
+     *                                   or {@code 0} to rewrite the snapshot on every change instead of journaling
+     * @param binarySnapshot             whether to mirror {@code permissions.yml} into {@code permissions.bin}
+     *                                   and load from it while the YAML file is unchanged
+     */
+    public YamlPermissionManager(Path dataDirectory, int decisionCacheSize, Duration writeDelay,
+                                 long journalCompactionThreshold, boolean binarySnapshot) {
+        this(dataDirectory, new PermissionDecisionCache(decisionCacheSize), writeDelay, journalCompactionThreshold, binarySnapshot);
+    }
+
+    /**
+     * @param decisionCache cache to resolve member checks through and to invalidate on change, which may be
+     *                      shared with other managers
+     */
+    public YamlPermissionManager(Path dataDirectory, PermissionDecisionCache decisionCache, Duration writeDelay,
+                                 long journalCompactionThreshold, boolean binarySnapshot) {
+        this(dataDirectory, decisionCache, new PermissionNodeIndex(), writeDelay, journalCompactionThreshold, binarySnapshot);
+    }
+
+    /**
+     * @param nodeIndex index to report granted permission nodes to, which may be shared with other managers
+     */
+    public YamlPermissionManager(Path dataDirectory, PermissionDecisionCache decisionCache, PermissionNodeIndex nodeIndex,
+                                 Duration writeDelay, long journalCompactionThreshold, boolean binarySnapshot) {
         DumperOptions options = new DumperOptions();
         options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
         options.setPrettyFlow(true);
         options.setIndent(2);
 
-        this.yaml = new Yaml(options);
+        LoaderOptions loaderOptions = new LoaderOptions();
+        loaderOptions.setCodePointLimit(MAX_FILE_CODE_POINTS);
+        this.yaml = new Yaml(loaderOptions, options);
         this.configFile = dataDirectory.resolve("permissions.yml");
+        this.decisionCache = decisionCache;
+        this.nodeIndex = nodeIndex;
+        this.binarySnapshotFile = binarySnapshot ? dataDirectory.resolve("permissions.bin") : null;
+        this.persister = new WriteBehindPersister(this.configFile, this::renderSnapshot, writeDelay, this::onWritten);
+        if (journalCompactionThreshold > 0) {
+            this.journal = new PermissionJournal(dataDirectory, journalCompactionThreshold);
+            this.compactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "orion-permission-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+        } else {
+            this.journal = null;
+            this.compactionExecutor = null;
+        }
 
         try {
             Files.createDirectories(dataDirectory);
@@ -49,6 +121,19 @@ public class YamlPermissionManager implements PermissionManager {
             return false;
         }
 
+        String guildId = member.getGuild().getId();
+        Boolean cached = this.decisionCache.get(guildId, member.getId(), permission);
+        if (cached != null) {
+            return cached;
+        }
+
+        long generation = this.decisionCache.generation();
+        boolean decision = resolvePermission(member, permission);
+        this.decisionCache.put(guildId, member.getId(), member.getRoles(), permission, decision, generation);
+        return decision;
+    }
+
+    private boolean resolvePermission(Member member, String permission) {
         if (hasPermission(member.getUser(), permission)) {
             return true;
         }
@@ -68,12 +153,7 @@ public class YamlPermissionManager implements PermissionManager {
             return false;
         }
 
-        Set<String> permissions = this.userPermissions.get(user.getId());
-        if (permissions == null || permissions.isEmpty()) {
-            return false;
-        }
-
-        return checkPermissionMatch(permissions, permission);
+        return this.state.get().matches(Principal.USER, user.getIdLong(), permission, this.catalog);
     }
 
     @Override
@@ -82,90 +162,252 @@ public class YamlPermissionManager implements PermissionManager {
             return false;
         }
 
-        Set<String> permissions = this.rolePermissions.get(role.getId());
-        if (permissions == null || permissions.isEmpty()) {
-            return false;
+        return this.state.get().matches(Principal.ROLE, role.getIdLong(), permission, this.catalog);
+    }
+
+    /**
+     * Returns the current immutable permission state. Its {@link PermissionSnapshot#version() version}
+     * increases with every published change.
+     */
+    public PermissionSnapshot getSnapshot() {
+        return this.state.get();
+    }
+
+    public long getVersion() {
+        return this.state.get().version();
+    }
+
+    /**
+     * Publishes the editor's changes as the next snapshot and evicts the cached decisions they affect.
+     */
+    private void publish(PermissionSnapshot.Editor editor) {
+        PermissionSnapshot next = editor.build();
+        PermissionStore previous = this.state.getAndSet(next).store();
+        PermissionStore current = next.store();
+        for (long id : editor.changes(Principal.USER)) {
+            this.decisionCache.invalidateUser(Long.toString(id));
+            indexChanges(previous.get(Principal.USER, id), current.get(Principal.USER, id));
+        }
+        for (long id : editor.changes(Principal.ROLE)) {
+            this.decisionCache.invalidateRole(Long.toString(id));
+            indexChanges(previous.get(Principal.ROLE, id), current.get(Principal.ROLE, id));
         }
+    }
 
-        return checkPermissionMatch(permissions, permission);
+    /**
+     * Reports the difference between two sorted grant arrays of one principal to the node index.
+     */
+    private void indexChanges(int[] before, int[] after) {
+        before = before != null ? before : GrantArrays.EMPTY;
+        after = after != null ? after : GrantArrays.EMPTY;
+        int i = 0;
+        int j = 0;
+        while (i < before.length || j < after.length) {
+            if (j == after.length || (i < before.length && before[i] < after[j])) {
+                this.nodeIndex.release(this.interner.get(before[i++]));
+            } else if (i == before.length || after[j] < before[i]) {
+                this.nodeIndex.retain(this.interner.get(after[j++]));
+            } else {
+                i++;
+                j++;
+            }
+        }
     }
 
-    private boolean checkPermissionMatch(Set<String> permissions, String requiredPermission) {
-        for (String perm : permissions) {
-            PermissionNode node = new PermissionNode(perm);
-            if (node.matches(requiredPermission)) {
-                return true;
+    /**
+     * Removes every grant of this manager from its node index, when the manager is being discarded.
+     */
+    synchronized void releasePermissionNodes() {
+        PermissionStore store = this.state.get().store();
+        for (Principal principal : Principal.values()) {
+            for (long id : store.grants(principal).keys()) {
+                indexChanges(store.get(principal, id), null);
             }
         }
-        return false;
     }
 
     @Override
-    public void addUserPermission(String userId, String permission) {
+    public List<String> suggestPermissions(String prefix, int limit) {
+        return this.nodeIndex.complete(prefix, limit);
+    }
+
+    private static long principalId(String id) {
+        long value = PermissionStore.parseId(id);
+        if (value == 0) {
+            logger.warn("Ignoring permissions for invalid snowflake '{}'", id);
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void addUserPermission(String userId, String permission) {
         if (userId == null || permission == null) {
             return;
         }
 
-        this.userPermissions.computeIfAbsent(userId, k -> new HashSet<>()).add(permission.toLowerCase());
-        save();
+        grant(Principal.USER, userId, permission.toLowerCase());
         logger.debug("Added permission '{}' to user {}", permission, userId);
     }
 
     @Override
-    public void removeUserPermission(String userId, String permission) {
+    public synchronized void removeUserPermission(String userId, String permission) {
         if (userId == null || permission == null) {
             return;
         }
 
-        Set<String> permissions = this.userPermissions.get(userId);
-        if (permissions != null) {
-            permissions.remove(permission.toLowerCase());
-            if (permissions.isEmpty()) {
-                this.userPermissions.remove(userId);
-            }
-            save();
+        if (revoke(Principal.USER, userId, permission.toLowerCase())) {
             logger.debug("Removed permission '{}' from user {}", permission, userId);
         }
     }
 
     @Override
-    public void addRolePermission(String roleId, String permission) {
+    public synchronized void addRolePermission(String roleId, String permission) {
         if (roleId == null || permission == null) {
             return;
         }
 
-        this.rolePermissions.computeIfAbsent(roleId, k -> new HashSet<>()).add(permission.toLowerCase());
-        save();
+        grant(Principal.ROLE, roleId, permission.toLowerCase());
         logger.debug("Added permission '{}' to role {}", permission, roleId);
     }
 
     @Override
-    public void removeRolePermission(String roleId, String permission) {
+    public synchronized void removeRolePermission(String roleId, String permission) {
         if (roleId == null || permission == null) {
             return;
         }
 
-        Set<String> permissions = this.rolePermissions.get(roleId);
-        if (permissions != null) {
-            permissions.remove(permission.toLowerCase());
-            if (permissions.isEmpty()) {
-                this.rolePermissions.remove(roleId);
-            }
-            save();
+        if (revoke(Principal.ROLE, roleId, permission.toLowerCase())) {
             logger.debug("Removed permission '{}' from role {}", permission, roleId);
         }
     }
 
+    private void grant(Principal principal, String principalId, String permission) {
+        long id = principalId(principalId);
+        PermissionSnapshot.Editor editor = this.state.get().edit();
+        if (id != 0 && editor.grant(principal, id, permission)) {
+            publish(editor);
+            persist(Operation.ADD, principal, principalId, permission);
+        }
+    }
+
+    private boolean revoke(Principal principal, String principalId, String permission) {
+        long id = principalId(principalId);
+        PermissionSnapshot.Editor editor = this.state.get().edit();
+        if (id == 0 || !editor.revoke(principal, id, permission)) {
+            return false;
+        }
+
+        publish(editor);
+        persist(Operation.REMOVE, principal, principalId, permission);
+        return true;
+    }
+
+    private void clear(Principal principal, String principalId) {
+        long id = principalId(principalId);
+        PermissionSnapshot.Editor editor = this.state.get().edit();
+        if (id != 0 && editor.clear(principal, id)) {
+            publish(editor);
+            persist(Operation.CLEAR, principal, principalId, null);
+        }
+    }
+
+    @Override
+    public synchronized PermissionBatch.Result applyBatch(PermissionBatch batch) {
+        PermissionSnapshot.Editor editor = this.state.get().edit();
+        int grants = 0;
+        int revokes = 0;
+        int clears = 0;
+
+        for (PermissionBatch.Change change : batch.changes()) {
+            long id = PermissionStore.parseId(change.id());
+            switch (change.operation()) {
+                case ADD -> grants += editor.grant(change.principal(), id, change.permission()) ? 1 : 0;
+                case REMOVE -> revokes += editor.revoke(change.principal(), id, change.permission()) ? 1 : 0;
+                case CLEAR -> clears += editor.clear(change.principal(), id) ? 1 : 0;
+            }
+        }
+
+        int applied = grants + revokes + clears;
+        if (editor.hasChanges()) {
+            publish(editor);
+            persist(batch);
+        }
+
+        logger.info("Applied permission batch: {} of {} changes took effect", applied, batch.size());
+        return new PermissionBatch.Result(applied, batch.size() - applied, grants, revokes, clears);
+    }
+
+    private void persist(Operation operation, Principal principal, String id, String permission) {
+        if (this.journal == null) {
+            this.persister.schedule();
+            return;
+        }
+
+        try {
+            this.journal.append(operation, principal, id, permission);
+        } catch (IOException e) {
+            logger.error("Failed to journal permission change, compacting into a snapshot instead", e);
+            scheduleCompaction();
+            return;
+        }
+
+        if (this.journal.needsCompaction()) {
+            scheduleCompaction();
+        }
+    }
+
+    private void persist(PermissionBatch batch) {
+        if (this.journal == null) {
+            this.persister.schedule();
+            return;
+        }
+
+        try {
+            this.journal.append(batch);
+        } catch (IOException e) {
+            logger.error("Failed to journal permission batch, compacting into a snapshot instead", e);
+            scheduleCompaction();
+            return;
+        }
+
+        if (this.journal.needsCompaction()) {
+            scheduleCompaction();
+        }
+    }
+
+    private void scheduleCompaction() {
+        if (!this.compactionExecutor.isShutdown() && this.compactionScheduled.compareAndSet(false, true)) {
+            this.compactionExecutor.execute(this::compact);
+        }
+    }
+
+    private void compact() {
+        this.compactionScheduled.set(false);
+        try {
+            synchronized (this) {
+                this.journal.rotate();
+            }
+            if (this.persister.writeNow()) {
+                this.journal.discardRotated();
+                logger.debug("Compacted permission journal into {}", this.configFile.getFileName());
+            }
+        } catch (IOException e) {
+            logger.error("Failed to compact permission journal", e);
+        }
+    }
+
     @Override
     public Set<String> getUserPermissions(String userId) {
-        Set<String> permissions = this.userPermissions.get(userId);
-        return permissions != null ? new HashSet<>(permissions) : new HashSet<>();
+        long id = PermissionStore.parseId(userId);
+        PermissionStore store = this.state.get().store();
+        return id != 0 ? store.permissionSet(store.get(Principal.USER, id)) : new HashSet<>();
     }
 
     @Override
     public Set<String> getRolePermissions(String roleId) {
-        Set<String> permissions = this.rolePermissions.get(roleId);
-        return permissions != null ? new HashSet<>(permissions) : new HashSet<>();
+        long id = PermissionStore.parseId(roleId);
+        PermissionStore store = this.state.get().store();
+        return id != 0 ? store.permissionSet(store.get(Principal.ROLE, id)) : new HashSet<>();
     }
 
     @Override
@@ -174,124 +416,387 @@ public class YamlPermissionManager implements PermissionManager {
             return new HashSet<>();
         }
 
-        Set<String> effective = new HashSet<>();
+        PermissionStore store = this.state.get().store();
+        int[] effective = store.get(Principal.USER, member.getIdLong());
+        for (Role role : member.getRoles()) {
+            effective = GrantArrays.union(effective, store.get(Principal.ROLE, role.getIdLong()));
+        }
 
-        effective.addAll(getUserPermissions(member.getId()));
+        return store.permissionSet(effective);
+    }
 
-        for (Role role : member.getRoles()) {
-            effective.addAll(getRolePermissions(role.getId()));
+    /**
+     * Declared permissions granted to the member directly or through a role, as bits over the catalog.
+     */
+    public BitSet getEffectiveCatalogPermissions(Member member) {
+        BitSet effective = new BitSet();
+        if (member == null) {
+            return effective;
         }
 
+        PermissionSnapshot snapshot = this.state.get();
+        PermissionCatalog catalog = this.catalog;
+        effective.or(snapshot.trie(Principal.USER, member.getIdLong()).expand(catalog));
+        for (Role role : member.getRoles()) {
+            effective.or(snapshot.trie(Principal.ROLE, role.getIdLong()).expand(catalog));
+        }
         return effective;
     }
 
+    /**
+     * Answers checks for permissions declared in {@code catalog} with bit tests over pre-expanded grants.
+     */
+    public void useCatalog(PermissionCatalog catalog) {
+        this.catalog = catalog;
+    }
+
     @Override
-    public void clearUserPermissions(String userId) {
+    public synchronized void clearUserPermissions(String userId) {
         if (userId != null) {
-            this.userPermissions.remove(userId);
-            save();
+            clear(Principal.USER, userId);
             logger.debug("Cleared all permissions for user {}", userId);
         }
     }
 
     @Override
-    public void clearRolePermissions(String roleId) {
+    public synchronized void clearRolePermissions(String roleId) {
         if (roleId != null) {
-            this.rolePermissions.remove(roleId);
-            save();
+            clear(Principal.ROLE, roleId);
             logger.debug("Cleared all permissions for role {}", roleId);
         }
     }
 
     @Override
     public Set<String> getAllUsersWithPermissions() {
-        return new HashSet<>(this.userPermissions.keySet());
+        return principalIds(Principal.USER);
     }
 
     @Override
     public Set<String> getAllRolesWithPermissions() {
-        return new HashSet<>(this.rolePermissions.keySet());
+        return principalIds(Principal.ROLE);
     }
 
-    @Override
-    public void reload() {
-        load();
-        logger.info("Permissions reloaded from file");
+    private Set<String> principalIds(Principal principal) {
+        long[] ids = this.state.get().store().grants(principal).keys();
+        Set<String> result = new HashSet<>(ids.length * 4 / 3 + 1);
+        for (long id : ids) {
+            result.add(Long.toString(id));
+        }
+        return result;
+    }
+
+    public PermissionDecisionCache getDecisionCache() {
+        return this.decisionCache;
+    }
+
+    public Path getConfigFile() {
+        return this.configFile;
+    }
+
+    public ReloadStatistics getReloadStatistics() {
+        return new ReloadStatistics(this.reloads.sum(), TimeUnit.NANOSECONDS.toMillis(this.lastReloadNanos),
+                this.lastReloadChanges);
+    }
+
+    /**
+     * Totals for {@link #reload()} and {@link #refresh()}: how many ran, and how long the last one took and
+     * how many user and role entries it changed.
+     */
+    public record ReloadStatistics(long reloads, long lastDurationMillis, int lastChangedEntries) {
     }
 
     @Override
-    public void save() {
-        try {
-            Map<String, Object> data = new HashMap<>();
+    public synchronized void reload() {
+        long start = System.nanoTime();
+        int changed = load();
+        recordReload(start, changed);
+    }
+
+    /**
+     * Reloads {@code permissions.yml} whenever another process changes it.
+     */
+    public void watch(PermissionFileWatcher watcher) {
+        watcher.watch(this.configFile, this::refresh);
+    }
 
-            Map<String, List<String>> users = new HashMap<>();
-            for (Map.Entry<String, Set<String>> entry : this.userPermissions.entrySet()) {
-                users.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+    /**
+     * Applies changes made to {@code permissions.yml} outside this manager. The file is parsed on the
+     * calling thread and compared with the version this manager last read or wrote; only the principals
+     * that differ are replaced, so changes made here and not yet written are kept.
+     *
+     * @return the number of user and role entries changed, or {@code -1} if the file could not be read
+     */
+    public int refresh() {
+        long start = System.nanoTime();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            FileVersion version = FileVersion.of(this.configFile);
+            if (version == null || version.equals(this.diskVersion)) {
+                return 0;
             }
 
-            Map<String, List<String>> roles = new HashMap<>();
-            for (Map.Entry<String, Set<String>> entry : this.rolePermissions.entrySet()) {
-                roles.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            PermissionStore parsed;
+            try {
+                parsed = parse(Files.readAllBytes(this.configFile));
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Ignoring unreadable {}", this.configFile, e);
+                return -1;
+            }
+            if (parsed == null) {
+                logger.warn("Ignoring empty {}", this.configFile);
+                return -1;
             }
 
-            data.put("users", users);
-            data.put("roles", roles);
+            synchronized (this) {
+                if (!version.equals(FileVersion.of(this.configFile))) {
+                    continue;
+                }
 
-            try (Writer writer = Files.newBufferedWriter(this.configFile)) {
-                this.yaml.dump(data, writer);
+                int changed = applyChanges(this.diskStore, parsed);
+                this.diskStore = parsed;
+                this.diskVersion = version;
+                if (changed > 0 && this.journal != null) {
+                    scheduleCompaction();
+                }
+                recordReload(start, changed);
+                return changed;
             }
+        }
 
-            logger.debug("Permissions saved to file");
-        } catch (Exception e) {
-            logger.error("Failed to save permissions", e);
+        logger.warn("{} kept changing while being reloaded", this.configFile);
+        return -1;
+    }
+
+    private void recordReload(long start, int changed) {
+        this.lastReloadNanos = System.nanoTime() - start;
+        this.lastReloadChanges = changed;
+        this.reloads.increment();
+        logger.info("Reloaded {} in {} ms: {} entries changed", this.configFile,
+                TimeUnit.NANOSECONDS.toMillis(this.lastReloadNanos), changed);
+    }
+
+    /**
+     * Publishes, in one step, every principal whose grants differ between {@code base} and {@code target},
+     * with the grants it has in {@code target}.
+     *
+     * @return the number of user and role entries changed
+     */
+    private int applyChanges(PermissionStore base, PermissionStore target) {
+        PermissionSnapshot.Editor editor = this.state.get().edit();
+        int changed = 0;
+        for (Principal principal : Principal.values()) {
+            changed += diff(editor, principal, base, target, base.grants(principal).keys());
+            changed += diff(editor, principal, base, target, target.grants(principal).keys());
+        }
+
+        if (changed > 0) {
+            publish(editor);
         }
+        return changed;
     }
 
-    @SuppressWarnings("unchecked")
-    private void load() {
-        this.userPermissions.clear();
-        this.rolePermissions.clear();
+    private static int diff(PermissionSnapshot.Editor editor, Principal principal,
+                            PermissionStore base, PermissionStore target, long[] ids) {
+        int changed = 0;
+        for (long id : ids) {
+            int[] grants = target.get(principal, id);
+            if (!Arrays.equals(base.get(principal, id), grants) && !Arrays.equals(editor.store().get(principal, id), grants)) {
+                editor.put(principal, id, grants);
+                changed++;
+            }
+        }
+        return changed;
+    }
 
-        if (!Files.exists(this.configFile)) {
+    /**
+     * Writes any pending changes to disk and stops the background writer.
+     */
+    public void shutdown() {
+        if (this.journal != null) {
+            this.compactionExecutor.shutdown();
+            try {
+                this.compactionExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            this.journal.close();
+        }
+        this.persister.close();
+    }
+
+    @Override
+    public void save() {
+        this.persister.writeNow();
+    }
+
+    private String renderSnapshot() {
+        PermissionSnapshot snapshot = this.state.get();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("users", render(snapshot.store(), Principal.USER));
+        data.put("roles", render(snapshot.store(), Principal.ROLE));
+        this.lastRendered = snapshot;
+
+        return this.yaml.dump(data);
+    }
+
+    private static Map<String, List<String>> render(PermissionStore snapshot, Principal principal) {
+        PersistentLongMap<int[]> grants = snapshot.grants(principal);
+        Map<String, List<String>> rendered = new HashMap<>(grants.size() * 4 / 3 + 1);
+        grants.forEach((id, permissions) -> rendered.put(Long.toString(id), snapshot.permissions(permissions)));
+        return rendered;
+    }
+
+    /**
+     * Records what is now on disk, so {@link #refresh()} can skip this manager's own writes and tell
+     * external edits apart from changes made here.
+     */
+    private void onWritten(byte[] yamlContent) {
+        PermissionSnapshot rendered = this.lastRendered;
+        if (rendered == null) {
+            return;
+        }
+
+        this.diskStore = rendered.store();
+        this.diskVersion = FileVersion.of(this.configFile);
+
+        if (this.binarySnapshotFile != null) {
+            try {
+                BinaryPermissionSnapshot.Stamp stamp = BinaryPermissionSnapshot.Stamp.of(this.configFile);
+                BinaryPermissionSnapshot.write(this.binarySnapshotFile, stamp, yamlContent, rendered.store());
+            } catch (IOException e) {
+                logger.warn("Failed to write binary permission snapshot", e);
+            }
+        }
+    }
+
+    /**
+     * Reads the permission files into a new store and publishes only the principals that differ from the
+     * live state, in one step. Concurrent checks see either the previous state or the reloaded one.
+     *
+     * @return the number of user and role entries changed
+     */
+    private int load() {
+        FileVersion version = FileVersion.of(this.configFile);
+        PermissionStore loaded = new PermissionStore(this.interner);
+        boolean exists;
+        try {
+            exists = readSnapshot(loaded);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Failed to load permissions, keeping the current ones", e);
+            return 0;
+        }
+        this.diskStore = loaded.copy();
+        this.diskVersion = version;
+        if (this.journal != null) {
+            replayJournal(loaded);
+        }
+
+        int changed = applyChanges(this.state.get().store(), loaded);
+        if (!exists) {
             createDefaultConfig();
+        }
+
+        logger.info("Loaded {} user permission entries and {} role permission entries",
+                loaded.grants(Principal.USER).size(), loaded.grants(Principal.ROLE).size());
+        return changed;
+    }
+
+    /**
+     * @return {@code false} if there was no permissions file, or an empty one, and a default one must be written
+     */
+    private boolean readSnapshot(PermissionStore store) throws IOException {
+        if (!Files.exists(this.configFile)) {
+            return false;
+        }
+
+        if (this.binarySnapshotFile != null
+                && BinaryPermissionSnapshot.read(this.binarySnapshotFile, this.configFile, store)) {
+            logger.debug("Loaded permissions from binary snapshot");
+            return true;
+        }
+
+        BinaryPermissionSnapshot.Stamp stamp = this.binarySnapshotFile != null
+                ? BinaryPermissionSnapshot.Stamp.of(this.configFile) : null;
+        byte[] content = Files.readAllBytes(this.configFile);
+        PermissionStore parsed = parse(content);
+        if (parsed == null) {
+            return false;
+        }
+
+        for (Principal principal : Principal.values()) {
+            parsed.grants(principal).forEach((id, grants) -> store.put(principal, id, grants));
+        }
+
+        if (this.binarySnapshotFile != null) {
+            try {
+                BinaryPermissionSnapshot.write(this.binarySnapshotFile, stamp, content, store);
+            } catch (IOException e) {
+                logger.warn("Failed to write binary permission snapshot", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the grants in {@code content}, or {@code null} if it is an empty document
+     */
+    @SuppressWarnings("unchecked")
+    private PermissionStore parse(byte[] content) {
+        Map<String, Object> data = this.yaml.load(new ByteArrayInputStream(content));
+        if (data == null) {
+            return null;
+        }
+
+        PermissionStore store = new PermissionStore(this.interner);
+        readSection(store, (Map<Object, Object>) data.get("users"), Principal.USER);
+        readSection(store, (Map<Object, Object>) data.get("roles"), Principal.ROLE);
+        return store;
+    }
+
+    private static void readSection(PermissionStore store, Map<Object, Object> section, Principal principal) {
+        if (section == null) {
             return;
         }
 
-        try (InputStream is = Files.newInputStream(this.configFile)) {
-            Map<String, Object> data = this.yaml.load(is);
-            if (data == null) {
-                createDefaultConfig();
-                return;
+        PermissionInterner interner = store.interner();
+        for (Map.Entry<Object, Object> entry : section.entrySet()) {
+            long id = principalId(String.valueOf(entry.getKey()));
+            if (id == 0 || !(entry.getValue() instanceof List<?> permissions)) {
+                continue;
             }
 
-            Map<String, Object> users = (Map<String, Object>) data.get("users");
-            if (users != null) {
-                for (Map.Entry<String, Object> entry : users.entrySet()) {
-                    String userId = entry.getKey();
-                    if (entry.getValue() instanceof List) {
-                        List<String> permissions = (List<String>) entry.getValue();
-                        this.userPermissions.put(userId, new HashSet<>(permissions));
-                    }
+            int[] grants = new int[permissions.size()];
+            int count = 0;
+            for (Object permission : permissions) {
+                if (permission != null) {
+                    grants[count++] = interner.intern(permission.toString());
                 }
             }
+            store.put(principal, id, GrantArrays.of(grants, count));
+        }
+    }
 
-            Map<String, Object> roles = (Map<String, Object>) data.get("roles");
-            if (roles != null) {
-                for (Map.Entry<String, Object> entry : roles.entrySet()) {
-                    String roleId = entry.getKey();
-                    if (entry.getValue() instanceof List) {
-                        List<String> permissions = (List<String>) entry.getValue();
-                        this.rolePermissions.put(roleId, new HashSet<>(permissions));
-                    }
+    private void replayJournal(PermissionStore store) {
+        try {
+            int replayed = this.journal.replay((operation, principal, principalId, permission) -> {
+                long id = principalId(principalId);
+                if (id == 0) {
+                    return;
                 }
-            }
 
-            logger.info("Loaded {} user permission entries and {} role permission entries",
-                    this.userPermissions.size(), this.rolePermissions.size());
+                switch (operation) {
+                    case ADD -> store.grant(principal, id, permission);
+                    case REMOVE -> store.revoke(principal, id, permission);
+                    case CLEAR -> store.clear(principal, id);
+                }
+            });
+            logger.debug("Replayed {} permission journal records", replayed);
+        } catch (IOException e) {
+            logger.error("Failed to replay permission journal", e);
+        }
 
-        } catch (Exception e) {
-            logger.error("Failed to load permissions", e);
-            createDefaultConfig();
+        if (this.journal.needsCompaction()) {
+            scheduleCompaction();
         }
     }
 
@@ -299,4 +804,20 @@ public class YamlPermissionManager implements PermissionManager {
         logger.info("Creating default permissions configuration");
         save();
     }
-}
\ No newline at end of file
+
+    /**
+     * Identifies one version of a file: atomic replacement changes the file key, in-place edits the
+     * modification time or size.
+     */
+    private record FileVersion(Object fileKey, long modified, long size) {
+        static FileVersion of(Path file) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileVersion(attributes.fileKey(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                        attributes.size());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+    }
+}
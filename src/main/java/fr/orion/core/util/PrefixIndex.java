@@ -0,0 +1,119 @@
+package fr.orion.core.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Sorted, case-insensitive set of strings answering prefix queries with a binary search.
+ * <p>
+ * Readers work on an immutable array, so lookups take no lock and cost {@code O(log n + limit)} however
+ * large the index grows. Writers copy the array under a lock, which suits indexes that are read on every
+ * keystroke and changed rarely.
+ */
+public final class PrefixIndex {
+    private record Table(String[] keys, String[] values) {
+    }
+
+    private volatile Table table = new Table(new String[0], new String[0]);
+
+    /**
+     * @return whether the value was not in the index yet
+     */
+    public synchronized boolean add(String value) {
+        String key = value.toLowerCase(Locale.ROOT);
+        Table table = this.table;
+        int index = Arrays.binarySearch(table.keys(), key);
+        if (index >= 0) {
+            return false;
+        }
+
+        int insertion = -index - 1;
+        this.table = new Table(insert(table.keys(), insertion, key), insert(table.values(), insertion, value));
+        return true;
+    }
+
+    /**
+     * Adds every value with a single copy of the index, rather than one per value.
+     */
+    public synchronized void addAll(Collection<String> values) {
+        Table table = this.table;
+        TreeMap<String, String> merged = new TreeMap<>();
+        for (int i = 0; i < table.keys().length; i++) {
+            merged.put(table.keys()[i], table.values()[i]);
+        }
+        for (String value : values) {
+            merged.putIfAbsent(value.toLowerCase(Locale.ROOT), value);
+        }
+        this.table = new Table(merged.keySet().toArray(new String[0]), merged.values().toArray(new String[0]));
+    }
+
+    /**
+     * @return whether the value was in the index
+     */
+    public synchronized boolean remove(String value) {
+        Table table = this.table;
+        int index = Arrays.binarySearch(table.keys(), value.toLowerCase(Locale.ROOT));
+        if (index < 0) {
+            return false;
+        }
+
+        this.table = new Table(delete(table.keys(), index), delete(table.values(), index));
+        return true;
+    }
+
+    public boolean contains(String value) {
+        return Arrays.binarySearch(this.table.keys(), value.toLowerCase(Locale.ROOT)) >= 0;
+    }
+
+    public int size() {
+        return this.table.keys().length;
+    }
+
+    /**
+     * @return up to {@code limit} values starting with {@code prefix}, ignoring case, in sorted order
+     */
+    public List<String> complete(String prefix, int limit) {
+        return complete(prefix, limit, value -> true);
+    }
+
+    /**
+     * @return up to {@code limit} values starting with {@code prefix} and accepted by {@code filter}
+     */
+    public List<String> complete(String prefix, int limit, Predicate<String> filter) {
+        Table table = this.table;
+        String[] keys = table.keys();
+        String[] values = table.values();
+        String key = prefix.toLowerCase(Locale.ROOT);
+        int index = Arrays.binarySearch(keys, key);
+        List<String> matches = new ArrayList<>(Math.min(limit, 32));
+        for (int i = index >= 0 ? index : -index - 1; i < keys.length && matches.size() < limit; i++) {
+            if (!keys[i].startsWith(key)) {
+                break;
+            }
+            if (filter.test(values[i])) {
+                matches.add(values[i]);
+            }
+        }
+        return matches;
+    }
+
+    private static String[] insert(String[] array, int index, String value) {
+        String[] result = new String[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = value;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static String[] delete(String[] array, int index) {
+        String[] result = new String[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+}
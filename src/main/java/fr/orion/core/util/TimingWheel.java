@@ -0,0 +1,158 @@
+package fr.orion.core.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timing wheel for large numbers of coarse timeouts.
+ * <p>
+ * Timeouts hash into one of {@code wheelSize} buckets by deadline tick, and a single thread visits one bucket per
+ * tick. Scheduling and cancelling are {@code O(1)}: buckets are intrusive doubly linked lists, so a cancelled
+ * timeout leaves the wheel immediately rather than lingering until its deadline. Tasks run on the tick thread and
+ * must be short.
+ */
+public final class TimingWheel implements AutoCloseable {
+    private static final Logger log = LoggerFactory.getLogger(TimingWheel.class);
+
+    private final long tickNanos;
+    private final Timeout[] buckets;
+    private final int mask;
+    private final ScheduledExecutorService ticker;
+
+    private long tick;
+    private int pending;
+
+    /**
+     * @param wheelSize number of buckets, rounded up to a power of two; deadlines further than
+     *                  {@code wheelSize} ticks away wait for extra turns of the wheel
+     */
+    public TimingWheel(String name, Duration tickDuration, int wheelSize) {
+        this.tickNanos = Math.max(1, tickDuration.toNanos());
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.buckets = new Timeout[size];
+        this.mask = size - 1;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleAtFixedRate(this::advance, this.tickNanos, this.tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs {@code task} on the tick thread once {@code delay} has elapsed, rounded up to the next tick.
+     */
+    public Timeout schedule(Duration delay, Runnable task) {
+        long ticks = Math.max(1, (delay.toNanos() + this.tickNanos - 1) / this.tickNanos);
+        synchronized (this) {
+            Timeout timeout = new Timeout(task, this.tick + ticks);
+            link(timeout);
+            return timeout;
+        }
+    }
+
+    /**
+     * @return the number of timeouts neither fired nor cancelled yet
+     */
+    public synchronized int pending() {
+        return this.pending;
+    }
+
+    private void advance() {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (this) {
+            long current = ++this.tick;
+            Timeout timeout = this.buckets[(int) (current & this.mask)];
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.deadline <= current) {
+                    unlink(timeout);
+                    expired.add(timeout);
+                }
+                timeout = next;
+            }
+        }
+
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (Exception e) {
+                log.error("Timeout task failed", e);
+            }
+        }
+    }
+
+    private void link(Timeout timeout) {
+        int bucket = (int) (timeout.deadline & this.mask);
+        Timeout head = this.buckets[bucket];
+        timeout.next = head;
+        if (head != null) {
+            head.previous = timeout;
+        }
+        this.buckets[bucket] = timeout;
+        timeout.linked = true;
+        this.pending++;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.previous != null) {
+            timeout.previous.next = timeout.next;
+        } else {
+            this.buckets[(int) (timeout.deadline & this.mask)] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.previous = timeout.previous;
+        }
+        timeout.previous = null;
+        timeout.next = null;
+        timeout.linked = false;
+        this.pending--;
+    }
+
+    @Override
+    public void close() {
+        this.ticker.shutdownNow();
+        synchronized (this) {
+            for (Timeout head : this.buckets) {
+                while (head != null) {
+                    Timeout next = head.next;
+                    unlink(head);
+                    head = next;
+                }
+            }
+        }
+    }
+
+    public final class Timeout {
+        private final Runnable task;
+        private final long deadline;
+        private Timeout previous;
+        private Timeout next;
+        private boolean linked;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return whether the timeout was still pending, in which case its task will not run
+         */
+        public boolean cancel() {
+            synchronized (TimingWheel.this) {
+                if (!this.linked) {
+                    return false;
+                }
+                unlink(this);
+                return true;
+            }
+        }
+    }
+}
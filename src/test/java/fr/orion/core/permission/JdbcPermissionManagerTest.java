@@ -0,0 +1,156 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.database.ConnectionPool;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JdbcPermissionManagerTest {
+    private static final String USER = "100000000000000001";
+    private static final String ROLE = "200000000000000001";
+
+    @TempDir
+    Path directory;
+
+    private ConnectionPool pool;
+    private JdbcPermissionManager manager;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        this.pool = new ConnectionPool("jdbc:sqlite:" + this.directory.resolve("orion.db"), null, null, 2);
+        this.manager = new JdbcPermissionManager(this.pool, 100, 100);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.pool.close();
+    }
+
+    @Test
+    void migratesYamlOnlyOnce() throws Exception {
+        Path yaml = this.directory.resolve("permissions.yml");
+        Files.writeString(yaml, "users:\n  '" + USER + "': [mod.a, mod.b]\nroles:\n  '" + ROLE + "': ['*']\n");
+
+        assertEquals(3, this.manager.migrateFromYaml(yaml));
+        assertEquals(Set.of("mod.a", "mod.b"), this.manager.getUserPermissions(USER));
+        assertEquals(Set.of("*"), this.manager.getRolePermissions(ROLE));
+
+        Files.writeString(yaml, "users:\n  '" + USER + "': [mod.c]\n");
+        assertEquals(0, this.manager.migrateFromYaml(yaml));
+
+        JdbcPermissionManager reopened = new JdbcPermissionManager(this.pool, 100, 100);
+        assertEquals(0, reopened.migrateFromYaml(yaml));
+        assertEquals(Set.of("mod.a", "mod.b"), reopened.getUserPermissions(USER));
+    }
+
+    @Test
+    void grantsRevokesAndClears() {
+        this.manager.addUserPermission(USER, "mod.a");
+        this.manager.addUserPermission(USER, "mod.b");
+        this.manager.addUserPermission(USER, "mod.a");
+        this.manager.addRolePermission(ROLE, "admin.*");
+        assertEquals(Set.of("mod.a", "mod.b"), this.manager.getUserPermissions(USER));
+        assertEquals(Set.of(USER), this.manager.getAllUsersWithPermissions());
+        assertTrue(this.manager.hasPermission(TestEntities.role(Long.parseLong(ROLE)), "admin.ban"));
+
+        this.manager.removeUserPermission(USER, "mod.a");
+        assertEquals(Set.of("mod.b"), this.manager.getUserPermissions(USER));
+
+        this.manager.clearUserPermissions(USER);
+        this.manager.clearRolePermissions(ROLE);
+        assertTrue(this.manager.getUserPermissions(USER).isEmpty());
+        assertTrue(this.manager.getAllUsersWithPermissions().isEmpty());
+        assertTrue(this.manager.getAllRolesWithPermissions().isEmpty());
+    }
+
+    @Test
+    void countsOnlyChangesThatTookEffect() {
+        this.manager.addUserPermission(USER, "mod.a");
+
+        PermissionBatch.Result result = this.manager.applyBatch(PermissionBatch.builder()
+                .addUserPermission(USER, "mod.a")
+                .addUserPermission(USER, "mod.b")
+                .removeUserPermission(USER, "mod.c")
+                .clearRolePermissions(ROLE)
+                .build());
+
+        assertEquals(1, result.applied());
+        assertEquals(3, result.unchanged());
+        assertEquals(1, result.grants());
+    }
+
+    @Test
+    void rollsBackFailedBatches() throws SQLException {
+        this.pool.withConnection(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TRIGGER reject_grant BEFORE INSERT ON orion_role_permissions"
+                        + " WHEN NEW.permission = 'rejected' BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+            }
+            return null;
+        });
+
+        PermissionBatch batch = PermissionBatch.builder()
+                .addUserPermission(USER, "mod.a")
+                .addRolePermission(ROLE, "rejected")
+                .build();
+        assertThrows(IllegalStateException.class, () -> this.manager.applyBatch(batch));
+
+        this.manager.reload();
+        assertTrue(this.manager.getUserPermissions(USER).isEmpty());
+        assertTrue(this.manager.getRolePermissions(ROLE).isEmpty());
+    }
+
+    @Test
+    void changesInvalidateCachedGrantsAndDecisions() throws SQLException {
+        User user = TestEntities.user(Long.parseLong(USER));
+        Role role = TestEntities.role(Long.parseLong(ROLE));
+        Guild guild = TestEntities.guild(1);
+        Member member = TestEntities.member(guild, Long.parseLong(USER), role);
+
+        assertFalse(this.manager.hasPermission(user, "mod.a"));
+        assertFalse(this.manager.hasPermission(member, "mod.a"));
+
+        this.manager.addUserPermission(USER, "mod.a");
+        assertTrue(this.manager.hasPermission(user, "mod.a"));
+        assertTrue(this.manager.hasPermission(member, "mod.a"));
+
+        this.manager.removeUserPermission(USER, "mod.a");
+        assertFalse(this.manager.hasPermission(member, "mod.a"));
+
+        this.manager.addRolePermission(ROLE, "mod.*");
+        assertTrue(this.manager.hasPermission(member, "mod.a"));
+
+        this.manager.clearRolePermissions(ROLE);
+        assertFalse(this.manager.hasPermission(member, "mod.a"));
+        long generation = this.manager.getDecisionCache().generation();
+
+        this.pool.withConnection(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("INSERT INTO orion_user_permissions (user_id, permission) VALUES (" + USER + ", 'mod.b')");
+            }
+            return null;
+        });
+        assertFalse(this.manager.hasPermission(user, "mod.b"));
+
+        this.manager.reload();
+        assertTrue(this.manager.getDecisionCache().generation() > generation);
+        assertTrue(this.manager.hasPermission(user, "mod.b"));
+        assertTrue(this.manager.hasPermission(member, "mod.b"));
+    }
+}
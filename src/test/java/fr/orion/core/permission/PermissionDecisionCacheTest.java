@@ -0,0 +1,161 @@
+package fr.orion.core.permission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PermissionDecisionCacheTest {
+    private static final String GUILD = "1";
+
+    @Test
+    void returnsStoredDecisions() {
+        PermissionDecisionCache cache = new PermissionDecisionCache(100);
+        cache.put(GUILD, "10", List.of(), "a.b", true, cache.generation());
+        cache.put(GUILD, "10", List.of(), "a.c", false, cache.generation());
+
+        assertEquals(Boolean.TRUE, cache.get(GUILD, "10", "a.b"));
+        assertEquals(Boolean.FALSE, cache.get(GUILD, "10", "a.c"));
+        assertNull(cache.get("2", "10", "a.b"));
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void dropsDecisionsResolvedBeforeAnInvalidation() {
+        PermissionDecisionCache cache = new PermissionDecisionCache(100);
+        long generation = cache.generation();
+        cache.invalidateUser("20");
+        cache.put(GUILD, "10", List.of(), "a.b", true, generation);
+
+        assertNull(cache.get(GUILD, "10", "a.b"));
+    }
+
+    @Test
+    void invalidatesOnlyWhatAChangeCanAffect() {
+        PermissionDecisionCache cache = new PermissionDecisionCache(100);
+        cache.put(GUILD, "10", List.of(TestEntities.role(100)), "a.b", true, cache.generation());
+        cache.put("2", "10", List.of(), "a.b", true, cache.generation());
+        cache.put(GUILD, "11", List.of(TestEntities.role(101)), "a.b", true, cache.generation());
+
+        cache.invalidateMember(GUILD, "10");
+        assertNull(cache.get(GUILD, "10", "a.b"));
+        assertEquals(Boolean.TRUE, cache.get("2", "10", "a.b"));
+
+        cache.invalidateRole("101");
+        assertNull(cache.get(GUILD, "11", "a.b"));
+        assertEquals(Boolean.TRUE, cache.get("2", "10", "a.b"));
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedUsers() {
+        AtomicLong clock = new AtomicLong();
+        PermissionDecisionCache cache = new PermissionDecisionCache(16, clock::get);
+        for (int user = 0; user < 16; user++) {
+            clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2));
+            cache.put(GUILD, Integer.toString(user), List.of(), "a.b", true, cache.generation());
+        }
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2));
+        cache.get(GUILD, "0", "a.b");
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(2));
+        cache.put(GUILD, "16", List.of(), "a.b", true, cache.generation());
+
+        assertTrue(cache.size() <= 16);
+        assertEquals(Boolean.TRUE, cache.get(GUILD, "0", "a.b"));
+        assertEquals(Boolean.TRUE, cache.get(GUILD, "16", "a.b"));
+        assertNull(cache.get(GUILD, "1", "a.b"));
+        assertTrue(cache.getEvictionCount() > 0);
+    }
+
+    /**
+     * Readers resolve decisions from a per-user version while writers bump versions and invalidate. Once a
+     * writer has invalidated a version, no reader may see a decision made before it.
+     */
+    @Test
+    void neverServesDecisionsOlderThanTheLastInvalidation() throws Exception {
+        int users = 32;
+        PermissionDecisionCache cache = new PermissionDecisionCache(users * 4);
+        AtomicIntegerArray versions = new AtomicIntegerArray(users);
+        AtomicIntegerArray invalidated = new AtomicIntegerArray(users);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong stale = new AtomicLong();
+        AtomicLong hits = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch started = new CountDownLatch(8);
+
+        List<Future<?>> tasks = new ArrayList<>();
+        for (int t = 0; t < 6; t++) {
+            tasks.add(executor.submit(() -> {
+                started.countDown();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (!stop.get()) {
+                    int user = random.nextInt(users);
+                    String userId = Integer.toString(user);
+                    String permission = "p" + random.nextInt(8);
+
+                    int before = invalidated.get(user);
+                    Boolean cached = cache.get(GUILD, userId, permission);
+                    int current = versions.get(user);
+                    if (cached != null) {
+                        hits.incrementAndGet();
+                        if (before == current && cached != (current % 2 == 0)) {
+                            stale.incrementAndGet();
+                        }
+                        continue;
+                    }
+
+                    long generation = cache.generation();
+                    boolean decision = versions.get(user) % 2 == 0;
+                    cache.put(GUILD, userId, List.of(TestEntities.role(user % 4)), permission, decision, generation);
+                }
+            }));
+        }
+        for (int t = 0; t < 2; t++) {
+            int writer = t;
+            tasks.add(executor.submit(() -> {
+                started.countDown();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (!stop.get()) {
+                    int user = random.nextInt(users / 2) * 2 + writer;
+                    int version = versions.incrementAndGet(user);
+                    switch (random.nextInt(3)) {
+                        case 0 -> cache.invalidateUser(Integer.toString(user));
+                        case 1 -> cache.invalidateMember(GUILD, Integer.toString(user));
+                        default -> cache.invalidateRole(Integer.toString(user % 4));
+                    }
+                    invalidated.set(user, version);
+                    Thread.onSpinWait();
+                }
+            }));
+        }
+
+        started.await();
+        Thread.sleep(1500);
+        stop.set(true);
+        for (Future<?> task : tasks) {
+            task.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0, stale.get());
+        assertTrue(hits.get() > 0);
+        assertTrue(cache.size() <= users * 8);
+    }
+}
@@ -0,0 +1,51 @@
+package fr.orion.core.permission;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal JDA entities for permission tests, answering only for their IDs, guild, user and roles.
+ */
+final class TestEntities {
+    private TestEntities() {
+    }
+
+    static Guild guild(long id) {
+        return entity(Guild.class, id, Map.of());
+    }
+
+    static User user(long id) {
+        return entity(User.class, id, Map.of());
+    }
+
+    static Role role(long id) {
+        return entity(Role.class, id, Map.of());
+    }
+
+    static Member member(Guild guild, long userId, Role... roles) {
+        return entity(Member.class, userId, Map.of("getGuild", guild, "getUser", user(userId), "getRoles", List.of(roles)));
+    }
+
+    private static <T> T entity(Class<T> type, long id, Map<String, Object> properties) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Object property = properties.get(method.getName());
+            if (property != null) {
+                return property;
+            }
+            return switch (method.getName()) {
+                case "getIdLong" -> id;
+                case "getId" -> Long.toString(id);
+                case "hashCode" -> Long.hashCode(id);
+                case "equals" -> proxy == args[0];
+                case "toString" -> type.getSimpleName() + ":" + id;
+                default -> throw new UnsupportedOperationException(method.getName());
+            };
+        }));
+    }
+}
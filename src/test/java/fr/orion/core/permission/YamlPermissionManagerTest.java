@@ -0,0 +1,168 @@
+package fr.orion.core.permission;
+
+import fr.orion.core.permission.PermissionJournal.Principal;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class YamlPermissionManagerTest {
+    private static final long BATCH_USER = 100000000000000001L;
+    private static final long SOLO_USER = 100000000000000002L;
+    private static final long STABLE_ROLE = 200000000000000001L;
+    private static final long BATCH_ROLE = 200000000000000002L;
+    private static final long SOLO_ROLE = 200000000000000003L;
+
+    @TempDir
+    Path directory;
+
+    private YamlPermissionManager manager;
+
+    @BeforeEach
+    void setUp() {
+        this.manager = new YamlPermissionManager(this.directory, 1000, Duration.ofMillis(50), 64 * 1024, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.manager.shutdown();
+    }
+
+    /**
+     * Writers apply batches that grant or revoke two permissions together, next to single changes, while
+     * readers check every published snapshot. A reader must see each batch fully applied or not at all, and
+     * versions that never go back.
+     */
+    @Test
+    void readersNeverSeeHalfAppliedBatches() throws Exception {
+        String batchUser = Long.toString(BATCH_USER);
+        String batchRole = Long.toString(BATCH_ROLE);
+        this.manager.addRolePermission(Long.toString(STABLE_ROLE), "stable.use");
+
+        Guild guild = TestEntities.guild(1);
+        User user = TestEntities.user(BATCH_USER);
+        Member member = TestEntities.member(guild, BATCH_USER, TestEntities.role(STABLE_ROLE),
+                TestEntities.role(BATCH_ROLE));
+
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicLong torn = new AtomicLong();
+        AtomicLong regressions = new AtomicLong();
+        AtomicLong lostGrants = new AtomicLong();
+        AtomicLong batches = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        CountDownLatch started = new CountDownLatch(6);
+        List<Future<?>> tasks = new ArrayList<>();
+
+        for (int t = 0; t < 4; t++) {
+            tasks.add(executor.submit(() -> {
+                started.countDown();
+                long lastVersion = -1;
+                while (!stop.get()) {
+                    PermissionSnapshot snapshot = this.manager.getSnapshot();
+                    if (snapshot.version() < lastVersion) {
+                        regressions.incrementAndGet();
+                    }
+                    lastVersion = snapshot.version();
+                    if (snapshot.matches(Principal.USER, BATCH_USER, "pair.a")
+                            != snapshot.matches(Principal.USER, BATCH_USER, "pair.b")
+                            || snapshot.matches(Principal.ROLE, BATCH_ROLE, "pair.a")
+                            != snapshot.matches(Principal.ROLE, BATCH_ROLE, "pair.b")) {
+                        torn.incrementAndGet();
+                    }
+
+                    Set<String> permissions = this.manager.getUserPermissions(batchUser);
+                    if (permissions.contains("pair.a") != permissions.contains("pair.b")) {
+                        torn.incrementAndGet();
+                    }
+                    if (!this.manager.hasPermission(member, "stable.use")) {
+                        lostGrants.incrementAndGet();
+                    }
+                    this.manager.hasPermission(user, "pair.a");
+                    this.manager.hasPermission(member, "pair.b");
+                }
+            }));
+        }
+        tasks.add(executor.submit(() -> {
+            started.countDown();
+            while (!stop.get()) {
+                this.manager.applyBatch(PermissionBatch.builder()
+                        .addUserPermission(batchUser, "pair.a")
+                        .addRolePermission(batchRole, "pair.a")
+                        .addUserPermission(batchUser, "pair.b")
+                        .addRolePermission(batchRole, "pair.b")
+                        .build());
+                this.manager.applyBatch(PermissionBatch.builder()
+                        .removeUserPermission(batchUser, "pair.a")
+                        .removeRolePermission(batchRole, "pair.a")
+                        .removeUserPermission(batchUser, "pair.b")
+                        .removeRolePermission(batchRole, "pair.b")
+                        .build());
+                batches.addAndGet(2);
+            }
+        }));
+        tasks.add(executor.submit(() -> {
+            started.countDown();
+            while (!stop.get()) {
+                this.manager.addUserPermission(Long.toString(SOLO_USER), "solo.use");
+                this.manager.addRolePermission(Long.toString(SOLO_ROLE), "solo.use");
+                this.manager.removeUserPermission(Long.toString(SOLO_USER), "solo.use");
+                this.manager.removeRolePermission(Long.toString(SOLO_ROLE), "solo.use");
+            }
+        }));
+
+        started.await();
+        Thread.sleep(1500);
+        stop.set(true);
+        for (Future<?> task : tasks) {
+            task.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        assertEquals(0, torn.get());
+        assertEquals(0, regressions.get());
+        assertEquals(0, lostGrants.get());
+        assertTrue(batches.get() > 0);
+    }
+
+    @Test
+    void versionIncreasesOnlyWhenAChangeTakesEffect() {
+        String userId = Long.toString(SOLO_USER);
+        long version = this.manager.getVersion();
+
+        this.manager.addUserPermission(userId, "solo.use");
+        long granted = this.manager.getVersion();
+        assertTrue(granted > version);
+
+        this.manager.addUserPermission(userId, "solo.use");
+        this.manager.removeRolePermission(Long.toString(SOLO_ROLE), "solo.use");
+        assertEquals(granted, this.manager.getVersion());
+
+        PermissionBatch.Result result = this.manager.applyBatch(PermissionBatch.builder()
+                .removeUserPermission(userId, "solo.use")
+                .addRolePermission(Long.toString(SOLO_ROLE), "solo.use")
+                .build());
+        assertEquals(2, result.applied());
+        assertEquals(granted + 1, this.manager.getVersion());
+        assertTrue(this.manager.hasPermission(TestEntities.role(SOLO_ROLE), "solo.use"));
+    }
+}